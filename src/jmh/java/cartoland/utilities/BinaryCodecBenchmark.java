@@ -0,0 +1,88 @@
+package cartoland.utilities;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark that compares {@link BinaryCodec} with Java serialization at 100k users, saving and loading the
+ * language map. This is not a test, run it by {@code mvn -P benchmark test-compile exec:exec}. The round trips are
+ * asserted in {@code BinaryCodecTest}.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryCodecBenchmark
+{
+	private static final int USERS = 100000;
+
+	private final Map<Long, String> users = new HashMap<>();
+	private Path directory;
+	private Path serFile;
+	private Path binFile;
+
+	@Setup
+	public void createUsers() throws IOException
+	{
+		Random random = new Random(1L);
+		String[] languages = { "en", "tw", "cn", "jp", "es", "hk", "ta" };
+		while (users.size() < USERS) //和Discord的ID相同範圍
+			users.put(300000000000000000L + (random.nextLong() & 0x3FFFFFFFFFFFFFFL), languages[random.nextInt(languages.length)]);
+
+		directory = Files.createTempDirectory("cartoland-benchmark");
+		serFile = directory.resolve("users.ser");
+		binFile = directory.resolve("users.bin");
+		serializationSave(); //讓讀取的測量有檔案可讀
+		binaryCodecSave();
+	}
+
+	@TearDown
+	public void deleteFiles() throws IOException
+	{
+		Files.deleteIfExists(serFile);
+		Files.deleteIfExists(binFile);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public void serializationSave() throws IOException
+	{
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(serFile))))
+		{
+			out.writeObject(users);
+		}
+	}
+
+	@Benchmark
+	public Object serializationLoad() throws IOException, ClassNotFoundException
+	{
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(serFile))))
+		{
+			return in.readObject();
+		}
+	}
+
+	@Benchmark
+	public long binaryCodecSave() throws IOException
+	{
+		return BinaryCodec.write(binFile, BinaryCodec.LONG_STRING_MAP, users);
+	}
+
+	@Benchmark
+	public Map<Long, String> binaryCodecLoad() throws IOException
+	{
+		return BinaryCodec.read(binFile, BinaryCodec.LONG_STRING_MAP);
+	}
+}
@@ -0,0 +1,80 @@
+package cartoland.utilities;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark that compares {@link ReplyTemplate} with {@link String#format} on the replies of {@code /lottery bet}
+ * and {@code /lottery ranking}, which are the hottest formatted replies. The patterns are read from the real language
+ * files. This is not a test, run it by {@code mvn -P benchmark test-compile exec:exec}. The outputs are asserted to be
+ * the same in {@code ReplyTemplateTest}.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplyTemplateBenchmark
+{
+	@Param({ Languages.TW_MANDARIN, Languages.ENGLISH })
+	public String language;
+
+	private String bet;
+	private String rank;
+	private ReplyTemplate betTemplate;
+	private ReplyTemplate rankTemplate;
+	private final StringBuilder builder = new StringBuilder(256);
+	private long i; //每次呼叫用不同的參數
+
+	@Setup
+	public void readLanguageFile() throws IOException
+	{
+		Path lang = Paths.get(System.getProperty("basedir", "."), "lang");
+		JSONObject file = new JSONObject(Files.readString(lang.resolve(language + ".json"), StandardCharsets.UTF_8));
+		bet = file.getString("lottery.bet.result");
+		rank = file.getString("lottery.ranking.my_rank");
+		betTemplate = new ReplyTemplate(bet);
+		rankTemplate = new ReplyTemplate(rank);
+	}
+
+	@Benchmark
+	public String betStringFormat()
+	{
+		i++;
+		return String.format(bet, i * 37L, i % 2L == 0L ? "贏了！" : "輸了。", i * 1000003L - 500000000L);
+	}
+
+	@Benchmark
+	public int betReplyTemplate()
+	{
+		i++;
+		builder.setLength(0);
+		betTemplate.appendTo(builder, i * 37L, i % 2L == 0L ? "贏了！" : "輸了。", i * 1000003L - 500000000L); //和LotteryCommand一樣接在回覆後面
+		return builder.length();
+	}
+
+	@Benchmark
+	public String rankStringFormat()
+	{
+		i++;
+		return String.format(rank, (int) (i % 5000L) + 1, i * 7919L);
+	}
+
+	@Benchmark
+	public String rankReplyTemplate()
+	{
+		i++;
+		return rankTemplate.render((int) (i % 5000L) + 1, i * 7919L);
+	}
+}
@@ -2,12 +2,20 @@ package cartoland;
 
 import cartoland.events.*;
 import cartoland.utilities.AddCommands;
+import cartoland.utilities.FileHandle;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.MemberCachePolicy;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * {@code Cartoland} is the class that has the {@link #main} method, which is the entry point of the entire program. All the
  * settings of JDA was done here.
@@ -23,6 +31,15 @@ public class Cartoland
 		return jda;
 	}
 
+	//這些類別在初始化時會讀取存檔 彼此之間的初始化沒有互相依賴 所以可以同時進行
+	private static final String[] STORE_CLASSES =
+	{
+		"cartoland.utilities.CommandBlocksHandle",
+		"cartoland.utilities.JsonHandle",
+		"cartoland.utilities.ForumsHandle",
+		"cartoland.commands.AdminCommand"
+	};
+
 	/**
 	 * The entry point of the entire program. JDA was built here. Commands was register at here also, but
 	 * source code of commands are not in here. Instead, they are in {@link AddCommands}.
@@ -38,6 +55,17 @@ public class Cartoland
 		if (args.length < 1)
 			return;
 
+		try
+		{
+			loadStores(); //在JDA的事件執行緒開始前 讀取所有存檔
+		}
+		catch (IllegalStateException exception) //有存檔讀不到 不能在只初始化一半的狀態下上線
+		{
+			exception.printStackTrace();
+			System.exit(1); //其他類別的排程執行緒會讓程式無法自己結束
+			return;
+		}
+
 		jda = JDABuilder.createDefault(args[0])
 				.addEventListeners(
 						new BotOnlineOffline(), //當機器人上下線的時候
@@ -60,4 +88,62 @@ public class Cartoland
 
 		jda.awaitReady();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Load every persisted store in parallel before JDA was built, by initializing the classes in
+	 * {@link #STORE_CLASSES} on a thread pool, so no event thread needs to wait for files. The classes that every store
+	 * needs are initialized on this thread first, so two threads never wait for each other's class initialization.
+	 * The load time and size of each store are logged by {@link FileHandle}, and the total time is logged here.
+	 *
+	 * @throws InterruptedException If this thread is interrupted while waiting.
+	 * @throws IllegalStateException If any store class failed to initialize, such as a migration that couldn't read
+	 * the old file. The bot must not go online then, since the class can never be used.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	private static void loadStores() throws InterruptedException
+	{
+		long begin = System.nanoTime();
+		ClassLoader loader = Cartoland.class.getClassLoader();
+		try
+		{
+			Class.forName("cartoland.utilities.FileHandle", true, loader); //共用的類別先初始化
+			Class.forName("cartoland.utilities.BinaryCodec", true, loader);
+			Class.forName("cartoland.utilities.UserTable", true, loader); //CommandBlocksHandle和TimerHandle都需要
+			Class.forName("cartoland.utilities.TimerHandle", true, loader); //log會用到
+		}
+		catch (ClassNotFoundException exception)
+		{
+			throw new IllegalStateException(exception);
+		}
+
+		ExecutorService loaders = Executors.newFixedThreadPool(Math.min(STORE_CLASSES.length, Runtime.getRuntime().availableProcessors()));
+		List<Future<?>> loadings = new ArrayList<>(STORE_CLASSES.length);
+		for (String storeClass : STORE_CLASSES)
+			loadings.add(loaders.submit(() -> Class.forName(storeClass, true, loader)));
+		loaders.shutdown();
+
+		IllegalStateException failure = null;
+		for (int i = 0; i < STORE_CLASSES.length; i++)
+		{
+			try
+			{
+				loadings.get(i).get();
+			}
+			catch (ExecutionException exception) //初始化失敗的類別之後只會丟出NoClassDefFoundError
+			{
+				FileHandle.log(STORE_CLASSES[i] + " failed to load: " + exception.getCause());
+				if (failure == null)
+					failure = new IllegalStateException(STORE_CLASSES[i] + " failed to load", exception.getCause());
+				else
+					failure.addSuppressed(exception.getCause());
+			}
+		}
+		if (failure != null) //等所有類別都載入完才丟出 才不會有還在寫入的存檔
+			throw failure;
+
+		String logString = "loaded " + STORE_CLASSES.length + " store class(es) in " + (System.nanoTime() - begin) / 1000000L + " ms";
+		System.out.println(logString);
+		FileHandle.log(logString);
+	}
+}
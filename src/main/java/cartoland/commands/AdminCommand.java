@@ -4,14 +4,22 @@ import cartoland.utilities.*;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.attribute.ISlowmodeChannel;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * {@code AdminCommand} is an execution when a moderator uses /admin command. This class extends
@@ -24,26 +32,72 @@ import java.util.stream.Collectors;
  */
 public class AdminCommand extends HasSubcommands
 {
-	private static final String TEMP_BAN_SET = "serialize/temp_ban_set.ser";
+	public static final String TEMP_BAN_SET = "serialize/temp_ban_set.bin";
 
 	//userID為value[0] ban time為value[1] ban guild為value[2]
-	public static final Set<long[]> tempBanSet = (FileHandle.deserialize(TEMP_BAN_SET) instanceof HashSet<?> set) ? set.stream()
-			.map(o -> (long[])o).collect(Collectors.toSet()) : new HashSet<>();
+	public static final Set<long[]> tempBanSet = ConcurrentHashMap.newKeySet();
 	public static final byte USER_ID_INDEX = 0;
 	public static final byte BANNED_TIME = 1;
 	public static final byte BANNED_SERVER = 2;
 
+	private static final BinaryCodec.Codec<Set<long[]>> TEMP_BAN_CODEC = new BinaryCodec.Codec<>()
+	{
+		@Override
+		public byte version()
+		{
+			return 1;
+		}
+
+		@Override
+		public void encode(Set<long[]> value, BinaryCodec.Output out) throws IOException
+		{
+			out.writeVarInt(value.size());
+			for (long[] banData : value)
+			{
+				out.writeVarLong(banData[USER_ID_INDEX]);
+				out.writeVarLong(banData[BANNED_TIME]);
+				out.writeVarLong(banData[BANNED_SERVER]);
+			}
+		}
+
+		@Override
+		public Set<long[]> decode(BinaryCodec.Input in, byte version) throws IOException
+		{
+			int size = in.readLength(3);
+			Set<long[]> set = new HashSet<>(size * 2);
+			for (int i = 0; i < size; i++)
+				set.add(new long[] { in.readVarLong(), in.readVarLong(), in.readVarLong() });
+			return set;
+		}
+
+		@Override
+		public Set<long[]> migrate(Object legacy)
+		{
+			if (!(legacy instanceof Set<?> legacySet))
+				return null;
+			Set<long[]> set = new HashSet<>(legacySet.size() * 2);
+			for (Object element : legacySet)
+				if (element instanceof long[] banData && banData.length == 3)
+					set.add(banData);
+			return set;
+		}
+	};
+
 	static
 	{
-		FileHandle.registerSerialize(TEMP_BAN_SET, tempBanSet); //註冊串聯化
+		Set<long[]> saved = FileHandle.deserialize(TEMP_BAN_SET, "serialize/temp_ban_set.ser", TEMP_BAN_CODEC);
+		if (saved != null)
+			tempBanSet.addAll(saved);
+		FileHandle.registerSerialize(TEMP_BAN_SET, TEMP_BAN_CODEC, () -> new HashSet<>(tempBanSet)); //註冊串聯化
 	}
 
 	public AdminCommand()
 	{
-		super(3);
+		super(4);
 		subcommands.put("mute", new MuteSubcommand());
 		subcommands.put("temp_ban", new TempBanSubcommand());
 		subcommands.put("slow_mode", new SlowModeSubcommand());
+		subcommands.put("logs", new LogsSubcommand());
 	}
 
 	/**
@@ -127,16 +181,16 @@ public class AdminCommand extends HasSubcommands
 
 			if (durationMillis > MAX_TIME_OUT_LENGTH_MILLIS) //不能禁言超過28天
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.mute.too_long").formatted(Member.MAX_TIME_OUT_LENGTH)).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "admin.mute.too_long", Member.MAX_TIME_OUT_LENGTH)).setEphemeral(true).queue();
 				return;
 			}
 
 			String mutedTime = Algorithm.buildCleanFloatingString(Double.toString(duration)) + ' ' + JsonHandle.getStringFromJsonKey(userID, "admin.unit_" + unit);
-			String replyString = JsonHandle.getStringFromJsonKey(userID, "admin.mute.success")
-					.formatted(target.getAsMention(), mutedTime, (System.currentTimeMillis() + durationMillis) / 1000);
+			String replyString = JsonHandle.format(userID, "admin.mute.success",
+					target.getAsMention(), mutedTime, (System.currentTimeMillis() + durationMillis) / 1000);
 			String reason = event.getOption("reason", CommonFunctions.getAsString);
 			if (reason != null) //有理由
-				replyString += JsonHandle.getStringFromJsonKey(userID, "admin.mute.reason").formatted(reason);
+				replyString += JsonHandle.format(userID, "admin.mute.reason", reason);
 
 			event.reply(replyString).queue();
 			target.timeoutFor(Duration.ofMillis(durationMillis)).reason(reason).queue();
@@ -222,15 +276,14 @@ public class AdminCommand extends HasSubcommands
 			}
 
 			String bannedTime = Algorithm.buildCleanFloatingString(Double.toString(duration)) + ' ' + JsonHandle.getStringFromJsonKey(userID, "admin.unit_" + unit);
-			String replyString = JsonHandle.getStringFromJsonKey(userID, "admin.temp_ban.success")
-					.formatted(
-							target.getAsMention(), bannedTime,
-							System.currentTimeMillis() / 1000 + durationHours * 60 * 60); //直到<t:> 以秒為單位
+			String replyString = JsonHandle.format(userID, "admin.temp_ban.success",
+						target.getAsMention(), bannedTime,
+						System.currentTimeMillis() / 1000 + durationHours * 60 * 60); //直到<t:> 以秒為單位
 			//TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TimeUnit.HOURS.toSeconds(durationHours)
 
 			String reason = event.getOption("reason", CommonFunctions.getAsString);
 			if (reason != null)
-				replyString += JsonHandle.getStringFromJsonKey(userID, "admin.temp_ban.reason").formatted(reason);
+				replyString += JsonHandle.format(userID, "admin.temp_ban.reason", reason);
 
 			event.reply(replyString).queue(); //回覆
 
@@ -246,6 +299,7 @@ public class AdminCommand extends HasSubcommands
 			banData[BANNED_TIME] = pardonTime; //紀錄被ban的人的時間
 			banData[BANNED_SERVER] = guild.getIdLong(); //紀錄被ban的人的群組
 			tempBanSet.add(banData); //紀錄ban了這個人
+			FileHandle.markDirty(TEMP_BAN_SET);
 			guild.ban(target, 0, TimeUnit.SECONDS).reason(reason + '\n' + bannedTime).queue();
 		}
 	}
@@ -313,17 +367,126 @@ public class AdminCommand extends HasSubcommands
 			});
 			if (timeSecond > ISlowmodeChannel.MAX_SLOWMODE) //不能超過6小時 21600秒
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.slow_mode.too_long").formatted(ISlowmodeChannel.MAX_SLOWMODE / (60 * 60)))
+				event.reply(JsonHandle.format(userID, "admin.slow_mode.too_long", ISlowmodeChannel.MAX_SLOWMODE / (60 * 60)))
 						.setEphemeral(true).queue();
 				return;
 			}
 
 			String slowTime = Algorithm.buildCleanFloatingString(Float.toString(time)) + ' ' + JsonHandle.getStringFromJsonKey(userID, "admin.unit_" + unit);
 			if (timeSecond > 0)
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.slow_mode.success").formatted(channel.getAsMention(), slowTime)).queue();
+				event.reply(JsonHandle.format(userID, "admin.slow_mode.success", channel.getAsMention(), slowTime)).queue();
 			else //一定是等於0 前面過濾掉小於0的情況了
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.slow_mode.cancel").formatted(channel.getAsMention())).queue();
+				event.reply(JsonHandle.format(userID, "admin.slow_mode.cancel", channel.getAsMention())).queue();
 			channel.getManager().setSlowmode(timeSecond).queue(); //設定慢速時間
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * {@code LogsSubcommand} is a class that handles one of the sub commands of {@code /admin} command, which is
+	 * {@code /admin logs}. It searches the logs by {@link LogSearch}, and replies the matched lines in chunks that
+	 * fit the length limit of a Discord message.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	private static class LogsSubcommand implements ICommand
+	{
+		private static final int MAX_RESULTS = 100; //最多顯示幾行
+		private static final String CODE_BLOCK_BEGIN = "```json\n";
+		private static final String CODE_BLOCK_END = "```";
+		private static final int MAX_LINE_LENGTH = Message.MAX_CONTENT_LENGTH - CODE_BLOCK_BEGIN.length() - CODE_BLOCK_END.length() - 1;
+
+		@Override
+		public void commandProcess(SlashCommandInteractionEvent event)
+		{
+			Member member = event.getMember(); //使用指令的成員
+			if (member == null)
+			{
+				event.reply("Impossible, this is required!").queue();
+				return;
+			}
+
+			long userID = member.getIdLong(); //使用指令的成員ID
+
+			if (!member.hasPermission(Permission.ADMINISTRATOR)) //紀錄裡有私訊的內容 只有管理員能看
+			{
+				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.logs.no_permission")).setEphemeral(true).queue();
+				return;
+			}
+
+			User target = event.getOption("user", CommonFunctions.getAsUser);
+			String command = event.getOption("command", CommonFunctions.getAsString);
+			String fromString = event.getOption("from", CommonFunctions.getAsString);
+			String toString = event.getOption("to", CommonFunctions.getAsString);
+			ZoneId zone = ZoneId.systemDefault();
+			long from, to;
+			try
+			{
+				//沒有指定的話 預設是今天
+				from = fromString != null ? parseTime(fromString, false) : LocalDate.now(zone).atStartOfDay(zone).toInstant().toEpochMilli();
+				to = toString != null ? parseTime(toString, true) : System.currentTimeMillis() + 1L;
+			}
+			catch (DateTimeParseException exception)
+			{
+				event.reply(JsonHandle.getStringFromJsonKey(userID, "admin.logs.wrong_time")).setEphemeral(true).queue();
+				return;
+			}
+
+			event.deferReply(true).queue(); //搜尋很久以前的壓縮檔可能會超過3秒
+			LogSearch.searchLater(target != null ? target.getIdLong() : 0L, command, from, to, MAX_RESULTS)
+					.thenAccept(lines -> sendLines(event, userID, lines)) //在背景執行緒搜尋 搜尋完再回覆
+					.exceptionally(exception -> //沒有回覆的話 會一直顯示思考中
+					{
+						Throwable cause = exception.getCause() != null ? exception.getCause() : exception; //拆開CompletionException
+						cause.printStackTrace();
+						if (cause instanceof Exception e)
+							FileHandle.log(e);
+						event.getHook().sendMessage(JsonHandle.getStringFromJsonKey(userID, "admin.logs.failed")).setEphemeral(true).queue();
+						return null;
+					});
+		}
+
+		private static void sendLines(SlashCommandInteractionEvent event, long userID, List<String> lines)
+		{
+			if (lines.isEmpty())
+			{
+				event.getHook().sendMessage(JsonHandle.getStringFromJsonKey(userID, "admin.logs.no_result")).setEphemeral(true).queue();
+				return;
+			}
+
+			StringBuilder chunk = new StringBuilder(Message.MAX_CONTENT_LENGTH); //每次搜尋各自一個
+			for (String line : lines)
+			{
+				if (line.length() > MAX_LINE_LENGTH) //一行就超過上限了
+					line = line.substring(0, MAX_LINE_LENGTH);
+				if (chunk.length() + line.length() + 1 > MAX_LINE_LENGTH) //這一則訊息放不下了
+				{
+					event.getHook().sendMessage(CODE_BLOCK_BEGIN + chunk + CODE_BLOCK_END).setEphemeral(true).queue();
+					chunk.setLength(0);
+				}
+				chunk.append(line).append('\n');
+			}
+			event.getHook().sendMessage(CODE_BLOCK_BEGIN + chunk + CODE_BLOCK_END).setEphemeral(true).queue();
+		}
+
+		/**
+		 * Parse {@code yyyy-MM-dd} or {@code yyyy-MM-dd HH:mm} into epoch milliseconds.
+		 *
+		 * @param time The string to parse.
+		 * @param end If a date without time means the end of the day rather than the beginning.
+		 * @return The epoch milliseconds.
+		 * @throws DateTimeParseException If the string is in neither format.
+		 */
+		private static long parseTime(String time, boolean end)
+		{
+			ZoneId zone = ZoneId.systemDefault();
+			time = time.trim();
+			if (time.length() <= 10) //只有日期
+			{
+				LocalDate date = LocalDate.parse(time);
+				return (end ? date.plusDays(1L) : date).atStartOfDay(zone).toInstant().toEpochMilli();
+			}
+			return LocalDateTime.parse(time.replace(' ', 'T')).atZone(zone).toInstant().toEpochMilli();
+		}
+	}
+}
@@ -76,17 +76,15 @@ public class BirthdayCommand implements ICommand
 
 			if (isWrongDate(month, date))
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "birthday.set.wrong_date_in_month")
-									.formatted(
-											JsonHandle.getStringFromJsonKey(userID, "birthday.month_" + month),
-											JsonHandle.getStringFromJsonKey(userID, "birthday.date_" + date))).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "birthday.set.wrong_date_in_month",
+										JsonHandle.getStringFromJsonKey(userID, "birthday.month_" + month),
+										JsonHandle.getStringFromJsonKey(userID, "birthday.date_" + date))).setEphemeral(true).queue();
 				return;
 			}
 
-			event.reply(JsonHandle.getStringFromJsonKey(userID, "birthday.set.result")
-								.formatted(
-										JsonHandle.getStringFromJsonKey(userID, "birthday.month_" + month),
-										JsonHandle.getStringFromJsonKey(userID, "birthday.date_" + date))).queue();
+			event.reply(JsonHandle.format(userID, "birthday.set.result",
+									JsonHandle.getStringFromJsonKey(userID, "birthday.month_" + month),
+									JsonHandle.getStringFromJsonKey(userID, "birthday.date_" + date))).queue();
 			TimerHandle.setBirthday(event.getUser().getIdLong(), month, date);
 		}
 
@@ -30,7 +30,7 @@ public class ConnectFourCommand extends HasSubcommands
 			IMiniGame playing = games.get(userID);
 			if (playing != null) //已經有在玩遊戲
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName()))
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName()))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -50,7 +50,7 @@ public class ConnectFourCommand extends HasSubcommands
 
 			if (playing == null) //沒有在玩遊戲 但還是使用了/connect_four board
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.not_playing").formatted("</connect_four start:1123462079546937485>"))
+				event.reply(JsonHandle.format(userID, "mini_game.not_playing", "</connect_four start:1123462079546937485>"))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -59,7 +59,7 @@ public class ConnectFourCommand extends HasSubcommands
 			//已經有在玩遊戲
 			event.reply(playing instanceof ConnectFourGame connectFour ? //是在玩四子棋
 							connectFour.getBoard() :
-							JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName()))
+							JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName()))
 					.setEphemeral(true)
 					.queue();
 		});
@@ -83,7 +83,7 @@ public class ConnectFourCommand extends HasSubcommands
 
 			if (playing == null) //沒有在玩任何遊戲
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.not_playing").formatted("</connect_four start:1123462079546937485>"))
+				event.reply(JsonHandle.format(userID, "mini_game.not_playing", "</connect_four start:1123462079546937485>"))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -91,7 +91,7 @@ public class ConnectFourCommand extends HasSubcommands
 
 			if (!(playing instanceof ConnectFourGame connectFour)) //如果不是在玩四子棋卻還用了指令
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName())).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName())).setEphemeral(true).queue();
 				return;
 			}
 
@@ -2,9 +2,9 @@ package cartoland.commands;
 
 import cartoland.Cartoland;
 import cartoland.utilities.CommonFunctions;
-import cartoland.utilities.FileHandle;
 import cartoland.utilities.IDs;
 import cartoland.utilities.JsonHandle;
+import cartoland.utilities.UserTable;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
@@ -13,9 +13,7 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.exceptions.ErrorHandler;
 import net.dv8tion.jda.api.requests.ErrorResponse;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -28,17 +26,10 @@ import java.util.regex.Pattern;
  */
 public class IntroduceCommand extends HasSubcommands
 {
-	private static final String INTRODUCTION_FILE_NAME = "serialize/introduction.ser";
-
-	@SuppressWarnings("unchecked")
-	private static final Map<Long, String> introduction = (FileHandle.deserialize(INTRODUCTION_FILE_NAME) instanceof HashMap map) ? map : new HashMap<>();
-
 	public IntroduceCommand()
 	{
 		super(3);
 
-		FileHandle.registerSerialize(INTRODUCTION_FILE_NAME, introduction);
-
 		subcommands.put("user", event ->
 		{
 			User user = event.getUser();
@@ -46,7 +37,7 @@ public class IntroduceCommand extends HasSubcommands
 			if (target == null) //沒有填 預設是自己
 				target = user;
 
-			String content = introduction.get(target.getIdLong());
+			String content = UserTable.getIntroduction(target.getIdLong());
 			event.reply(content != null ? content : JsonHandle.getStringFromJsonKey(user.getIdLong(), "introduce.user.no_info")).queue();
 		});
 		subcommands.put("update", new UpdateSubCommand());
@@ -54,13 +45,13 @@ public class IntroduceCommand extends HasSubcommands
 		{
 			long userID = event.getUser().getIdLong();
 			event.reply(JsonHandle.getStringFromJsonKey(userID, "introduce.update.delete")).queue();
-			introduction.remove(userID); //刪除自我介紹
+			deleteIntroduction(userID); //刪除自我介紹
 		});
 	}
 
 	/**
 	 * Update the user introduction. Whenever user typed anything in the elf-intro channel, the message will
-	 * be store into {@link #introduction}.
+	 * be store into {@link UserTable}.
 	 *
 	 * @param userID The ID of the user that are going to update his/her introduction.
 	 * @param content The content of the introduction that the user want to replace the old one.
@@ -69,7 +60,12 @@ public class IntroduceCommand extends HasSubcommands
 	 */
 	public static void updateIntroduction(long userID, String content)
 	{
-		introduction.put(userID, content);
+		UserTable.setIntroduction(userID, content);
+	}
+
+	private static void deleteIntroduction(long userID)
+	{
+		UserTable.setIntroduction(userID, null);
 	}
 
 	/**
@@ -93,7 +89,7 @@ public class IntroduceCommand extends HasSubcommands
 			if (content == null)
 			{
 				event.reply(JsonHandle.getStringFromJsonKey(userID, "introduce.update.delete")).queue();
-				introduction.remove(userID); //刪除自我介紹
+				deleteIntroduction(userID); //刪除自我介紹
 				return;
 			}
 
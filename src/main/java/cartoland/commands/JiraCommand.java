@@ -68,7 +68,7 @@ public class JiraCommand implements ICommand
 		}
 		catch (IOException e)
 		{
-			hook.sendMessage(JsonHandle.getStringFromJsonKey(userID, "jira.no_bug").formatted(bugID)).queue();
+			hook.sendMessage(JsonHandle.format(userID, "jira.no_bug", bugID)).queue();
 			return;
 		}
 
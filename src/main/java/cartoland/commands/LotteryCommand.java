@@ -5,9 +5,10 @@ import cartoland.utilities.*;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.utils.TimeFormat;
 
-import java.util.List;
-import java.util.Random;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -20,20 +21,65 @@ import java.util.regex.Pattern;
  */
 public class LotteryCommand extends HasSubcommands
 {
-	private static final Random random = new Random(); //不使用Algorithm.chance
 	private static final long MAXIMUM = 1000000L;
+	private static final int MAX_SPINS = 1000; //一次最多轉幾次
 	private static final byte INVALID_BET = -1;
 	private static final Pattern NUMBER_REGEX = Pattern.compile("\\d{1,18}"); //防止輸入超過Long.MAX_VALUE
 	private static final Pattern PERCENT_REGEX = Pattern.compile("\\d{1,4}%"); //防止輸入超過Short.MAX_VALUE
 
 	public LotteryCommand()
 	{
-		super(5);
+		super(6);
 		subcommands.put("get", new GetSubCommand());
 		subcommands.put("bet", new BetSubCommand());
 		subcommands.put("ranking", new RankingSubCommand());
 		subcommands.put("daily", new DailySubCommand());
 		subcommands.put("slot", new SlotSubCommand());
+		subcommands.put("history", new HistorySubCommand());
+	}
+
+	/**
+	 * The outcome of {@code /lottery bet}. The seed is recorded in {@link LedgerHandle}, so a disputed bet can be
+	 * replayed by calling this method with the seed.
+	 *
+	 * @param seed The seed from {@link Algorithm#newSeed}.
+	 * @return {@code true} if the user won.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static boolean betWins(long seed)
+	{
+		return Algorithm.seeded(seed).nextBoolean();
+	}
+
+	/**
+	 * The outcome of {@code /lottery slot}. The seed is recorded in {@link LedgerHandle}, so a disputed slot can be
+	 * replayed by calling this method with the seed, as long as {@link SlotMachine#FILE_NAME} didn't change.
+	 *
+	 * @param seed The seed from {@link Algorithm#newSeed}.
+	 * @return The index of the symbol of each reel.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static int[] slotReels(long seed)
+	{
+		return SlotSubCommand.slotMachine.reels(seed);
+	}
+
+	/**
+	 * The outcome of {@code /lottery slot} with {@code count}. A run of spins records only one seed in
+	 * {@link LedgerHandle}, and can be replayed by calling this method with the seed.
+	 *
+	 * @param seed The seed from {@link Algorithm#newSeed}.
+	 * @param spins How many spins.
+	 * @param bet The bet of each spin.
+	 * @return The sum of the spins.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static SlotMachine.Result slotRun(long seed, int spins, long bet)
+	{
+		return SlotSubCommand.slotMachine.play(seed, spins, bet);
 	}
 
 	private static long createValidBet(SlashCommandInteractionEvent event, long userID, long nowHave)
@@ -54,7 +100,7 @@ public class LotteryCommand extends HasSubcommands
 			short percentage = Short.parseShort(betString.substring(0, betString.length() - 1));
 			if (percentage > 100) //百分比格式錯誤 不能賭超過100%
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.wrong_percent").formatted(betString)).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "lottery.bet.wrong_percent", betString)).setEphemeral(true).queue();
 				return INVALID_BET;
 			}
 			bet = nowHave * percentage / 100;
@@ -76,12 +122,12 @@ public class LotteryCommand extends HasSubcommands
 		}
 		if (bet > MAXIMUM) //限紅
 		{
-			event.reply(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.too_much").formatted(bet, MAXIMUM)).setEphemeral(true).queue();
+			event.reply(JsonHandle.format(userID, "lottery.bet.too_much", bet, MAXIMUM)).setEphemeral(true).queue();
 			return INVALID_BET;
 		}
 		if (nowHave < bet) //如果現有的比要賭的還少
 		{
-			event.reply(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.not_enough").formatted(bet, nowHave)).setEphemeral(true).queue();
+			event.reply(JsonHandle.format(userID, "lottery.bet.not_enough", bet, nowHave)).setEphemeral(true).queue();
 			return INVALID_BET;
 		}
 
@@ -114,8 +160,8 @@ public class LotteryCommand extends HasSubcommands
 			CommandBlocksHandle.LotteryData lotteryData = CommandBlocksHandle.getLotteryData(target.getIdLong());
 			if (!Boolean.TRUE.equals(event.getOption("display_detail", CommonFunctions.getAsBoolean))) //不顯示細節 null代表false 所以不使用Boolean.FALSE.equals
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(user.getIdLong(), "lottery.get.query")
-									.formatted(lotteryData.getName(), lotteryData.getBlocks())).queue();
+				event.reply(JsonHandle.format(user.getIdLong(), "lottery.get.query",
+									lotteryData.getName(), lotteryData.getBlocks())).queue();
 				return;
 			}
 			int betWon = lotteryData.getBetWon(); //贏的次數
@@ -126,13 +172,12 @@ public class LotteryCommand extends HasSubcommands
 			int slotLost = lotteryData.getSlotLost(); //拉霸機輸的次數
 			int slotShowHandWon = lotteryData.getSlotShowHandWon(); //拉霸機梭哈贏的次數
 			int slotShowHandLost = lotteryData.getSlotShowHandLost(); //拉霸機梭哈輸的次數
-			event.reply(JsonHandle.getStringFromJsonKey(user.getIdLong(), "lottery.get.query_detail")
-								.formatted(
-										lotteryData.getName(), lotteryData.getBlocks(),
-										betWon + betLost, betWon, betLost,
-										betShowHandWon + betShowHandLost, betShowHandWon, betShowHandLost,
-										slotWon + slotLost, slotWon, slotLost,
-										slotShowHandWon + slotShowHandLost, slotShowHandWon, slotShowHandLost)).queue();
+			event.reply(JsonHandle.format(user.getIdLong(), "lottery.get.query_detail",
+									lotteryData.getName(), lotteryData.getBlocks(),
+									betWon + betLost, betWon, betLost,
+									betShowHandWon + betShowHandLost, betShowHandWon, betShowHandLost,
+									slotWon + slotLost, slotWon, slotLost,
+									slotShowHandWon + slotShowHandLost, slotShowHandWon, slotShowHandLost)).queue();
 		}
 	}
 
@@ -145,8 +190,6 @@ public class LotteryCommand extends HasSubcommands
 	 */
 	private static class BetSubCommand implements ICommand
 	{
-		private final StringBuilder replyBuilder = new StringBuilder();
-
 		@Override
 		public void commandProcess(SlashCommandInteractionEvent event)
 		{
@@ -158,24 +201,20 @@ public class LotteryCommand extends HasSubcommands
 			if (bet == INVALID_BET) //輸入有誤
 				return; //直接結束 createValidBet方法內已經reply過了
 
-			long afterBet;
-			String result;
-			boolean win = random.nextBoolean(); //輸贏
+			long seed = Algorithm.newSeed(); //和結果一起記錄 有爭議時可以重現
+			boolean win = betWins(seed); //輸贏
 			boolean showHand = bet == nowHave; //梭哈
-
-			if (win) //賭贏
-			{
-				afterBet = Algorithm.safeAdd(nowHave, bet);
-				result = JsonHandle.getStringFromJsonKey(userID, "lottery.bet.win");
-			}
-			else //賭輸
+			long afterBet = lotteryData.settle(bet, win ? bet << 1 : 0L, LedgerHandle.BET, seed); //贏了拿回兩倍
+			if (afterBet == CommandBlocksHandle.LotteryData.NOT_ENOUGH) //同時在轉帳或下注 已經不夠了
 			{
-				afterBet = nowHave - bet;
-				result = JsonHandle.getStringFromJsonKey(userID, "lottery.bet.lose");
+				event.reply(JsonHandle.format(userID, "lottery.bet.not_enough", bet, lotteryData.getBlocks())).setEphemeral(true).queue();
+				return;
 			}
+			lotteryData.addGame(win, showHand); //紀錄勝場和是否梭哈
 
-			replyBuilder.setLength(0);
-			replyBuilder.append(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.result").formatted(bet, result, afterBet));
+			String result = JsonHandle.getStringFromJsonKey(userID, win ? "lottery.bet.win" : "lottery.bet.lose");
+			StringBuilder replyBuilder = new StringBuilder();
+			JsonHandle.formatTo(replyBuilder, userID, "lottery.bet.result", bet, result, afterBet);
 			if (showHand)
 			{
 				if (win)
@@ -183,10 +222,7 @@ public class LotteryCommand extends HasSubcommands
 				else
 					replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.play_with_your_limit"));
 			}
-			event.reply(replyBuilder.toString()).queue(); //盡快回覆比較好
-
-			lotteryData.addGame(win, showHand); //紀錄勝場和是否梭哈
-			lotteryData.setBlocks(afterBet); //設定方塊
+			event.reply(replyBuilder.toString()).queue();
 		}
 	}
 
@@ -199,127 +235,124 @@ public class LotteryCommand extends HasSubcommands
 	 */
 	private static class RankingSubCommand implements ICommand
 	{
-		private List<CommandBlocksHandle.LotteryData> forSort; //需要排序的list
-		private String lastReply; //上一次回覆過的字串
-		private int lastPage = -1; //上一次查看的頁面
-		private long lastUser = -1L; //上一次使用指令的使用者
+		private static final int PAGE_SIZE = 10; //一頁有幾位使用者
+		private static final int CACHE_CAPACITY = 64; //最多快取幾頁
+
+		//渲染好的排行榜 只有前面幾名會快取 因為只有它們有epoch
+		//標題的格式字串代表了語言 也代表了語言檔的版本 所以重新載入之後不會用到舊的快取
+		private final Map<PageKey, RenderedPage> pageCache = new LinkedHashMap<>(CACHE_CAPACITY * 2, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PageKey, RenderedPage> eldest)
+			{
+				return size() > CACHE_CAPACITY;
+			}
+		};
 
 		@Override
 		public void commandProcess(SlashCommandInteractionEvent event)
 		{
 			long userID = event.getUser().getIdLong();
-			boolean sameUser = userID == lastUser;
-			lastUser = userID;
-
-			Integer pageBox = event.getOption("page", CommonFunctions.getAsInt);
-			int page = pageBox != null ? pageBox : 1; //page從1開始
+			CommandBlocksHandle.LotteryData myData = CommandBlocksHandle.getLotteryData(userID);
 
 			//假設總共有27位使用者 (27 - 1) / 10 + 1 = 3 總共有3頁
-			int maxPage = (CommandBlocksHandle.size() - 1) / 10 + 1;
-			if (page > maxPage) //超出範圍
-				page = maxPage; //同上例子 就改成顯示第3頁
-			else if (page < 0) //-1 = 最後一頁, -2 = 倒數第二頁 負太多就變第一頁
-				page = (-page < maxPage) ? maxPage + page + 1 : 1;
-			else if (page == 0)
-				page = 1;
-
-			if (!CommandBlocksHandle.changed) //指令方塊 距離上一次排序 沒有任何變動
+			int size = CommandBlocksHandle.size();
+			int maxPage = (size - 1) / PAGE_SIZE + 1;
+			int page, from;
+			if (Boolean.TRUE.equals(event.getOption("around_me", CommonFunctions.getAsBoolean))) //自己附近的使用者
 			{
-				if (page != lastPage || !sameUser) //有換頁 或 不是同一位使用者
-					lastReply = replyString(userID, page, maxPage); //重新建立字串
-				event.reply(lastReply).queue();
-				return; //省略排序
+				int position = CommandBlocksHandle.positionOf(myData);
+				from = Math.max(0, Math.min(position - PAGE_SIZE / 2, size - PAGE_SIZE)); //自己在中間 但不超出頭尾
+				page = position / PAGE_SIZE + 1; //自己所在的頁數
+			}
+			else
+			{
+				Integer pageBox = event.getOption("page", CommonFunctions.getAsInt);
+				page = pageBox != null ? pageBox : 1; //page從1開始
+				if (page > maxPage) //超出範圍
+					page = maxPage; //同上例子 就改成顯示第3頁
+				else if (page < 0) //-1 = 最後一頁, -2 = 倒數第二頁 負太多就變第一頁
+					page = (-page < maxPage) ? maxPage + page + 1 : 1;
+				else if (page == 0)
+					page = 1;
+				from = (page - 1) * PAGE_SIZE; //開始的那個位置
 			}
 
-			forSort = CommandBlocksHandle.lotteryDataList;
-
-			//排序
-			forSort.sort((user1, user2) -> Long.compare(user2.getBlocks(), user1.getBlocks())); //方塊較多的在前面 方塊較少的在後面
-
-			event.reply(lastReply = replyString(userID, page, maxPage)).queue();
-			CommandBlocksHandle.changed = false; //已經排序過了
-			lastPage = page; //換過頁了
+			RenderedPage renderedPage = renderedPage(userID, from);
+			CommandBlocksHandle.Ranked myRank = CommandBlocksHandle.rankOf(myData); //O(log n) 不需要排序
+			event.reply(renderedPage.header + //只有自己的名次和頁數是每次都不同的
+								JsonHandle.format(userID, "lottery.ranking.my_rank", myRank.rank(), myRank.blocks()) +
+								renderedPage.rows +
+								page + " / " + maxPage + "\n```").queue();
 		}
 
-		private final StringBuilder rankBuilder = new StringBuilder();
+		/**
+		 * Get the rendered part of the ranking list that is the same for every user of the same language. The top of
+		 * the ranking is cached until {@link CommandBlocksHandle#rankingEpoch} changes.
+		 *
+		 * @param userID The ID of the user who used the command.
+		 * @param from The position of the first user in the list, starting from 0.
+		 * @return The rendered page.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		private RenderedPage renderedPage(long userID, int from)
+		{
+			if (from + PAGE_SIZE > CommandBlocksHandle.RANKING_EPOCH_POSITIONS) //後面的名次沒有epoch 每次都要重新渲染
+				return render(userID, from);
+			PageKey key = new PageKey(JsonHandle.getStringFromJsonKey(userID, "lottery.ranking.title"), from, CommandBlocksHandle.rankingEpoch()); //先取得epoch 才讀排行榜
+			RenderedPage renderedPage;
+			synchronized (pageCache)
+			{
+				renderedPage = pageCache.get(key);
+			}
+			if (renderedPage != null)
+				return renderedPage;
+			renderedPage = render(userID, from); //兩個執行緒同時渲染同一頁也沒關係
+			synchronized (pageCache)
+			{
+				pageCache.put(key, renderedPage);
+			}
+			return renderedPage;
+		}
 
 		/**
-		 * Builds a page in the ranking list of command blocks.
+		 * Builds a part of the ranking list of command blocks, without the rank of the user and the page number.
 		 *
 		 * @param userID The ID of the user who used the command.
-		 * @param page The page that the command user want to check.
-		 * @param maxPage Maximum of pages that the ranking list has.
-		 * @return A page of the ranking list into a single string.
+		 * @param from The position of the first user in the list, starting from 0.
+		 * @return A part of the ranking list.
 		 * @since 1.6
 		 * @author Alex Cai
 		 */
-		private String replyString(long userID, int page, int maxPage)
+		private RenderedPage render(long userID, int from)
 		{
-			//page 從1開始
-			int startElement = (page - 1) * 10; //開始的那個元素
-			int endElement = startElement + 10; //結束的那個元素
-			if (endElement > forSort.size()) //結束的那個元素比list總長還長
-				endElement = forSort.size();
-
-			List<CommandBlocksHandle.LotteryData> ranking = forSort.subList(startElement, endElement); //要查看的那一頁
-			CommandBlocksHandle.LotteryData myData = CommandBlocksHandle.getLotteryData(userID);
-			long blocks = myData.getBlocks(); //本使用者擁有的方塊數
-
 			Guild cartoland = Cartoland.getJDA().getGuildById(IDs.CARTOLAND_SERVER_ID);
-			rankBuilder.setLength(0);
-			rankBuilder.append("```ansi\n")
-					.append(JsonHandle.getStringFromJsonKey(userID, "lottery.ranking.title").formatted(cartoland != null ? cartoland.getName() : ""))
-					.append("\n--------------------\n")
-					.append(JsonHandle.getStringFromJsonKey(userID, "lottery.ranking.my_rank").formatted(forSortBinarySearch(blocks), blocks))
-					.append("\n\n");
-
-			for (int i = 0, add = page * 10 - 9, rankingSize = ranking.size(); i < rankingSize; i++) //add = (page - 1) * 10 + 1
+			String header = "```ansi\n" +
+					JsonHandle.format(userID, "lottery.ranking.title", cartoland != null ? cartoland.getName() : "") +
+					"\n--------------------\n";
+
+			StringBuilder rankBuilder = new StringBuilder("\n\n");
+			for (CommandBlocksHandle.Ranked rank : CommandBlocksHandle.ranking(from, PAGE_SIZE)) //同分的使用者名次相同
 			{
-				CommandBlocksHandle.LotteryData rank = ranking.get(i);
 				rankBuilder.append("[\u001B[36m")
-						.append(String.format("%03d", add + i))
+						.append(String.format("%03d", rank.rank()))
 						.append("\u001B[0m]\t")
-						.append(rank.getName())
+						.append(rank.data().getName())
 						.append(": \u001B[36m")
-						.append(String.format("%,d", rank.getBlocks()))
+						.append(String.format("%,d", rank.blocks()))
 						.append("\u001B[0m\n");
 			}
-
-			return rankBuilder.append("\n--------------------\n")
-					.append(page)
-					.append(" / ")
-					.append(maxPage)
-					.append("\n```")
-					.toString();
+			return new RenderedPage(header, rankBuilder.append("\n--------------------\n").toString());
 		}
 
+		private record PageKey(String titlePattern, int from, long epoch) {}
+
 		/**
-		 * Use binary search to find the index of the user that has these blocks in the {@link #forSort} list, in order to find
-		 * the ranking of a user. These code was stole... was <i>"borrowed"</i> from {@link java.util.Collections#binarySearch(List, Object)}
-		 *
-		 * @param blocks The number of blocks that are used to match in the {@link #forSort} list.
-		 * @return The index of the user that has these blocks in the {@link #forSort} list and add 1, because though an
-		 * array is 0-indexed, but the ranking that are going to display should be 1-indexed.
-		 * @since 2.0
-		 * @author Alex Cai
+		 * @param header The part before the rank of the user.
+		 * @param rows The part between the rank of the user and the page number.
 		 */
-		private int forSortBinarySearch(long blocks)
-		{
-			long midValue;
-			for (int low = 0, middle, high = forSort.size() - 1; low <= high;)
-			{
-				middle = (low + high) >>> 1;
-				midValue = forSort.get(middle).getBlocks();
-
-				if (midValue < blocks)
-					high = middle - 1;
-				else if (midValue > blocks)
-					low = middle + 1;
-				else
-					return middle + 1;
-			}
-			return 0;
-		}
+		private record RenderedPage(String header, String rows) {}
 	}
 
 	/**
@@ -331,67 +364,55 @@ public class LotteryCommand extends HasSubcommands
 	 */
 	private static class DailySubCommand implements ICommand
 	{
-		private final byte[] until = { 0,0,0 }; //until[0]為小時 [1]為分鐘 [2]為秒
-		private final boolean[] bonus = { false,false,false };
-		private final StringBuilder replyBuilder = new StringBuilder();
-
 		@Override
 		public void commandProcess(SlashCommandInteractionEvent event)
 		{
+			byte[] until = { 0,0,0 }; //until[0]為小時 [1]為分鐘 [2]為秒 每次使用都是新的 因為可能同時有好幾個人使用
+			boolean[] bonus = { false,false,false };
 			long userID = event.getUser().getIdLong();
 			CommandBlocksHandle.LotteryData lotteryData = CommandBlocksHandle.getLotteryData(userID); //獲取指令方塊資料
 			if (!lotteryData.tryClaimDaily(until)) //嘗試daily失敗了
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.not_yet")
-									.formatted(CommandBlocksHandle.LotteryData.DAILY, until[0], until[1], until[2])).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "lottery.daily.not_yet",
+									CommandBlocksHandle.LotteryData.DAILY, until[0], until[1], until[2])).setEphemeral(true).queue();
 				return;
 			}
 
-			replyBuilder.setLength(0);
-			replyBuilder.append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.claimed").formatted(CommandBlocksHandle.LotteryData.DAILY));
+			StringBuilder replyBuilder = new StringBuilder();
+			JsonHandle.formatTo(replyBuilder, userID, "lottery.daily.claimed", CommandBlocksHandle.LotteryData.DAILY);
 
 			int streak = lotteryData.getStreak(); //連續領取天數
-			replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.streak").formatted(streak));
+			JsonHandle.formatTo(replyBuilder.append('\n'), userID, "lottery.daily.streak", streak);
 			if (lotteryData.tryClaimBonus(bonus)) //有額外
 			{
 				if (bonus[0]) //週
-					replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.weekly").formatted(streak / 7))
-							.append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.bonus").formatted(CommandBlocksHandle.LotteryData.WEEKLY));
+					replyBuilder.append('\n').append(JsonHandle.format(userID, "lottery.daily.weekly", streak / 7))
+							.append(JsonHandle.format(userID, "lottery.daily.bonus", CommandBlocksHandle.LotteryData.WEEKLY));
 				if (bonus[1]) //月
-					replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.monthly").formatted(streak / 30))
-							.append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.bonus").formatted(CommandBlocksHandle.LotteryData.MONTHLY));
+					replyBuilder.append('\n').append(JsonHandle.format(userID, "lottery.daily.monthly", streak / 30))
+							.append(JsonHandle.format(userID, "lottery.daily.bonus", CommandBlocksHandle.LotteryData.MONTHLY));
 				if (bonus[2]) //年
-					replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.yearly").formatted(streak / 365))
-							.append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.bonus").formatted(CommandBlocksHandle.LotteryData.YEARLY));
+					replyBuilder.append('\n').append(JsonHandle.format(userID, "lottery.daily.yearly", streak / 365))
+							.append(JsonHandle.format(userID, "lottery.daily.bonus", CommandBlocksHandle.LotteryData.YEARLY));
 			}
 
 			event.reply(replyBuilder.append('\n')
-								.append(JsonHandle.getStringFromJsonKey(userID, "lottery.daily.now_have").formatted(lotteryData.getBlocks()))
+								.append(JsonHandle.format(userID, "lottery.daily.now_have", lotteryData.getBlocks()))
 								.toString()).queue();
 		}
 	}
 
 	/**
 	 * {@code SlotSubCommand} is a class that handles one of the sub commands of {@code /lottery} command, which is
-	 * {@code /lottery slot}.
+	 * {@code /lottery slot}. The symbols, their weights and the payouts come from {@link SlotMachine#FILE_NAME}. With
+	 * {@code count}, it spins many times with the same bet, settles them at once and replies only the sum.
 	 *
 	 * @since 2.1
 	 * @author Alex Cai
 	 */
 	private static class SlotSubCommand implements ICommand
 	{
-		private final EmojiData[] emojis =
-		{
-			new EmojiData("learned",        892406442622083143L), //宇宙貓貓
-			new EmojiData("chaowendela",    967305472950542336L), //超穩的啦
-			new EmojiData("cartoland_logo", 949332057258070036L), //創聯logo
-			new EmojiData("haha",           900717110488084530L), //海綿寶寶笑
-			new EmojiData("pika",           891713649926869003L), //驚訝皮卡丘
-			new EmojiData("cool_pika",      891714126424985610L), //墨鏡皮卡丘
-			new EmojiData("ya",             920200649830989825L)  //好耶
-		};
-
-		private final StringBuilder replyBuilder = new StringBuilder();
+		private static final SlotMachine slotMachine = SlotMachine.load(); //表格有誤的話 機器人啟動時就會失敗
 
 		@Override
 		public void commandProcess(SlashCommandInteractionEvent event)
@@ -404,61 +425,111 @@ public class LotteryCommand extends HasSubcommands
 			if (bet == INVALID_BET) //輸入有誤
 				return; //直接結束 createValidBet方法內已經reply過了
 
-			EmojiData[] slotResults =
+			Integer countBox = event.getOption("count", CommonFunctions.getAsInt);
+			int count = countBox != null ? countBox : 1; //沒有填就是轉一次
+			if (count < 1 || count > MAX_SPINS)
 			{
-				Algorithm.randomElement(emojis),
-				Algorithm.randomElement(emojis),
-				Algorithm.randomElement(emojis)
-			}; //轉的結果
-
-			boolean win = (slotResults[0].ID == slotResults[1].ID && slotResults[1].ID == slotResults[2].ID); //完全相同
-			boolean showHand = bet == nowHave; //梭哈
-			String result;
-			long afterBet;
-			if (win) //賭贏
+				event.reply(JsonHandle.format(userID, "lottery.slot.wrong_count", MAX_SPINS)).setEphemeral(true).queue();
+				return;
+			}
+			long cost = bet * count; //賭注上限乘上次數上限 不會溢位
+			if (nowHave < cost)
 			{
-				afterBet = Algorithm.safeAdd(nowHave, bet * 49); //機率 1 / 49
-				//應該要先減去籌碼後獲得49倍 * 48才對
-				//但是最一開始寫錯了 乾脆將錯就錯 改成50倍 當作福利
-				result = JsonHandle.getStringFromJsonKey(userID, "lottery.bet.win");
+				event.reply(JsonHandle.format(userID, "lottery.bet.not_enough", cost, nowHave)).setEphemeral(true).queue();
+				return;
 			}
-			else //賭輸
+
+			long seed = Algorithm.newSeed(); //和結果一起記錄 有爭議時可以重現
+			SlotMachine.Result result = slotMachine.play(seed, count, bet); //第一轉和reels的結果相同
+			boolean showHand = cost == nowHave; //梭哈
+			long afterBet = lotteryData.settle(cost, result.payout(), LedgerHandle.SLOT, seed); //全部一起結算
+			if (afterBet == CommandBlocksHandle.LotteryData.NOT_ENOUGH) //同時在轉帳或下注 已經不夠了
 			{
-				afterBet = nowHave - bet;
-				result = JsonHandle.getStringFromJsonKey(userID, "lottery.bet.lose");
+				event.reply(JsonHandle.format(userID, "lottery.bet.not_enough", cost, lotteryData.getBlocks())).setEphemeral(true).queue();
+				return;
 			}
+			lotteryData.addSlots(result.wins(), count - result.wins(), showHand, result.payout() > cost); //轉很多次的梭哈也只算一次梭哈
 
-			replyBuilder.setLength(0);
-			replyBuilder.append("--------------\n| ")
-					.append(slotResults[0].emojiFormat)
-					.append(" | ")
-					.append(slotResults[1].emojiFormat)
-					.append(" | ")
-					.append(slotResults[2].emojiFormat)
-					.append(" |\n--------------\n")
-					.append(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.result").formatted(bet, result, afterBet));
+			StringBuilder replyBuilder = new StringBuilder();
+			if (count == 1) //只轉一次 顯示轉的結果
+			{
+				int[] reels = slotMachine.reels(seed);
+				replyBuilder.append("--------------\n| ")
+						.append(slotMachine.emojiOf(reels[0]))
+						.append(" | ")
+						.append(slotMachine.emojiOf(reels[1]))
+						.append(" | ")
+						.append(slotMachine.emojiOf(reels[2]))
+						.append(" |\n--------------\n")
+						.append(JsonHandle.format(userID, "lottery.bet.result", bet,
+								JsonHandle.getStringFromJsonKey(userID, result.wins() != 0 ? "lottery.bet.win" : "lottery.bet.lose"), afterBet));
+			}
+			else //轉很多次 只顯示總和
+				replyBuilder.append(JsonHandle.format(userID, "lottery.slot.summary", count, bet,
+						result.wins(), result.pairs(), result.triples(), result.jackpots(), cost, result.payout(), afterBet));
 			if (showHand)
 			{
-				if (win)
+				if (result.payout() > cost)
 					replyBuilder.append("\nhttps://www.youtube.com/watch?v=RbMjxQEZ1IQ");
 				else
 					replyBuilder.append('\n').append(JsonHandle.getStringFromJsonKey(userID, "lottery.bet.play_with_your_limit"));
 			}
-			event.reply(replyBuilder.toString()).queue(); //盡快回覆比較好
-
-			lotteryData.addSlot(win, showHand); //紀錄勝場和是否梭哈
-			lotteryData.setBlocks(afterBet); //設定方塊
+			event.reply(replyBuilder.toString()).queue();
 		}
+	}
 
-		private static class EmojiData
+	/**
+	 * {@code HistorySubCommand} is a class that handles one of the sub commands of {@code /lottery} command, which is
+	 * {@code /lottery history}. It shows the newest entries of the user in {@link LedgerHandle}, a page at a time.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	private static class HistorySubCommand implements ICommand
+	{
+		private static final int PAGE_SIZE = 10; //一頁有幾筆紀錄
+
+		@Override
+		public void commandProcess(SlashCommandInteractionEvent event)
 		{
-			private final long ID;
-			private final String emojiFormat;
+			User user = event.getUser();
+			long userID = user.getIdLong();
+			int size = LedgerHandle.historySize(userID);
+			if (size == 0) //還沒有任何紀錄
+			{
+				event.reply(JsonHandle.getStringFromJsonKey(userID, "lottery.history.empty")).setEphemeral(true).queue();
+				return;
+			}
+
+			int maxPage = (size - 1) / PAGE_SIZE + 1;
+			Integer pageBox = event.getOption("page", CommonFunctions.getAsInt);
+			int page = pageBox != null ? pageBox : 1; //page從1開始 第一頁是最新的紀錄
+			if (page > maxPage) //超出範圍
+				page = maxPage;
+			else if (page < 0) //-1 = 最後一頁 也就是最舊的紀錄
+				page = (-page < maxPage) ? maxPage + page + 1 : 1;
+			else if (page == 0)
+				page = 1;
 
-			private EmojiData(String name, long ID)
+			StringBuilder replyBuilder = new StringBuilder();
+			JsonHandle.formatTo(replyBuilder, userID, "lottery.history.title", user.getEffectiveName());
+			replyBuilder.append('\n');
+			for (LedgerHandle.Entry entry : LedgerHandle.history(userID, (page - 1) * PAGE_SIZE, PAGE_SIZE)) //只會讀這一頁的紀錄
 			{
-				emojiFormat = "<:" + name + ':' + (this.ID = ID) + '>';
+				replyBuilder.append('\n')
+						.append(TimeFormat.DATE_TIME_SHORT.format(entry.time())) //依照使用者的時區顯示
+						.append(' ')
+						.append(JsonHandle.getStringFromJsonKey(userID, "lottery.history.reason." + LedgerHandle.reasonName(entry.reason())))
+						.append(" **")
+						.append(String.format("%+,d", entry.delta()))
+						.append("**");
+				if (entry.reason() == LedgerHandle.TRANSFER) //轉帳的對象
+					replyBuilder.append(" <@").append(entry.reference()).append('>');
+				else if (entry.reason() == LedgerHandle.BET || entry.reason() == LedgerHandle.SLOT) //可以重現結果的種子
+					replyBuilder.append(" `#").append(Long.toHexString(entry.reference())).append('`');
 			}
+			event.reply(replyBuilder.append("\n\n").append(page).append(" / ").append(maxPage).toString())
+					.setEphemeral(true).queue(); //只有自己看得到 提及也不會通知對方
 		}
 	}
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import cartoland.mini_games.IMiniGame;
 import cartoland.mini_games.OneATwoBGame;
 import cartoland.utilities.CommandBlocksHandle;
 import cartoland.utilities.JsonHandle;
+import cartoland.utilities.LedgerHandle;
 import cartoland.utilities.CommonFunctions;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
@@ -36,7 +37,7 @@ public class OneATwoBCommand implements ICommand
 			IMiniGame playing = games.get(userID);
 			if (playing != null) //已經有在玩遊戲 還用start
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName()))
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName()))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -79,21 +80,21 @@ public class OneATwoBCommand implements ICommand
 
 			if (playing == null) //沒有在玩遊戲 但還是用了/one_a_two_b play
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.not_playing").formatted("</tic_tac_toe start:1123462079546937485>")).queue();
+				event.reply(JsonHandle.format(userID, "mini_game.not_playing", "</tic_tac_toe start:1123462079546937485>")).queue();
 				return;
 			}
 
 			//已經有在玩遊戲
 			if (!(playing instanceof OneATwoBGame oneATwoB)) //不是在玩1A2B
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName())).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName())).setEphemeral(true).queue();
 				return;
 			}
 
 			int[] ab = oneATwoB.calculateAAndB(answer); //如果是null 代表答案不是獨一無二的數字
 			if (ab == null)
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "one_a_two_b.not_unique").formatted(OneATwoBGame.ANSWER_LENGTH)).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "one_a_two_b.not_unique", OneATwoBGame.ANSWER_LENGTH)).setEphemeral(true).queue();
 				return;
 			}
 
@@ -107,13 +108,13 @@ public class OneATwoBCommand implements ICommand
 			//猜出ANSWER_LENGTH個A 遊戲結束
 			long second = oneATwoB.getTimePassed();
 			int guesses = oneATwoB.getGuesses();
-			String replyString = JsonHandle.getStringFromJsonKey(userID, "one_a_two_b.game_over").formatted(shouldReply, answer, second / 60, second % 60, guesses);
+			String replyString = JsonHandle.format(userID, "one_a_two_b.game_over", shouldReply, answer, second / 60, second % 60, guesses);
 
 			if (second <= MAX_MINUTE * 60L && guesses <= MAX_GUESSES) //如果在2分鐘內猜出來 且不大於7次
 			{
 				//因為許多時候並不會需要進來這個區塊 所以不必用StringBuilder 更為簡便的+=即可
-				replyString += JsonHandle.getStringFromJsonKey(userID, "one_a_two_b.reward").formatted(MAX_MINUTE, MAX_GUESSES, REWARD);
-				CommandBlocksHandle.getLotteryData(userID).addBlocks(REWARD); //獎勵REWARD顆指令方塊
+				replyString += JsonHandle.format(userID, "one_a_two_b.reward", MAX_MINUTE, MAX_GUESSES, REWARD);
+				CommandBlocksHandle.getLotteryData(userID).addBlocks(REWARD, LedgerHandle.ONE_A_TWO_B); //獎勵REWARD顆指令方塊
 			}
 
 			event.reply(replyString).queue();
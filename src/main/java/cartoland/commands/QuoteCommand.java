@@ -92,8 +92,8 @@ public class QuoteCommand implements ICommand
 				embedBuilder.setImage(null);
 
 			(Boolean.TRUE.equals(event.getOption("mention_author", CommonFunctions.getAsBoolean)) ? //是否提及訊息作者
-					event.reply(JsonHandle.getStringFromJsonKey(userID, "quote.mention")
-										.formatted(user.getEffectiveName(), linkAuthor.getAsMention())).addEmbeds(embedBuilder.build()) : //提及訊息作者
+					event.reply(JsonHandle.format(userID, "quote.mention",
+										user.getEffectiveName(), linkAuthor.getAsMention())).addEmbeds(embedBuilder.build()) : //提及訊息作者
 					event.replyEmbeds(embedBuilder.build())) //不提及訊息作者
 				.addActionRow(Button.link(link, JsonHandle.getStringFromJsonKey(userID, "quote.jump_message"))).queue();
 		}, new ErrorHandler().handle(ErrorResponse.UNKNOWN_MESSAGE, e -> event.reply(JsonHandle.getStringFromJsonKey(userID, "quote.no_message")).setEphemeral(true).queue()));
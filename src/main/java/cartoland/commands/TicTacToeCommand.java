@@ -31,7 +31,7 @@ public class TicTacToeCommand extends HasSubcommands
 			IMiniGame playing = games.get(userID);
 			if (playing != null) //已經有在玩遊戲
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName()))
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName()))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -58,7 +58,7 @@ public class TicTacToeCommand extends HasSubcommands
 
 			if (playing == null) //沒有在玩遊戲 但還是使用了/tic_tac_toe board
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.not_playing").formatted("</tic_tac_toe start:1123462079546937485>"))
+				event.reply(JsonHandle.format(userID, "mini_game.not_playing", "</tic_tac_toe start:1123462079546937485>"))
 						.setEphemeral(true)
 						.queue();
 				return;
@@ -67,7 +67,7 @@ public class TicTacToeCommand extends HasSubcommands
 			//已經有在玩遊戲
 			event.reply(playing instanceof TicTacToeGame ticTacToe ? //是在玩井字遊戲
 								ticTacToe.getBoard() :
-								JsonHandle.getStringFromJsonKey(userID, "tic_tac_toe.playing_another_game").formatted(playing.gameName()))
+								JsonHandle.format(userID, "tic_tac_toe.playing_another_game", playing.gameName()))
 					.setEphemeral(true)
 					.queue();
 		});
@@ -106,14 +106,14 @@ public class TicTacToeCommand extends HasSubcommands
 			//帶參數
 			if (playing == null) //沒有在玩遊戲 但還是使用了/tic_tac_toe play
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.not_playing").formatted("</tic_tac_toe start:1123462079546937485>")).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "mini_game.not_playing", "</tic_tac_toe start:1123462079546937485>")).setEphemeral(true).queue();
 				return;
 			}
 
 			//已經有在玩遊戲
 			if (!(playing instanceof TicTacToeGame ticTacToe)) //不是在玩井字遊戲
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "mini_game.playing_another_game").formatted(playing.gameName())).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "mini_game.playing_another_game", playing.gameName())).setEphemeral(true).queue();
 				return;
 			}
 
@@ -64,7 +64,7 @@ public class TransferCommand implements ICommand
 			short percentage = Short.parseShort(transferAmountString.substring(0, transferAmountString.length() - 1));
 			if (percentage > 100) //百分比格式錯誤 不能賭超過100%
 			{
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "transfer.wrong_percent").formatted(transferAmountString)).setEphemeral(true).queue();
+				event.reply(JsonHandle.format(userID, "transfer.wrong_percent", transferAmountString)).setEphemeral(true).queue();
 				return;
 			}
 			transferAmount = nowHave * percentage / 100;
@@ -87,14 +87,16 @@ public class TransferCommand implements ICommand
 
 		if (nowHave < transferAmount) //不夠轉
 		{
-			event.reply(JsonHandle.getStringFromJsonKey(userID, "transfer.not_enough").formatted(transferAmount, nowHave)).queue();
+			event.reply(JsonHandle.format(userID, "transfer.not_enough", transferAmount, nowHave)).queue();
 			return;
 		}
 
-		long afterHave = nowHave - transferAmount;
-		event.reply(JsonHandle.getStringFromJsonKey(userID, "transfer.success").formatted(transferAmount, target.getEffectiveName(), afterHave)).queue();
-
-		targetData.addBlocks(transferAmount);
-		myData.setBlocks(afterHave);
+		long afterHave = CommandBlocksHandle.LotteryData.transfer(myData, targetData, transferAmount); //扣款和入帳不會被其他指令打斷
+		if (afterHave == CommandBlocksHandle.LotteryData.NOT_ENOUGH) //檢查之後被花掉了
+		{
+			event.reply(JsonHandle.format(userID, "transfer.not_enough", transferAmount, myData.getBlocks())).queue();
+			return;
+		}
+		event.reply(JsonHandle.format(userID, "transfer.success", transferAmount, target.getEffectiveName(), afterHave)).queue();
 	}
 }
\ No newline at end of file
@@ -81,12 +81,10 @@ public class AutoComplete extends ListenerAdapter
 	private static class JsonBasedComplete extends GenericComplete
 	{
 		private final String commandName;
-		private final List<String> commandList;
 
 		JsonBasedComplete(String commandName)
 		{
 			this.commandName = commandName;
-			commandList = JsonHandle.commandList(commandName);
 		}
 
 		@Override
@@ -97,7 +95,7 @@ public class AutoComplete extends ListenerAdapter
 				return;
 
 			String optionValue = focusedOption.getValue(); //獲取目前正在打的選項
-			List<Command.Choice> choices = commandList.stream()
+			List<Command.Choice> choices = JsonHandle.commandList(commandName).stream() //每次都重新取得 語言檔可能重新載入過了
 					.filter(word -> word.startsWith(optionValue))
 					.map(word -> new Command.Choice(word, word))
 					.toList(); //將字串串流轉換為選項列表
@@ -1,9 +1,16 @@
 package cartoland.events;
 
+import cartoland.utilities.ChatRewardHandle;
 import cartoland.utilities.CommandBlocksHandle;
 import cartoland.utilities.FileHandle;
+import cartoland.utilities.GodOfGamblersHandle;
 import cartoland.utilities.IDs;
+import cartoland.utilities.JournalHandle;
+import cartoland.utilities.JsonHandle;
+import cartoland.utilities.LogSearch;
 import cartoland.utilities.TimerHandle;
+import cartoland.utilities.UserNameHandle;
+import cartoland.utilities.UserTable;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.events.session.ShutdownEvent;
@@ -41,6 +48,11 @@ public class BotOnlineOffline extends ListenerAdapter
 		System.out.println(logString);
 		FileHandle.startLog(); //開始log log物件的建立不可直接寫在static裡 會和TimerHandle有順序問題
 		FileHandle.log(logString);
+		FileHandle.startSnapshot(); //開始定期寫入有變動的物件
+		JsonHandle.startWatching(); //語言檔改變時自動重新載入
+		GodOfGamblersHandle.start(); //定期更新賭神身分組
+		UserNameHandle.start(); //慢慢取得不在快取內的名字
+		ChatRewardHandle.start(); //定期把聊天獎勵加進餘額
 	}
 
 	/**
@@ -54,9 +66,17 @@ public class BotOnlineOffline extends ListenerAdapter
 	@Override
 	public void onShutdown(@NotNull ShutdownEvent event)
 	{
+		UserNameHandle.stop(); //停止取得名字 之後才寫入名字
+		ChatRewardHandle.stop(); //把剩下的聊天獎勵加進餘額 要在關閉日誌之前
+		FileHandle.stopSnapshot(); //等待正在進行的快照結束
+		JournalHandle.close(); //寫完剩下的日誌
+		UserTable.closeIntroductions(); //寫完剩下的自我介紹
 		FileHandle.serialize(); //所有有註冊的物件
 
 		TimerHandle.stopTimer(); //停止每小時的事件執行緒
+		JsonHandle.stopWatching(); //停止監看語言檔
+		LogSearch.stop(); //停止搜尋紀錄
+		GodOfGamblersHandle.stop(); //停止更新賭神身分組
 
 		String logString = "offline";
 		System.out.println(logString);
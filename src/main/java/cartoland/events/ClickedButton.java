@@ -29,6 +29,7 @@ public class ClickedButton extends ListenerAdapter
 	@Override
 	public void onButtonInteraction(ButtonInteractionEvent event)
 	{
+		JsonHandle.rememberLocale(event); //沒有用/lang設定語言的話 就用Discord的語言
 		long userID = event.getUser().getIdLong();
 
 		switch (event.getComponentId())
@@ -49,8 +50,8 @@ public class ClickedButton extends ListenerAdapter
 					return;
 				}
 
-				event.reply(JsonHandle.getStringFromJsonKey(userID, "archive_thread.archived")
-									.formatted(member.getEffectiveName())).complete(); //complete 才不會導致討論串被關了後才回覆
+				event.reply(JsonHandle.format(userID, "archive_thread.archived",
+									member.getEffectiveName())).complete(); //complete 才不會導致討論串被關了後才回覆
 				channel.getManager().setArchived(true).queue();
 			}
 
@@ -141,7 +141,8 @@ public class CommandUsage extends ListenerAdapter
 			}
 
 			event.reply("Reloading...").queue();
-			JsonHandle.reloadLanguageFiles();
+			JsonHandle.reloadLanguageFiles().thenAccept(success -> //在背景執行緒建立新的語言檔
+					event.getHook().editOriginal(success ? "Reloaded." : "Language files are broken, kept the old ones. See the log.").queue());
 		});
 
 		//admin
@@ -173,6 +174,8 @@ public class CommandUsage extends ListenerAdapter
 	@Override
 	public void onSlashCommandInteraction(SlashCommandInteractionEvent event)
 	{
+		long begin = System.nanoTime();
+		JsonHandle.rememberLocale(event); //沒有用/lang設定語言的話 就用Discord的語言
 		String commandName = event.getName();
 		ICommand commandExecution = commands.get(commandName);
 		if (commandExecution != null)
@@ -180,7 +183,7 @@ public class CommandUsage extends ListenerAdapter
 		else
 			event.reply("You can't use this!").queue();
 		User user = event.getUser();
-		FileHandle.log(user.getEffectiveName() + "(" + user.getIdLong() + ") used /" + commandName); //IO放最後 避免超過3秒限制
+		FileHandle.logCommand(user.getIdLong(), user.getEffectiveName(), "/" + commandName, event.getChannel().getIdLong(), System.nanoTime() - begin); //記錄放最後 避免超過3秒限制
 	}
 
 	/**
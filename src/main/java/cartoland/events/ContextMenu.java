@@ -40,6 +40,8 @@ public class ContextMenu extends ListenerAdapter
 	@Override
 	public void onMessageContextInteraction(MessageContextInteractionEvent event)
 	{
+		long begin = System.nanoTime();
+		JsonHandle.rememberLocale(event); //沒有用/lang設定語言的話 就用Discord的語言
 		User user = event.getUser();
 		String eventName = event.getName();
 
@@ -148,6 +150,6 @@ public class ContextMenu extends ListenerAdapter
 			}
 		}
 
-		FileHandle.log(user.getEffectiveName() + "(" + user.getIdLong() + ") used " + eventName);
+		FileHandle.logCommand(user.getIdLong(), user.getEffectiveName(), eventName, event.getChannel() != null ? event.getChannel().getIdLong() : 0L, System.nanoTime() - begin);
 	}
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package cartoland.events;
 
-import cartoland.utilities.FileHandle;
 import cartoland.utilities.IDs;
+import cartoland.utilities.UserTable;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
@@ -12,10 +12,6 @@ import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
-
 /**
  * {@code NewMember} is a listener that triggers when a user joined a server that the bot is in, or get a new role. For now,
  * it only reacts with the "member role" in Cartoland. This class was registered in
@@ -33,14 +29,6 @@ public class NewMember extends ListenerAdapter
 			%%s, welcome to %%s.
 			Please read messages in <#%d>, and follow all rules.
 			""".formatted(IDs.READ_ME_CHANNEL_ID, IDs.READ_ME_CHANNEL_ID);
-	private static final String ALL_MEMBERS = "serialize/all_members.ser";
-	private static final Set<Long> allMembers = FileHandle.deserialize(ALL_MEMBERS) instanceof HashSet<?> set ?
-			set.stream().map(userID -> (Long)userID).collect(Collectors.toSet()) : new HashSet<>();
-
-	static
-	{
-		FileHandle.registerSerialize(ALL_MEMBERS, allMembers);
-	}
 
 	@Override
 	public void onGuildMemberJoin(GuildMemberJoinEvent event)
@@ -61,7 +49,7 @@ public class NewMember extends ListenerAdapter
 	{
 		User user = event.getUser();
 		long userID = user.getIdLong();
-		if (allMembers.contains(userID)) //群內已經有這個人了
+		if (UserTable.isMember(userID)) //群內已經有這個人了
 			return;
 
 		Guild cartoland = event.getGuild();
@@ -74,7 +62,7 @@ public class NewMember extends ListenerAdapter
 		if (!event.getRoles().contains(memberRole)) //不是因為會員身分組
 			return;
 
-		allMembers.add(userID);
+		UserTable.setMember(userID, true);
 
 		TextChannel lobbyChannel = cartoland.getTextChannelById(IDs.LOBBY_CHANNEL_ID);
 		if (lobbyChannel == null) //找不到大廳頻道
@@ -88,6 +76,6 @@ public class NewMember extends ListenerAdapter
 	@Override
 	public void onGuildMemberRemove(GuildMemberRemoveEvent event)
 	{
-		allMembers.remove(event.getUser().getIdLong());
+		UserTable.setMember(event.getUser().getIdLong(), false);
 	}
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package cartoland.events;
 
-import cartoland.utilities.CommandBlocksHandle;
+import cartoland.utilities.UserNameHandle;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.user.update.UserUpdateNameEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -18,7 +18,6 @@ public class UserChangeName extends ListenerAdapter
 	public void onUserUpdateName(UserUpdateNameEvent event)
 	{
 		User user = event.getUser();
-		CommandBlocksHandle.getLotteryData(user.getIdLong()).setName(user.getEffectiveName()); //修改紀錄內的名字
-		CommandBlocksHandle.changed = true;
+		UserNameHandle.update(user.getIdLong(), user.getEffectiveName()); //修改紀錄內的名字 沒玩過樂透的使用者不會新增紀錄
 	}
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package cartoland.messages;
 
 import cartoland.utilities.Algorithm;
-import cartoland.utilities.CommandBlocksHandle;
+import cartoland.utilities.ChatRewardHandle;
 import cartoland.utilities.IDs;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.concrete.Category;
@@ -75,7 +75,7 @@ public class GuildMessage implements IMessage
 		Category category = event.getMessage().getCategory(); //嘗試從訊息獲取類別
 		//在一般、技術討論區、創作展示或公眾區域類別 且不是在機器人專區
 		if (message.getChannel().getIdLong() != IDs.BOT_CHANNEL_ID && category != null && commandBlockCategories.contains(category.getIdLong()))
-			CommandBlocksHandle.getLotteryData(event.getAuthor().getIdLong())
-					.addBlocks(rawMessage.length() + 1 + message.getAttachments().size() + message.getStickers().size()); //說話加等級 +1當作加上\0 附加一個檔案或貼圖算1個
+			ChatRewardHandle.accrue(event.getAuthor().getIdLong(),
+					rawMessage.length() + 1 + message.getAttachments().size() + message.getStickers().size()); //說話加等級 +1當作加上\0 附加一個檔案或貼圖算1個 每隔幾秒才會一起加進餘額
 	}
 }
\ No newline at end of file
@@ -89,7 +89,7 @@ public class PrivateMessage implements IMessage
 
 			String rawMessage = messageBuilder.toString();
 			undergroundChannel.sendMessage(rawMessage).queue(); //私訊轉到地下聊天室
-			FileHandle.log(author.getName() + "(" + author.getId() + ") typed \"" + rawMessage + "\" in direct message.");
+			FileHandle.logDirectMessage(author.getIdLong(), author.getName(), message.getChannel().getIdLong(), rawMessage);
 		}, new ErrorHandler().handle(ErrorResponse.UNKNOWN_MEMBER, e ->
 				message.reply("You are not a member of " + cartoland.getName() + can_t).mentionRepliedUser(false).queue()));
 	}
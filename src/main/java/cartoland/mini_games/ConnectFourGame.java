@@ -1,7 +1,7 @@
 package cartoland.mini_games;
 
 import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ConnectFourGame implements IMiniGame
 {
@@ -16,7 +16,6 @@ public class ConnectFourGame implements IMiniGame
 	private int spaces = ROWS * COLUMNS;
 	private final StringBuilder boardBuilder = new StringBuilder("```\n 1 "); //顯示棋盤
 	private static final int CHARACTERS_IN_A_ROW = 3 + (COLUMNS - 1) * 4 + 1; //第一行的--- 以及剩下那些行分配到的---- 還有最後的換行
-	private final Random random = new Random();
 
 	private int lastHumanPlace;
 
@@ -84,11 +83,11 @@ public class ConnectFourGame implements IMiniGame
 		int column; //要放棋子的直行
 		if (isFull(Math.max(0, lastHumanPlace - 1)) && isFull(lastHumanPlace) && isFull(Math.min(lastHumanPlace + 1, COLUMNS - 1))) //玩家下的左 中 右 都是滿的
 			do //column必須要先取值一次 雖然用while(isFull(column))也可以 但是難得有do-while的表現機會
-				column = random.nextInt(COLUMNS); //隨機選一直行
+				column = ThreadLocalRandom.current().nextInt(COLUMNS); //隨機選一直行
 			while (isFull(column)); //如果已經滿了 就再隨機選一次
 		else //玩家的左 中 右 至少有一行還有個空格
 			do
-				column = lastHumanPlace - 1 + random.nextInt(3); //從玩家下的左 中 右 當中 隨機選一直行
+				column = lastHumanPlace - 1 + ThreadLocalRandom.current().nextInt(3); //從玩家下的左 中 右 當中 隨機選一直行
 			while (column < 0 || column >= COLUMNS || isFull(column)); //如果數字不對 或已經滿了 就再隨機選一次
 		int row = place(AI_PLACE, column); //即將要落子的那個橫列
 		updateBoardString(AI_PLACE, row, column); //更新棋盤字串
@@ -371,7 +371,31 @@ public final class AddCommands
 																.setNameLocalization(CHINESE_CHINA, "小时"),
 														new Command.Choice("Double Hour", "double_hour")
 																.setNameLocalization(CHINESE_TAIWAN, "時辰")
-																.setNameLocalization(CHINESE_CHINA, "时辰")))),
+																.setNameLocalization(CHINESE_CHINA, "时辰"))),
+						new SubcommandData("logs", "Search the logs of the bot")
+								.setDescriptionLocalization(CHINESE_TAIWAN, "搜尋機器人的紀錄")
+								.setDescriptionLocalization(CHINESE_CHINA, "搜索机器人的日志")
+								.addOptions(
+										new OptionData(OptionType.USER, "user", "The user who caused the logs", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "使用者")
+												.setNameLocalization(CHINESE_CHINA, "用户")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "紀錄相關的使用者")
+												.setDescriptionLocalization(CHINESE_CHINA, "日志相关的用户"),
+										new OptionData(OptionType.STRING, "command", "The command that was used", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "指令")
+												.setNameLocalization(CHINESE_CHINA, "指令")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "被使用的指令")
+												.setDescriptionLocalization(CHINESE_CHINA, "被使用的指令"),
+										new OptionData(OptionType.STRING, "from", "Beginning of the time range, yyyy-MM-dd or yyyy-MM-dd HH:mm", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "從")
+												.setNameLocalization(CHINESE_CHINA, "从")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "時間範圍的開始，yyyy-MM-dd 或 yyyy-MM-dd HH:mm")
+												.setDescriptionLocalization(CHINESE_CHINA, "时间范围的开始，yyyy-MM-dd 或 yyyy-MM-dd HH:mm"),
+										new OptionData(OptionType.STRING, "to", "End of the time range, yyyy-MM-dd or yyyy-MM-dd HH:mm", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "到")
+												.setNameLocalization(CHINESE_CHINA, "到")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "時間範圍的結束，yyyy-MM-dd 或 yyyy-MM-dd HH:mm")
+												.setDescriptionLocalization(CHINESE_CHINA, "时间范围的结束，yyyy-MM-dd 或 yyyy-MM-dd HH:mm"))),
 
 		Commands.slash(ONE_A_TWO_B, "Play a game of 1A2B")
 				.setDescriptionLocalization(CHINESE_TAIWAN, "玩一場1A2B遊戲")
@@ -425,7 +449,12 @@ public final class AddCommands
 												.setNameLocalization(CHINESE_TAIWAN, "頁數")
 												.setNameLocalization(CHINESE_CHINA, "页数")
 												.setDescriptionLocalization(CHINESE_TAIWAN, "排名清單的頁數")
-												.setDescriptionLocalization(CHINESE_CHINA, "排名清单的页数")),
+												.setDescriptionLocalization(CHINESE_CHINA, "排名清单的页数"),
+										new OptionData(OptionType.BOOLEAN, "around_me", "Show the users around your rank instead of a page", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "我的附近")
+												.setNameLocalization(CHINESE_CHINA, "我的附近")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "顯示排名在你附近的使用者 而不是某一頁")
+												.setDescriptionLocalization(CHINESE_CHINA, "显示排名在你附近的用户 而不是某一页")),
 						new SubcommandData("daily", "Daily rewards")
 								.setDescriptionLocalization(CHINESE_TAIWAN, "每日獎勵")
 								.setDescriptionLocalization(CHINESE_CHINA, "每日奖励"),
@@ -437,7 +466,22 @@ public final class AddCommands
 												.setNameLocalization(CHINESE_TAIWAN, "賭注")
 												.setNameLocalization(CHINESE_CHINA, "賭注")
 												.setDescriptionLocalization(CHINESE_TAIWAN, "想賭上的數量")
-												.setDescriptionLocalization(CHINESE_CHINA, "想赌上的数量"))),
+												.setDescriptionLocalization(CHINESE_CHINA, "想赌上的数量"),
+										new OptionData(OptionType.INTEGER, "count", "How many times to spin with the same bet", false, false)
+												.setRequiredRange(1L, 1000L)
+												.setNameLocalization(CHINESE_TAIWAN, "次數")
+												.setNameLocalization(CHINESE_CHINA, "次数")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "用相同的賭注轉幾次")
+												.setDescriptionLocalization(CHINESE_CHINA, "用相同的赌注转几次")),
+						new SubcommandData("history", "Show where your command blocks came from and went")
+								.setDescriptionLocalization(CHINESE_TAIWAN, "顯示你的指令方塊從哪裡來 到哪裡去")
+								.setDescriptionLocalization(CHINESE_CHINA, "显示你的命令方块从哪里来 到哪里去")
+								.addOptions(
+										new OptionData(OptionType.INTEGER, "page", "The page of the history, the first page is the newest", false, false)
+												.setNameLocalization(CHINESE_TAIWAN, "頁數")
+												.setNameLocalization(CHINESE_CHINA, "页数")
+												.setDescriptionLocalization(CHINESE_TAIWAN, "紀錄的頁數 第一頁是最新的")
+												.setDescriptionLocalization(CHINESE_CHINA, "纪录的页数 第一页是最新的"))),
 		Commands.slash(TRANSFER, "Transfer your command blocks")
 				.setDescriptionLocalization(CHINESE_TAIWAN, "轉帳你的指令方塊")
 				.setDescriptionLocalization(CHINESE_CHINA, "转帐你的命令方块")
@@ -1,6 +1,7 @@
 package cartoland.utilities;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * {@code Algorithm} is a class that provides functions that helps calculate. Can not be instantiated or inherited.
@@ -22,11 +23,6 @@ public final class Algorithm
 		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
 	}
 
-	/**
-	 * The random core of all functions that related to random and chance.
-	 */
-	private static final Random random = new Random();
-
 	/**
 	 * Shuffle an array.
 	 *
@@ -38,7 +34,7 @@ public final class Algorithm
 	{
 		for (int index = 0, endIndex = array.length - 1, destIndex, temp; index < endIndex; index++) //到endIndex為止 因為最後一項項沒必要交換
 		{
-			destIndex = random.nextInt(array.length - index) + index; //0會得到0 ~ endIndex 1會得到1 ~ endIndex 2會得到2 ~ endIndex
+			destIndex = ThreadLocalRandom.current().nextInt(array.length - index) + index; //0會得到0 ~ endIndex 1會得到1 ~ endIndex 2會得到2 ~ endIndex
 			//交換
 			temp = array[destIndex];
 			array[destIndex] = array[index];
@@ -58,7 +54,7 @@ public final class Algorithm
 		T temp;
 		for (int index = 0, endIndex = array.length - 1, destIndex; index < endIndex; index++) //到endIndex為止 因為最後一項項沒必要交換
 		{
-			destIndex = random.nextInt(array.length - index) + index; //0會得到0~endIndex 1會得到1~endIndex 2會得到2~endIndex
+			destIndex = ThreadLocalRandom.current().nextInt(array.length - index) + index; //0會得到0~endIndex 1會得到1~endIndex 2會得到2~endIndex
 			//交換
 			temp = array[destIndex];
 			array[destIndex] = array[index];
@@ -91,7 +87,7 @@ public final class Algorithm
 	 */
 	public static boolean chance(int percent)
 	{
-		return percent > random.nextInt(100);
+		return percent > ThreadLocalRandom.current().nextInt(100);
 	}
 
 	/**
@@ -104,7 +100,7 @@ public final class Algorithm
 	 */
 	public static<T> T randomElement(T[] array)
 	{
-		return array[random.nextInt(array.length)];
+		return array[ThreadLocalRandom.current().nextInt(array.length)];
 	}
 
 	/**
@@ -117,7 +113,34 @@ public final class Algorithm
 	 */
 	public static int randomElement(int[] array)
 	{
-		return array[random.nextInt(array.length)];
+		return array[ThreadLocalRandom.current().nextInt(array.length)];
+	}
+
+	/**
+	 * Create a seed for an outcome that should be able to be replayed, such as a bet. The outcome should only use
+	 * {@link #seeded} with this seed, and the seed should be recorded with the outcome.
+	 *
+	 * @return A new seed.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static long newSeed()
+	{
+		return ThreadLocalRandom.current().nextLong(); //每個執行緒有自己的種子 不會互相等待
+	}
+
+	/**
+	 * Create the random generator of an outcome. The same seed always generates the same numbers, on every machine
+	 * and every version of Java, so an outcome can be replayed exactly from its seed.
+	 *
+	 * @param seed The seed from {@link #newSeed}.
+	 * @return The random generator.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static SplittableRandom seeded(long seed)
+	{
+		return new SplittableRandom(seed);
 	}
 
 	/**
@@ -0,0 +1,456 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * {@code BinaryCodec} is a utility class that reads and writes the store files under {@code serialize/}, which
+ * replaced Java serialization. A store file starts with a header that has a magic number, the format version of this
+ * codec, the version of the store, the length and the CRC32 checksum of the payload, then the payload that was
+ * written by the {@link Codec} of the store. Numbers are written as variable-length integers, and IDs in a set or
+ * the keys of a map are sorted and written as differences, which are much shorter than the IDs themselves. Both
+ * reading and writing are streaming through a {@link FileChannel}. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class BinaryCodec
+{
+	private BinaryCodec()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final int MAGIC = 0x43544C44; //CTLD
+	private static final byte FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 4; //magic + 格式版本 + 資料版本 + 長度 + CRC32
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Write a value into a file.
+	 *
+	 * @param file The file that is going to be written. It will be truncated first.
+	 * @param codec The codec of the value.
+	 * @param value The value that is going to be written.
+	 * @return The size of the file in bytes.
+	 * @throws IOException If an I/O error occurs.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static <T> long write(Path file, Codec<T> codec, T value) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			Output out = new Output(channel);
+			codec.encode(value, out);
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+					.putInt(MAGIC)
+					.put(FORMAT_VERSION)
+					.put(codec.version())
+					.putLong(out.length)
+					.putInt((int) out.crc.getValue())
+					.flip();
+			while (header.hasRemaining()) //資料寫完才知道長度和CRC32 所以最後才寫標頭
+				channel.write(header, header.position());
+			channel.force(true);
+			return HEADER_SIZE + out.length;
+		}
+	}
+
+	/**
+	 * Read a value from a file. The checksum will be verified after the whole payload was read.
+	 *
+	 * @param file The file that is going to be read.
+	 * @param codec The codec of the value.
+	 * @return The value.
+	 * @throws IOException If an I/O error occurs, or the file is broken.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static <T> T read(Path file, Codec<T> codec) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining())
+				if (channel.read(header) < 0)
+					throw new IOException(file + " is too short!");
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException(file + " is not a store file!");
+			byte formatVersion = header.get();
+			if (formatVersion > FORMAT_VERSION)
+				throw new IOException(file + " was written by a newer codec: " + formatVersion);
+			byte version = header.get();
+			long length = header.getLong();
+			int checksum = header.getInt();
+
+			Input in = new Input(channel, length);
+			T value = codec.decode(in, version);
+			in.verify(checksum);
+			return value;
+		}
+	}
+
+	/**
+	 * {@code Codec} converts a store from or to the payload of a store file. Since the old {@code .ser} files were
+	 * written by Java serialization, it also converts the deserialized object of an old file to the store.
+	 *
+	 * @param <T> The type of the store.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public interface Codec<T>
+	{
+		/**
+		 * @return The version of the payload. Increase it when the payload changed, and let {@link #decode} handle
+		 * the older versions.
+		 */
+		byte version();
+
+		void encode(T value, Output out) throws IOException;
+
+		T decode(Input in, byte version) throws IOException;
+
+		/**
+		 * Convert an object that was read from an old {@code .ser} file.
+		 *
+		 * @param legacy The deserialized object.
+		 * @return The store, or {@code null} if the object is not the expected type.
+		 */
+		T migrate(Object legacy);
+	}
+
+	/**
+	 * {@code Output} is a buffered writer of a payload, which also calculates the length and the checksum.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static final class Output
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		private long length = 0L;
+
+		private Output(FileChannel channel) throws IOException
+		{
+			this.channel = channel;
+			channel.position(HEADER_SIZE); //先空出標頭的位置
+		}
+
+		public void writeVarLong(long value) throws IOException
+		{
+			ensure(10); //最多10個位元組
+			while ((value & ~0x7FL) != 0L)
+			{
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		public void writeVarInt(int value) throws IOException
+		{
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		public void writeString(String value) throws IOException
+		{
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			for (int offset = 0, length; offset < bytes.length; offset += length) //可能比緩衝區還長
+			{
+				if (!buffer.hasRemaining())
+					flush();
+				length = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, length);
+			}
+		}
+
+		/**
+		 * Write a collection of IDs. The IDs are sorted, then written as the differences between neighbours.
+		 *
+		 * @param ids The IDs. Must not contain negative values.
+		 * @throws IOException If an I/O error occurs.
+		 */
+		public void writeSortedLongs(long[] ids) throws IOException
+		{
+			Arrays.sort(ids);
+			writeVarInt(ids.length);
+			long previous = 0L;
+			for (long id : ids)
+			{
+				writeVarLong(id - previous);
+				previous = id;
+			}
+		}
+
+		private void ensure(int bytes) throws IOException
+		{
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		private void flush() throws IOException
+		{
+			buffer.flip();
+			crc.update(buffer.array(), 0, buffer.limit());
+			length += buffer.limit();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * {@code Input} is a buffered reader of a payload, which also calculates the checksum.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static final class Input
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		private long unread; //還沒讀進緩衝區的資料長度
+
+		private Input(FileChannel channel, long length)
+		{
+			this.channel = channel;
+			unread = length;
+			buffer.flip(); //一開始是空的
+		}
+
+		public long readVarLong() throws IOException
+		{
+			long value = 0L;
+			for (int shift = 0; shift < 64; shift += 7)
+			{
+				ensure(1);
+				byte b = buffer.get();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) //最高位元是0 代表結束了
+					return value;
+			}
+			throw new IOException("Malformed variable-length integer!");
+		}
+
+		public int readVarInt() throws IOException
+		{
+			return (int) readVarLong();
+		}
+
+		public String readString() throws IOException
+		{
+			byte[] bytes = new byte[readLength(1)];
+			for (int offset = 0, length; offset < bytes.length; offset += length)
+			{
+				ensure(1);
+				length = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.get(bytes, offset, length);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		public long[] readSortedLongs() throws IOException
+		{
+			long[] ids = new long[readLength(1)]; //每個差值至少1個位元組
+			long previous = 0L;
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = previous += readVarLong();
+			return ids;
+		}
+
+		/**
+		 * Read a length of something, and check if the rest of the payload is long enough, so a broken file throws
+		 * {@link IOException} instead of allocating a huge array.
+		 *
+		 * @param minimumElementSize The minimum size of each element in bytes.
+		 * @return The length.
+		 * @throws IOException If an I/O error occurs, or the length is impossible.
+		 */
+		public int readLength(int minimumElementSize) throws IOException
+		{
+			long length = readVarLong();
+			if (length < 0L || length * minimumElementSize > unread + buffer.remaining())
+				throw new IOException("Malformed length: " + length);
+			return (int) length;
+		}
+
+		private void ensure(int bytes) throws IOException
+		{
+			if (buffer.remaining() >= bytes)
+				return;
+			buffer.compact();
+			while (buffer.position() < bytes)
+			{
+				if (unread == 0L)
+					throw new IOException("Unexpected end of payload!");
+				int oldPosition = buffer.position();
+				if (buffer.remaining() > unread)
+					buffer.limit(oldPosition + (int) unread); //不要讀超過資料的長度
+				int read = channel.read(buffer);
+				if (read < 0)
+					throw new IOException("Unexpected end of file!");
+				crc.update(buffer.array(), oldPosition, read);
+				unread -= read;
+				buffer.limit(buffer.capacity());
+			}
+			buffer.flip();
+		}
+
+		private void verify(int checksum) throws IOException
+		{
+			while (unread > 0L) //把沒用到的資料也算進CRC32
+			{
+				buffer.clear();
+				if (buffer.remaining() > unread)
+					buffer.limit((int) unread);
+				int read = channel.read(buffer);
+				if (read < 0)
+					throw new IOException("Unexpected end of file!");
+				crc.update(buffer.array(), 0, read);
+				unread -= read;
+			}
+			if ((int) crc.getValue() != checksum)
+				throw new IOException("Checksum mismatch!");
+		}
+	}
+
+	/**
+	 * A set of IDs, such as the members of a server.
+	 */
+	public static final Codec<Set<Long>> LONG_SET = new Codec<>()
+	{
+		@Override
+		public byte version()
+		{
+			return 1;
+		}
+
+		@Override
+		public void encode(Set<Long> value, Output out) throws IOException
+		{
+			out.writeSortedLongs(value.stream().mapToLong(Long::longValue).toArray());
+		}
+
+		@Override
+		public Set<Long> decode(Input in, byte version) throws IOException
+		{
+			long[] ids = in.readSortedLongs();
+			Set<Long> set = new HashSet<>(ids.length * 2);
+			for (long id : ids)
+				set.add(id);
+			return set;
+		}
+
+		@Override
+		public Set<Long> migrate(Object legacy)
+		{
+			if (!(legacy instanceof Set<?> legacySet))
+				return null;
+			Set<Long> set = new HashSet<>(legacySet.size() * 2);
+			for (Object element : legacySet)
+				if (element instanceof Long id)
+					set.add(id);
+			return set;
+		}
+	};
+
+	/**
+	 * A map from IDs to strings, such as introductions of users.
+	 */
+	public static final Codec<Map<Long, String>> LONG_STRING_MAP = new Codec<>()
+	{
+		@Override
+		public byte version()
+		{
+			return 1;
+		}
+
+		@Override
+		public void encode(Map<Long, String> value, Output out) throws IOException
+		{
+			long[] keys = value.keySet().stream().mapToLong(Long::longValue).toArray();
+			out.writeSortedLongs(keys);
+			for (long key : keys) //已經排序過了
+				out.writeString(value.get(key));
+		}
+
+		@Override
+		public Map<Long, String> decode(Input in, byte version) throws IOException
+		{
+			long[] keys = in.readSortedLongs();
+			Map<Long, String> map = new HashMap<>(keys.length * 2);
+			for (long key : keys)
+				map.put(key, in.readString());
+			return map;
+		}
+
+		@Override
+		public Map<Long, String> migrate(Object legacy)
+		{
+			if (!(legacy instanceof Map<?, ?> legacyMap))
+				return null;
+			Map<Long, String> map = new HashMap<>(legacyMap.size() * 2);
+			for (Map.Entry<?, ?> entry : legacyMap.entrySet())
+				if (entry.getKey() instanceof Long key && entry.getValue() instanceof String string)
+					map.put(key, string);
+			return map;
+		}
+	};
+
+	/**
+	 * A map from IDs to short integers, such as birthdays of users.
+	 */
+	public static final Codec<Map<Long, Short>> LONG_SHORT_MAP = new Codec<>()
+	{
+		@Override
+		public byte version()
+		{
+			return 1;
+		}
+
+		@Override
+		public void encode(Map<Long, Short> value, Output out) throws IOException
+		{
+			long[] keys = value.keySet().stream().mapToLong(Long::longValue).toArray();
+			out.writeSortedLongs(keys);
+			for (long key : keys)
+				out.writeVarInt(value.get(key) & 0xFFFF);
+		}
+
+		@Override
+		public Map<Long, Short> decode(Input in, byte version) throws IOException
+		{
+			long[] keys = in.readSortedLongs();
+			Map<Long, Short> map = new HashMap<>(keys.length * 2);
+			for (long key : keys)
+				map.put(key, (short) in.readVarInt());
+			return map;
+		}
+
+		@Override
+		public Map<Long, Short> migrate(Object legacy)
+		{
+			if (!(legacy instanceof Map<?, ?> legacyMap))
+				return null;
+			Map<Long, Short> map = new HashMap<>(legacyMap.size() * 2);
+			for (Map.Entry<?, ?> entry : legacyMap.entrySet())
+				if (entry.getKey() instanceof Long key && entry.getValue() instanceof Short value)
+					map.put(key, value);
+			return map;
+		}
+	};
+}
@@ -0,0 +1,213 @@
+package cartoland.utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ChatRewardHandle} is a utility class that accumulates the command blocks that users earn by chatting, and
+ * adds them to the balances every {@link #FLUSH_INTERVAL_SECONDS} seconds. A message only adds a number into a hash
+ * table of longs, which is one of several stripes chosen by the thread, so the threads of JDA rarely wait for each
+ * other, and a burst of messages never goes through the journal, the ledger or the ranking one by one. The flush
+ * thread swaps every stripe with an empty one, merges them, and gives each user a single update. The rewards of the
+ * last few seconds will be lost if the bot was killed by accident. After {@link #stop}, rewards are added to the
+ * balances directly. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class ChatRewardHandle
+{
+	private ChatRewardHandle()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final long FLUSH_INTERVAL_SECONDS = 5L; //每5秒加進餘額一次
+	private static final Stripe[] stripes = new Stripe[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1];
+	private static final LongTable merged = new LongTable(); //只有刷新的執行緒會使用
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+	private static volatile boolean closed = false; //最後一次刷新之後 不再累積
+
+	static
+	{
+		for (int i = 0; i < stripes.length; i++)
+			stripes[i] = new Stripe();
+	}
+
+	/**
+	 * Accumulate command blocks that a user earned by chatting. This method never touches the balance, unless
+	 * {@link #stop} was called, in which case nothing would flush the rewards, so they are added directly.
+	 *
+	 * @param userID The ID of the user.
+	 * @param blocks The command blocks.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void accrue(long userID, long blocks)
+	{
+		long threadID = Thread.currentThread().getId();
+		Stripe stripe = stripes[(int) (threadID ^ (threadID >>> 16)) & (stripes.length - 1)]; //同一個執行緒總是用同一個
+		synchronized (stripe)
+		{
+			if (!closed) //在鎖裡面檢查 最後一次刷新要交換這個stripe時 一定會等到這裡結束
+			{
+				stripe.current.add(userID, blocks);
+				return;
+			}
+		}
+		CommandBlocksHandle.addChatBlocks(new long[] { userID }, new long[] { blocks }, 1); //已經停止刷新了
+	}
+
+	/**
+	 * Start the flush thread. This method will be called in {@link cartoland.events.BotOnlineOffline#onReady}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void start()
+	{
+		executorService.scheduleWithFixedDelay(ChatRewardHandle::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the flush thread and flush the rest. Rewards that come after this are added directly by {@link #accrue}.
+	 * This method will be called in {@link cartoland.events.BotOnlineOffline#onShutdown}, before the journal is
+	 * closed.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void stop()
+	{
+		executorService.shutdown();
+		try
+		{
+			if (!executorService.awaitTermination(10L, TimeUnit.SECONDS))
+				executorService.shutdownNow();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+		closed = true; //之後的獎勵不會再放進stripe
+		flush(); //剩下的獎勵
+	}
+
+	private static synchronized void flush()
+	{
+		try
+		{
+			for (Stripe stripe : stripes)
+			{
+				LongTable drained;
+				synchronized (stripe) //只在交換的時候鎖住
+				{
+					drained = stripe.current;
+					stripe.current = stripe.spare;
+				}
+				for (int i = 0; i < drained.keys.length; i++)
+					if (drained.keys[i] != LongTable.EMPTY)
+						merged.add(drained.keys[i], drained.values[i]); //同一個使用者可能在好幾個stripe裡
+				drained.clear();
+				stripe.spare = drained; //下次交換時使用
+			}
+			if (merged.size == 0) //沒有人聊天
+				return;
+
+			long[] userIDs = new long[merged.size];
+			long[] blocks = new long[merged.size];
+			int count = 0;
+			for (int i = 0; i < merged.keys.length; i++)
+			{
+				if (merged.keys[i] == LongTable.EMPTY)
+					continue;
+				userIDs[count] = merged.keys[i];
+				blocks[count] = merged.values[i];
+				count++;
+			}
+			merged.clear();
+			CommandBlocksHandle.addChatBlocks(userIDs, blocks, count);
+		}
+		catch (RuntimeException exception) //不能讓例外停止排程
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+
+	/**
+	 * A stripe of the accumulator. Only the flush thread touches {@link #spare}.
+	 */
+	private static final class Stripe
+	{
+		private LongTable current = new LongTable();
+		private LongTable spare = new LongTable();
+	}
+
+	/**
+	 * An open addressing hash table from user IDs to sums, without boxing. 0 marks an empty bucket, since no user
+	 * ID is 0.
+	 */
+	private static final class LongTable
+	{
+		private static final long EMPTY = 0L;
+		private long[] keys = new long[64];
+		private long[] values = new long[64];
+		private int size = 0;
+
+		private void add(long key, long value)
+		{
+			int mask = keys.length - 1;
+			int index = hash(key) & mask;
+			while (keys[index] != EMPTY && keys[index] != key)
+				index = (index + 1) & mask;
+			if (keys[index] == EMPTY)
+			{
+				keys[index] = key;
+				if (++size << 1 > keys.length) //超過一半就擴大
+				{
+					values[index] = value;
+					grow();
+					return;
+				}
+			}
+			values[index] = Algorithm.safeAdd(values[index], value);
+		}
+
+		private void grow()
+		{
+			long[] oldKeys = keys;
+			long[] oldValues = values;
+			keys = new long[oldKeys.length << 1];
+			values = new long[oldValues.length << 1];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++)
+			{
+				if (oldKeys[i] == EMPTY)
+					continue;
+				int index = hash(oldKeys[i]) & mask;
+				while (keys[index] != EMPTY)
+					index = (index + 1) & mask;
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+
+		private void clear()
+		{
+			if (size == 0)
+				return;
+			Arrays.fill(keys, EMPTY);
+			Arrays.fill(values, 0L);
+			size = 0;
+		}
+
+		private static int hash(long key)
+		{
+			long hash = key * 0x9E3779B97F4A7C15L; //Snowflake的低位元很規律 先打散
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}
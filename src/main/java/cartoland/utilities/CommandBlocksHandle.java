@@ -1,13 +1,12 @@
 package cartoland.utilities;
 
-import cartoland.Cartoland;
-import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Role;
-
-import java.io.Serial;
-import java.io.Serializable;
-import java.util.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongUnaryOperator;
 
 /**
  * {@code CommandBlocksHandle} is a utility class that handles command blocks of users. Command blocks is a
@@ -24,25 +23,106 @@ public final class CommandBlocksHandle
 		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
 	}
 
-	public static boolean changed = true;
-	private static final String LOTTERY_DATA_FILE_NAME = "serialize/lottery_data.ser";
-	private static final long GAMBLE_ROLE_MIN = 100000L;
-
-	//會有unchecked assignment的警告 but I did it anyway
-	@SuppressWarnings("unchecked")
-	private static final Map<Long, LotteryData> lotteryDataMap = (FileHandle.deserialize(LOTTERY_DATA_FILE_NAME) instanceof HashMap map) ? map : new HashMap<>();
+	private static final String LOTTERY_DATA_FILE_NAME = "serialize/lottery_data.ser"; //舊的串聯化檔案 只在遷移到LotteryRecords時讀取
 
-	public static final List<LotteryData> lotteryDataList = new ArrayList<>(lotteryDataMap.values()); //將map轉換為array list
-	//因為每次修改的是LotteryData的內容 而不是參考本身 所以可以事先建好
-	//它唯一的用處是ranking時的排序 相對來說風險比較小 因此直接設成public
+	public static final int RANKING_EPOCH_POSITIONS = LotteryRanking.EPOCH_POSITIONS;
+	private static final Map<Long, LotteryData> lotteryDataByUserID = new ConcurrentHashMap<>(); //查詢已經有的玩家不用鎖
+	private static volatile LotteryData[] lotteryDataBySlot = new LotteryData[1024]; //索引就是LotteryRecords中的slot 放不下時換成更大的陣列
 
 	static
 	{
-		FileHandle.registerSerialize(LOTTERY_DATA_FILE_NAME, lotteryDataMap);
+		long begin = System.nanoTime();
+		if (LotteryRecords.open() && new File(LOTTERY_DATA_FILE_NAME).exists()) //還沒有紀錄檔或上次沒遷移完 但有舊的串聯化檔案
+			migrate();
+		for (int slot = 0, size = LotteryRecords.size(); slot < size; slot++)
+		{
+			long userID = LotteryRecords.getLong(slot, LotteryRecords.USER_ID);
+			UserTable.setLotterySlot(userID, slot);
+			LotteryData lotteryData = new LotteryData(slot, userID);
+			addLotteryData(lotteryData);
+			lotteryDataByUserID.put(userID, lotteryData);
+		}
+		JournalHandle.replay(CommandBlocksHandle::replayRecord); //補上上次force之後的所有異動
+		for (int slot = 0, size = LotteryRecords.size(); slot < size; slot++)
+			LotteryRanking.update(slot); //日誌可能改過指令方塊
+		openLedger();
+		JournalHandle.start(() -> LedgerHandle.force() && LotteryRecords.force()); //整理日誌只需要force
+		FileHandle.logLoad(LotteryRecords.FILE_NAME, LotteryRecords.fileSize(), lotteryDataByUserID, begin);
+	}
+
+	/**
+	 * Copy the old {@code lottery_data.ser} file into {@link LotteryRecords}. The records file is marked as migrating
+	 * until every record is durable, so a crash in the middle makes the next start migrate again instead of starting
+	 * with a part of the balances. If the old file can't be read, the bot stops starting for the same reason.
+	 */
+	private static void migrate()
+	{
+		LotteryRecords.beginMigration();
+		if (FileHandle.deserialize(LOTTERY_DATA_FILE_NAME) == null) //LotteryData的readObject會把舊資料寫進LotteryRecords
+			throw new IllegalStateException("Can't migrate " + LOTTERY_DATA_FILE_NAME + ", the migration will be retried on the next start");
+		LotteryRecords.endMigration();
+	}
+
+	/**
+	 * Open the ledger, and replay it to verify the command blocks of every user. A user whose command blocks are
+	 * different from the ledger, which includes every user when the ledger was just created, gets an
+	 * {@link LedgerHandle#OPENING} entry of the difference, so the ledger always adds up to the current command blocks.
+	 */
+	private static void openLedger()
+	{
+		LedgerHandle.open();
+		Map<Long, Long> ledgerBlocks = LedgerHandle.replay();
+		int adjusted = 0;
+		for (int slot = 0, size = LotteryRecords.size(); slot < size; slot++)
+		{
+			long userID = LotteryRecords.getLong(slot, LotteryRecords.USER_ID);
+			long difference = LotteryRecords.getLong(slot, LotteryRecords.BLOCKS) - ledgerBlocks.getOrDefault(userID, 0L);
+			if (difference == 0L)
+				continue;
+			LedgerHandle.append(userID, difference, LedgerHandle.OPENING, 0L);
+			adjusted++;
+		}
+		if (adjusted != 0)
+			FileHandle.log("lottery ledger: " + adjusted + " users were adjusted to match their command blocks");
+	}
+
+	private static void replayRecord(byte field, long userID, long value, int sequence)
+	{
+		LotteryData lotteryData = lotteryDataByUserID.get(userID);
+		if (lotteryData == null) //日誌裡可能有紀錄檔裡沒有的玩家
+		{
+			lotteryData = newLotteryData(userID);
+			lotteryDataByUserID.put(userID, lotteryData);
+		}
+		lotteryData.replay(field, value, sequence);
+	}
+
+	private static LotteryData newLotteryData(long userID)
+	{
+		int slot = LotteryRecords.allocate(userID);
+		UserTable.setLotterySlot(userID, slot);
+		LotteryData newUser = new LotteryData(slot, userID);
+		addLotteryData(newUser);
+		return newUser;
 	}
 
 	/**
-	 * Get the lottery data of a user from ID.
+	 * Put a new lottery data into {@link #lotteryDataBySlot}. Only adding is synchronized, and only when a new player
+	 * appears. The caller puts it into {@link #lotteryDataByUserID}, which can't be changed here because this may run
+	 * inside {@link ConcurrentHashMap#computeIfAbsent}.
+	 */
+	private static synchronized void addLotteryData(LotteryData lotteryData)
+	{
+		LotteryData[] bySlot = lotteryDataBySlot;
+		if (lotteryData.slot >= bySlot.length) //放不下了
+			bySlot = Arrays.copyOf(bySlot, Math.max(bySlot.length << 1, lotteryData.slot + 1));
+		bySlot[lotteryData.slot] = lotteryData;
+		lotteryDataBySlot = bySlot; //放好之後才發布
+	}
+
+	/**
+	 * Get the lottery data of a user from ID. An existing player is found without any lock; a new player is created
+	 * by {@link ConcurrentHashMap#computeIfAbsent}, so two threads never create the same player twice.
 	 *
 	 * @param userID The ID of the user.
 	 * @return The lottery data of the user. It will never be null.
@@ -51,34 +131,163 @@ public final class CommandBlocksHandle
 	 */
 	public static LotteryData getLotteryData(long userID)
 	{
-		LotteryData lotteryData = lotteryDataMap.get(userID);
+		LotteryData lotteryData = lotteryDataByUserID.get(userID);
 		if (lotteryData != null) //已經有這名玩家
 			return lotteryData;
 
 		//如果沒有記錄這名玩家
-		LotteryData newUser = new LotteryData(userID);
-		lotteryDataMap.put(userID, newUser); //放入這名玩家
-		lotteryDataList.add(newUser); //放入這名玩家
-		Cartoland.getJDA().retrieveUserById(userID).queue(user -> newUser.name = user.getEffectiveName());
-		return newUser; //絕不回傳null
+		LotteryData[] created = new LotteryData[1]; //computeIfAbsent在這個執行緒執行 可以得知是不是自己建立的
+		lotteryData = lotteryDataByUserID.computeIfAbsent(userID, id -> created[0] = newLotteryData(id)); //放入這名玩家
+		if (created[0] != null) //排行榜和名字會用到其他的鎖 不在computeIfAbsent裡面做
+		{
+			LotteryRanking.update(lotteryData.slot);
+			lotteryData.name = UserNameHandle.resolve(userID, LotteryRanking.positionOf(lotteryData.slot)); //不在快取內的話稍後才會有名字
+		}
+		return lotteryData; //絕不回傳null
+	}
+
+	/**
+	 * Change the name of a player without creating a new lottery data.
+	 *
+	 * @param userID The ID of the user.
+	 * @param name The new name.
+	 * @return {@code true} if the user is a player.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static boolean rename(long userID, String name)
+	{
+		LotteryData lotteryData = lotteryDataByUserID.get(userID);
+		if (lotteryData == null) //沒玩過樂透
+			return false;
+		lotteryData.setName(name);
+		return true;
 	}
 
 	public static int size()
 	{
-		return lotteryDataMap.size();
+		return LotteryRecords.size();
 	}
 
 	public static void initial()
 	{
-		Set<Long> keySet = lotteryDataMap.keySet();
-		JDA jda = Cartoland.getJDA();
-		for (long userID : keySet) //找到每位使用者
-			jda.retrieveUserById(userID).queue(user -> lotteryDataMap.get(userID).name = user.getEffectiveName()); //更新名字
-		changed = true;
+		for (LotteryData lotteryData : lotteryDataByUserID.values()) //找到每位使用者 途中新增的玩家會自己找名字
+		{
+			String name = UserNameHandle.resolve(lotteryData.userID, LotteryRanking.positionOf(lotteryData.slot)); //先找快取 找不到才排隊發送請求
+			if (name != null)
+				lotteryData.setName(name); //更新名字
+		}
 	}
 
 	/**
-	 * This is a data class that stores members' lottery data.
+	 * Add the command blocks that many users earned by chatting, which were accumulated by {@link ChatRewardHandle}.
+	 * Every user gets only one update and one ledger entry, and the ranking is updated in one pass, so the cached
+	 * pages of the ranking are invalidated at most once.
+	 *
+	 * @param userIDs The IDs of the users.
+	 * @param blocks The command blocks of each user.
+	 * @param count How many users in the arrays are used.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void addChatBlocks(long[] userIDs, long[] blocks, int count)
+	{
+		int[] slots = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			LotteryData lotteryData = getLotteryData(userIDs[i]);
+			long add = blocks[i];
+			lotteryData.changeBlocksUnranked(oldValue -> Algorithm.safeAdd(oldValue, add), LedgerHandle.CHAT, 0L);
+			slots[i] = lotteryData.slot;
+		}
+		LotteryRanking.updateAll(slots, count); //整批只會讓排行榜失效一次
+	}
+
+	/**
+	 * Get the rank of a user in the ranking of command blocks. This is O(log n) and never sorts.
+	 *
+	 * @param lotteryData The lottery data of the user.
+	 * @return The rank and command blocks of the user. Users with the same command blocks have the same rank.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static Ranked rankOf(LotteryData lotteryData)
+	{
+		synchronized (LotteryRanking.class) //名次和方塊數要是同一個時間點的
+		{
+			return new Ranked(lotteryData, LotteryRanking.blocksOf(lotteryData.slot), LotteryRanking.rankOf(lotteryData.slot));
+		}
+	}
+
+	/**
+	 * Get the position of a user in the ranking, which is different from the rank when some users have the same
+	 * command blocks.
+	 *
+	 * @param lotteryData The lottery data of the user.
+	 * @return How many users are before this user, starting from 0.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static int positionOf(LotteryData lotteryData)
+	{
+		return LotteryRanking.positionOf(lotteryData.slot);
+	}
+
+	/**
+	 * Get a part of the ranking of command blocks. This takes O(count log n) and never sorts.
+	 *
+	 * @param from The position of the first user, starting from 0.
+	 * @param count The maximum number of users.
+	 * @return The users from the position, in the order of the ranking.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static List<Ranked> ranking(int from, int count)
+	{
+		int[] slots = new int[count];
+		long[] blocks = new long[count];
+		int[] ranks = new int[count];
+		int copied = LotteryRanking.copyRange(from, slots, blocks, ranks);
+		List<Ranked> ranking = new ArrayList<>(copied);
+		LotteryData[] bySlot = lotteryDataBySlot; //排行榜上的slot都已經放進陣列了
+		for (int i = 0; i < copied; i++)
+			ranking.add(new Ranked(bySlot[slots[i]], blocks[i], ranks[i]));
+		return ranking;
+	}
+
+	/**
+	 * Get the epoch of the ranking, which increases when anything in the first {@link #RANKING_EPOCH_POSITIONS}
+	 * positions of the ranking changed, including the names. If the epoch didn't change, the top of the ranking
+	 * looks exactly the same as before.
+	 *
+	 * @return The epoch.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static long rankingEpoch()
+	{
+		return LotteryRanking.epoch();
+	}
+
+	/**
+	 * A user in the ranking of command blocks.
+	 *
+	 * @param data The lottery data of the user.
+	 * @param blocks The command blocks of the user when the ranking was read.
+	 * @param rank The competition rank of the user, starting from 1.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public record Ranked(LotteryData data, long blocks, int rank) {}
+
+	/**
+	 * This is a data class that stores members' lottery data. The numeric fields are not in this object, but in a
+	 * record of {@link LotteryRecords}, this object only remembers the slot of the record. It is still
+	 * {@link Serializable} in order to read the old {@code lottery_data.ser} file, the fields of the old version
+	 * are declared in {@link #serialPersistentFields}. Every method is thread-safe: the monitor of this object is a
+	 * per-user lock, command blocks are only read, calculated and written while holding it, so concurrent bets,
+	 * transfers and rewards never overwrite each other, and {@link #transfer} can change two users at once by holding
+	 * both monitors. Reading command blocks doesn't lock.
 	 *
 	 * @since 2.0
 	 * @author Alex Cai
@@ -89,42 +298,191 @@ public final class CommandBlocksHandle
 		public static final long WEEKLY = 100L; //每周獎勵
 		public static final long MONTHLY = 500L;
 		public static final long YEARLY = 10000L;
+		public static final long NOT_ENOUGH = -1L; //指令方塊不夠 什麼都沒有改變
+
+		//日誌中的欄位代號 已經寫入日誌的代號不可更改
+		private static final byte BLOCKS = 0;
+		private static final byte BET_WON = 1;
+		private static final byte BET_LOST = 2;
+		private static final byte BET_SHOW_HAND_WON = 3;
+		private static final byte BET_SHOW_HAND_LOST = 4;
+		private static final byte SLOT_WON = 5;
+		private static final byte SLOT_LOST = 6;
+		private static final byte SLOT_SHOW_HAND_WON = 7;
+		private static final byte SLOT_SHOW_HAND_LOST = 8;
+		private static final byte LAST_CLAIM_SECOND = 9;
+		private static final byte STREAK = 10;
+
 		private String name; //名字
-		private final long userID;
-		private long blocks; //方塊數
-		private int betWon; //勝場
-		private int betLost; //敗場
-		private int betShowHandWon; //梭哈勝
-		private int betShowHandLost; //梭哈敗(破產)
-		private int slotWon; //角子機勝
-		private int slotLost; //角子機敗
-		private int slotShowHandWon; //角子機梭哈勝
-		private int slotShowHandLost; //角子機梭哈敗(破產)
-		private long lastClaimSecond; //上次領每日獎勵的時間
-		private int streak; //連續領每日獎勵
+		private long userID;
+		private int slot; //在LotteryRecords中的位置
 
 		@Serial
 		private static final long serialVersionUID = 3_141592653589793238L;
-
-		private LotteryData(long userID)
+		@Serial
+		private static final ObjectStreamField[] serialPersistentFields =
+		{
+			new ObjectStreamField("name", String.class),
+			new ObjectStreamField("userID", long.class),
+			new ObjectStreamField("blocks", long.class),
+			new ObjectStreamField("betWon", int.class),
+			new ObjectStreamField("betLost", int.class),
+			new ObjectStreamField("betShowHandWon", int.class),
+			new ObjectStreamField("betShowHandLost", int.class),
+			new ObjectStreamField("slotWon", int.class),
+			new ObjectStreamField("slotLost", int.class),
+			new ObjectStreamField("slotShowHandWon", int.class),
+			new ObjectStreamField("slotShowHandLost", int.class),
+			new ObjectStreamField("lastClaimSecond", long.class),
+			new ObjectStreamField("streak", int.class)
+		}; //舊版本的欄位
+
+		private LotteryData(int slot, long userID)
 		{
+			this.slot = slot;
 			this.userID = userID;
-			blocks = 0L;
-			betWon = 0;
-			betLost = 0;
-			betShowHandWon = 0;
-			betShowHandLost = 0;
-			slotWon = 0;
-			slotLost = 0;
-			slotShowHandWon = 0;
-			slotShowHandLost = 0;
-			lastClaimSecond = 0L;
-			streak = 0;
+		}
+
+		/**
+		 * Read a lottery data from the old {@code lottery_data.ser} file, and copy it into a new record of
+		 * {@link LotteryRecords}.
+		 *
+		 * @param in The stream that is reading the old file.
+		 * @throws IOException If an I/O error occurs.
+		 * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		@Serial
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			ObjectInputStream.GetField fields = in.readFields();
+			name = (String) fields.get("name", null);
+			userID = fields.get("userID", 0L);
+			UserNameHandle.migrate(userID, name); //舊檔案裡的名字
+			slot = LotteryRecords.allocate(userID);
+			LotteryRecords.putLong(slot, LotteryRecords.BLOCKS, fields.get("blocks", 0L));
+			LotteryRecords.putInt(slot, LotteryRecords.BET_WON, fields.get("betWon", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.BET_LOST, fields.get("betLost", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.BET_SHOW_HAND_WON, fields.get("betShowHandWon", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.BET_SHOW_HAND_LOST, fields.get("betShowHandLost", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.SLOT_WON, fields.get("slotWon", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.SLOT_LOST, fields.get("slotLost", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.SLOT_SHOW_HAND_WON, fields.get("slotShowHandWon", 0));
+			LotteryRecords.putInt(slot, LotteryRecords.SLOT_SHOW_HAND_LOST, fields.get("slotShowHandLost", 0));
+			LotteryRecords.putLong(slot, LotteryRecords.LAST_CLAIM_SECOND, fields.get("lastClaimSecond", 0L));
+			LotteryRecords.putInt(slot, LotteryRecords.STREAK, fields.get("streak", 0));
+		}
+
+		@Serial
+		private void writeObject(ObjectOutputStream out) throws IOException
+		{
+			ObjectOutputStream.PutField fields = out.putFields();
+			fields.put("name", name);
+			fields.put("userID", userID);
+			fields.put("blocks", getBlocks());
+			fields.put("betWon", getBetWon());
+			fields.put("betLost", getBetLost());
+			fields.put("betShowHandWon", getBetShowHandWon());
+			fields.put("betShowHandLost", getBetShowHandLost());
+			fields.put("slotWon", getSlotWon());
+			fields.put("slotLost", getSlotLost());
+			fields.put("slotShowHandWon", getSlotShowHandWon());
+			fields.put("slotShowHandLost", getSlotShowHandLost());
+			fields.put("lastClaimSecond", LotteryRecords.getLong(slot, LotteryRecords.LAST_CLAIM_SECOND));
+			fields.put("streak", getStreak());
+			out.writeFields();
+		}
+
+		/**
+		 * Apply a record from {@link JournalHandle}. This method doesn't write anything into the journal again. A
+		 * record whose sequence number is not newer than the one in {@link LotteryRecords} is skipped, because the
+		 * record file already has that change or a newer one, such as after the process crashed but the operating
+		 * system still wrote the mapped pages back.
+		 *
+		 * @param field The code of the field.
+		 * @param value The new value of the field.
+		 * @param sequence The sequence number of the change.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		private void replay(byte field, long value, int sequence)
+		{
+			if (sequence - LotteryRecords.getInt(slot, LotteryRecords.SEQUENCE) <= 0) //用相減比較 序號溢位繞回來也沒關係
+				return;
+			LotteryRecords.putInt(slot, LotteryRecords.SEQUENCE, sequence);
+			switch (field)
+			{
+				case BLOCKS -> LotteryRecords.putLong(slot, LotteryRecords.BLOCKS, value);
+				case BET_WON -> LotteryRecords.putInt(slot, LotteryRecords.BET_WON, (int) value);
+				case BET_LOST -> LotteryRecords.putInt(slot, LotteryRecords.BET_LOST, (int) value);
+				case BET_SHOW_HAND_WON -> LotteryRecords.putInt(slot, LotteryRecords.BET_SHOW_HAND_WON, (int) value);
+				case BET_SHOW_HAND_LOST -> LotteryRecords.putInt(slot, LotteryRecords.BET_SHOW_HAND_LOST, (int) value);
+				case SLOT_WON -> LotteryRecords.putInt(slot, LotteryRecords.SLOT_WON, (int) value);
+				case SLOT_LOST -> LotteryRecords.putInt(slot, LotteryRecords.SLOT_LOST, (int) value);
+				case SLOT_SHOW_HAND_WON -> LotteryRecords.putInt(slot, LotteryRecords.SLOT_SHOW_HAND_WON, (int) value);
+				case SLOT_SHOW_HAND_LOST -> LotteryRecords.putInt(slot, LotteryRecords.SLOT_SHOW_HAND_LOST, (int) value);
+				case LAST_CLAIM_SECOND -> LotteryRecords.putLong(slot, LotteryRecords.LAST_CLAIM_SECOND, value);
+				case STREAK -> LotteryRecords.putInt(slot, LotteryRecords.STREAK, (int) value);
+				default -> {} //未知的欄位 可能是新版本寫的 忽略
+			}
+		}
+
+		/**
+		 * Append the current value of a field to the journal. The value is read again while holding the monitor of
+		 * this object, so the records of a field are appended in the same order as their values were read, and the
+		 * last record always has the newest value, even if several threads changed the field at the same time. The
+		 * monitor is only held for reading and queueing, never for I/O, and the fields themselves are updated without
+		 * locks.
+		 *
+		 * @param recordField The offset of the field in {@link LotteryRecords}.
+		 * @param journalField The code of the field in the journal.
+		 */
+		private void journalLong(int recordField, byte journalField)
+		{
+			synchronized (this)
+			{
+				JournalHandle.append(journalField, userID, LotteryRecords.getLongVolatile(slot, recordField), nextSequence());
+			}
+		}
+
+		private void journalInt(int recordField, byte journalField)
+		{
+			synchronized (this)
+			{
+				JournalHandle.append(journalField, userID, LotteryRecords.getIntVolatile(slot, recordField), nextSequence());
+			}
+		}
+
+		/**
+		 * Increase the sequence number in {@link LotteryRecords} after a change was applied, and return it for the
+		 * journal record of the change. The caller must hold the monitor of this object, so the sequence numbers are
+		 * in the same order as the records.
+		 */
+		private int nextSequence()
+		{
+			int sequence = LotteryRecords.getInt(slot, LotteryRecords.SEQUENCE) + 1; //溢位後繞回負數 比較時用相減
+			LotteryRecords.putIntVolatile(slot, LotteryRecords.SEQUENCE, sequence); //值已經寫入了 才寫入序號
+			return sequence;
+		}
+
+		private void increase(int recordField, byte journalField)
+		{
+			increase(recordField, journalField, 1);
+		}
+
+		private void increase(int recordField, byte journalField, int times)
+		{
+			if (times == 0) //不用寫入日誌
+				return;
+			LotteryRecords.getAndAddInt(slot, recordField, times);
+			journalInt(recordField, journalField);
 		}
 
 		public void setName(String newName)
 		{
 			name = newName;
+			LotteryRanking.touch(slot); //排行榜上的名字也要改
 		}
 
 		public String getName()
@@ -133,123 +491,233 @@ public final class CommandBlocksHandle
 		}
 
 		/**
-		 * Add command blocks to the user. This method calls {@link Algorithm#safeAdd(long, long) in
+		 * Calculate the new command blocks from the current ones and write them, while holding the monitor of this
+		 * object, which is a per-user lock, so no other change can happen in between and nothing needs to be retried.
+		 * This and {@link #transfer} are the only places that write command blocks.
+		 *
+		 * @param change Calculates the new command blocks from the current ones, or returns {@link #NOT_ENOUGH} to
+		 * change nothing.
+		 * @param reason The reason that is written into {@link LedgerHandle}.
+		 * @param reference The ID of the other user of a transfer, or the seed of a bet, 0 if there isn't one.
+		 * @return The new command blocks, or {@link #NOT_ENOUGH} if nothing was changed.
+		 */
+		private long changeBlocks(LongUnaryOperator change, byte reason, long reference)
+		{
+			long newValue = changeBlocksUnranked(change, reason, reference);
+			if (newValue != NOT_ENOUGH)
+				LotteryRanking.update(slot); //移到排行榜上新的位置
+			return newValue;
+		}
+
+		/**
+		 * Same as {@link #changeBlocks}, but the caller moves the user in {@link LotteryRanking} later. The journal
+		 * record and the ledger entry are appended while holding the monitor, so they are in the same order as the
+		 * changes.
+		 */
+		private long changeBlocksUnranked(LongUnaryOperator change, byte reason, long reference)
+		{
+			long oldValue, newValue;
+			synchronized (this) //轉帳時會同時拿著兩個人的監視器 期間不會有其他異動
+			{
+				oldValue = getBlocks();
+				newValue = change.applyAsLong(oldValue);
+				if (newValue == NOT_ENOUGH)
+					return NOT_ENOUGH;
+				LotteryRecords.putLongVolatile(slot, LotteryRecords.BLOCKS, newValue); //不拿監視器的getBlocks也能看到
+				JournalHandle.append(BLOCKS, userID, newValue, nextSequence());
+				if (oldValue != newValue) //沒有變動就不用記帳
+					LedgerHandle.append(userID, newValue - oldValue, reason, reference);
+			}
+			updateGodOfGamblers(oldValue, newValue);
+			return newValue;
+		}
+
+		/**
+		 * Add command blocks to the user atomically. This method calls {@link Algorithm#safeAdd(long, long)} in
 		 * order to add without overflow.
 		 *
 		 * @param add The amount of command blocks that are going to add on this user.
+		 * @param reason The reason, one of the constants of {@link LedgerHandle}.
+		 * @return The command blocks after adding.
 		 * @since 2.0
 		 * @author Alex Cai
 		 */
-		public void addBlocks(long add)
+		public long addBlocks(long add, byte reason)
+		{
+			return addBlocks(add, reason, 0L);
+		}
+
+		private long addBlocks(long add, byte reason, long reference)
 		{
-			setBlocks(Algorithm.safeAdd(blocks, add));
+			return changeBlocks(oldValue -> Algorithm.safeAdd(oldValue, add), reason, reference);
 		}
 
 		/**
-		 * Subtract command blocks to the user. This method checks if this user has enough command
+		 * Subtract command blocks to the user atomically. This method checks if this user has enough command
 		 * blocks in order to prevent negative command blocks.
 		 *
 		 * @param sub The amount of command blocks that are going to subtract on this user.
+		 * @param reason The reason, one of the constants of {@link LedgerHandle}.
+		 * @return The command blocks after subtracting.
 		 * @since 2.1
 		 * @author Alex Cai
 		 */
-		public void subBlocks(long sub)
+		public long subBlocks(long sub, byte reason)
 		{
-			setBlocks(blocks > sub ? blocks - sub : 0L);
+			return changeBlocks(oldValue -> oldValue > sub ? oldValue - sub : 0L, reason, 0L);
 		}
 
 		/**
-		 * Set command blocks to the user.
+		 * Take the cost from the user and give the payout back in a single atomic update, such as settling a bet.
+		 * Command blocks that other threads added after the user checked the balance are kept, and the cost is never
+		 * taken twice.
 		 *
-		 * @param newValue The amount of command blocks that are going to set on this user.
-		 * @since 2.0
+		 * @param cost The command blocks that are going to subtract, such as the bet.
+		 * @param payout The command blocks that are going to add after subtracting, 0 if the user lost.
+		 * @param reason The reason, one of the constants of {@link LedgerHandle}.
+		 * @return The command blocks after settling, or {@link #NOT_ENOUGH} if the user doesn't have {@code cost}
+		 * command blocks at the moment of settling, then nothing is changed.
+		 * @since 2.1
 		 * @author Alex Cai
 		 */
-		public void setBlocks(long newValue)
+		public long settle(long cost, long payout, byte reason)
 		{
-			changed = true; //指令方塊改變過了
+			return settle(cost, payout, reason, 0L);
+		}
 
-			long oldValue = blocks;
-			blocks = newValue;
+		/**
+		 * Same as {@link #settle(long, long, byte)}, and record a reference in {@link LedgerHandle}, such as the seed
+		 * of a bet, so the outcome can be replayed by {@link Algorithm#seeded}.
+		 *
+		 * @param cost The command blocks that are going to subtract, such as the bet.
+		 * @param payout The command blocks that are going to add after subtracting, 0 if the user lost.
+		 * @param reason The reason, one of the constants of {@link LedgerHandle}.
+		 * @param reference The seed of the bet.
+		 * @return The command blocks after settling, or {@link #NOT_ENOUGH} if the user doesn't have enough.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		public long settle(long cost, long payout, byte reason, long reference)
+		{
+			//在檢查之後被其他執行緒花掉了的話 什麼都不改變
+			return changeBlocks(oldValue -> oldValue < cost ? NOT_ENOUGH : Algorithm.safeAdd(oldValue - cost, payout), reason, reference);
+		}
 
-			boolean less = newValue < GAMBLE_ROLE_MIN; //true = 新值依舊比GAMBLE_ROLE_MIN少
-			if (oldValue < GAMBLE_ROLE_MIN == less) //沒有跨過GAMBLE_ROLE_MIN
-				return;
+		/**
+		 * Move command blocks from a user to another user in one atomic step. The monitors of both users are held,
+		 * always the one with the smaller slot first so two opposite transfers can't deadlock, so no other change of
+		 * either user can happen in between. Both new balances are appended to the journal as one pair by
+		 * {@link JournalHandle#appendPair}, and both ledger entries by {@link LedgerHandle#appendTransfer}, so after a
+		 * crash the transfer is either replayed completely or not at all. If the receiver can't hold all the amount
+		 * without overflow, only the part that fits is moved.
+		 *
+		 * @param from The sender.
+		 * @param to The receiver.
+		 * @param amount The amount of command blocks, must be positive.
+		 * @return The command blocks of the sender after transferring, or {@link #NOT_ENOUGH} if the sender doesn't
+		 * have enough command blocks, then nothing is changed.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		public static long transfer(LotteryData from, LotteryData to, long amount)
+		{
+			if (from == to) //轉給自己 什麼都不會改變
+			{
+				long blocks = from.getBlocks();
+				return blocks >= amount ? blocks : NOT_ENOUGH;
+			}
 
-			Guild cartoland = Cartoland.getJDA().getGuildById(IDs.CARTOLAND_SERVER_ID); //創聯
-			if (cartoland == null) //找不到創聯
-				return;
-			cartoland.retrieveMemberById(userID).queue(member ->
+			LotteryData first = from.slot < to.slot ? from : to; //依照slot的順序上鎖
+			LotteryData second = first == from ? to : from;
+			long fromOld, fromNew, toOld, toNew;
+			synchronized (first)
 			{
-				Role godOfGamblersRole = cartoland.getRoleById(IDs.GOD_OF_GAMBLERS_ROLE_ID); //賭神身分組
-				if (godOfGamblersRole == null) //找不到賭神身分組
-					return;
-				boolean hasRole = member.getRoles().contains(godOfGamblersRole);
-				if (!less && !hasRole) //大於等於GAMBLE_ROLE_MIN 且沒有身分組
-					cartoland.addRoleToMember(member, godOfGamblersRole).queue(); //給予賭神身分組
-				else if (less && hasRole) //小於GAMBLE_ROLE_MIN 且有身分組
-					cartoland.removeRoleFromMember(member, godOfGamblersRole).queue(); //剝奪賭神身分組
-			});
+				synchronized (second)
+				{
+					fromOld = from.getBlocks();
+					if (fromOld < amount) //在檢查之後被其他執行緒花掉了
+						return NOT_ENOUGH;
+					toOld = to.getBlocks();
+					toNew = Algorithm.safeAdd(toOld, amount);
+					fromNew = fromOld - (toNew - toOld); //對方滿了的話 放不下的部分留在轉出的人身上
+					LotteryRecords.putLongVolatile(from.slot, LotteryRecords.BLOCKS, fromNew); //拿著兩個人的監視器 不需要比較
+					LotteryRecords.putLongVolatile(to.slot, LotteryRecords.BLOCKS, toNew);
+					JournalHandle.appendPair(BLOCKS, from.userID, fromNew, from.nextSequence(), to.userID, toNew, to.nextSequence());
+					if (toNew != toOld)
+						LedgerHandle.appendTransfer(from.userID, to.userID, toNew - toOld);
+				}
+			}
+			from.updateGodOfGamblers(fromOld, fromNew);
+			to.updateGodOfGamblers(toOld, toNew);
+			LotteryRanking.update(from.slot);
+			LotteryRanking.update(to.slot);
+			return fromNew;
+		}
+
+		private void updateGodOfGamblers(long oldValue, long newValue)
+		{
+			if (oldValue < GodOfGamblersHandle.GAMBLE_ROLE_MIN != newValue < GodOfGamblersHandle.GAMBLE_ROLE_MIN) //跨過GAMBLE_ROLE_MIN
+				GodOfGamblersHandle.crossed(userID); //稍後再一起更新身分組 期間又跨回來的話就不用更新
 		}
 
 		public long getBlocks()
 		{
-			return blocks;
+			return LotteryRecords.getLongVolatile(slot, LotteryRecords.BLOCKS);
 		}
 
 		public int getBetWon()
 		{
-			return betWon;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.BET_WON);
 		}
 
 		public int getBetLost()
 		{
-			return betLost;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.BET_LOST);
 		}
 
 		public int getBetShowHandWon()
 		{
-			return betShowHandWon;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.BET_SHOW_HAND_WON);
 		}
 
 		public int getBetShowHandLost()
 		{
-			return betShowHandLost;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.BET_SHOW_HAND_LOST);
 		}
 
 		public int getSlotWon()
 		{
-			return slotWon;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.SLOT_WON);
 		}
 
 		public int getSlotLost()
 		{
-			return slotLost;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.SLOT_LOST);
 		}
 
 		public int getSlotShowHandWon()
 		{
-			return slotShowHandWon;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.SLOT_SHOW_HAND_WON);
 		}
 
 		public int getSlotShowHandLost()
 		{
-			return slotShowHandLost;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.SLOT_SHOW_HAND_LOST);
 		}
 
 		public void addGame(boolean isWon, boolean isShowHand)
 		{
 			if (isWon)
 			{
-				betWon++;
+				increase(LotteryRecords.BET_WON, BET_WON);
 				if (isShowHand)
-					betShowHandWon++;
+					increase(LotteryRecords.BET_SHOW_HAND_WON, BET_SHOW_HAND_WON);
 			}
 			else
 			{
-				betLost++;
+				increase(LotteryRecords.BET_LOST, BET_LOST);
 				if (isShowHand)
-					betShowHandLost++;
+					increase(LotteryRecords.BET_SHOW_HAND_LOST, BET_SHOW_HAND_LOST);
 			}
 		}
 
@@ -257,18 +725,42 @@ public final class CommandBlocksHandle
 		{
 			if (isWon)
 			{
-				slotWon++;
+				increase(LotteryRecords.SLOT_WON, SLOT_WON);
 				if (isShowHand)
-					slotShowHandWon++;
+					increase(LotteryRecords.SLOT_SHOW_HAND_WON, SLOT_SHOW_HAND_WON);
 			}
 			else
 			{
-				slotLost++;
+				increase(LotteryRecords.SLOT_LOST, SLOT_LOST);
 				if (isShowHand)
-					slotShowHandLost++;
+					increase(LotteryRecords.SLOT_SHOW_HAND_LOST, SLOT_SHOW_HAND_LOST);
 			}
 		}
 
+		/**
+		 * Record a run of spins at once, so a run writes each field into the journal only once. A show-hand run is
+		 * counted as a single show-hand no matter how many spins it has, because the user bet every command block only
+		 * once.
+		 *
+		 * @param won How many spins won.
+		 * @param lost How many spins lost.
+		 * @param isShowHand If the whole run bet every command block of the user.
+		 * @param isShowHandWon If the run paid more than it cost, only used if {@code isShowHand} is {@code true}.
+		 * @since 2.1
+		 * @author Alex Cai
+		 */
+		public void addSlots(int won, int lost, boolean isShowHand, boolean isShowHandWon)
+		{
+			increase(LotteryRecords.SLOT_WON, SLOT_WON, won);
+			increase(LotteryRecords.SLOT_LOST, SLOT_LOST, lost);
+			if (!isShowHand)
+				return;
+			if (isShowHandWon)
+				increase(LotteryRecords.SLOT_SHOW_HAND_WON, SLOT_SHOW_HAND_WON);
+			else
+				increase(LotteryRecords.SLOT_SHOW_HAND_LOST, SLOT_SHOW_HAND_LOST);
+		}
+
 		/**
 		 * Try claim the daily reward. Success if
 		 *
@@ -280,28 +772,35 @@ public final class CommandBlocksHandle
 		public boolean tryClaimDaily(byte[] until)
 		{
 			long nowSecond = System.currentTimeMillis() / 1000L; //現在距離1970/1/1有幾秒
-			long difference = nowSecond - lastClaimSecond; //和上次領的時間差
-			if (difference < 60 * 60 * 24) //時間小於一天 86400秒
+			long lastClaimSecond, difference;
+			do
 			{
-				//不超過一天
-				int secondsUntil = 60 * 60 * 24 - (int) difference;
-				until[0] = (byte) (secondsUntil / (60 * 60));
-				until[1] = (byte) ((secondsUntil / 60) % 60);
-				until[2] = (byte) (secondsUntil % 60);
-				return false;
+				lastClaimSecond = LotteryRecords.getLongVolatile(slot, LotteryRecords.LAST_CLAIM_SECOND);
+				difference = nowSecond - lastClaimSecond; //和上次領的時間差
+				if (difference < 60 * 60 * 24) //時間小於一天 86400秒
+				{
+					//不超過一天
+					int secondsUntil = 60 * 60 * 24 - (int) difference;
+					until[0] = (byte) (secondsUntil / (60 * 60));
+					until[1] = (byte) ((secondsUntil / 60) % 60);
+					until[2] = (byte) (secondsUntil % 60);
+					return false;
+				}
 			}
+			while (!LotteryRecords.compareAndSetLong(slot, LotteryRecords.LAST_CLAIM_SECOND, lastClaimSecond, nowSecond)); //同時領兩次的話 只有一次會成功
+			journalLong(LotteryRecords.LAST_CLAIM_SECOND, LAST_CLAIM_SECOND); //最後一次領的時間為現在
 
-			addBlocks(DAILY); //增加每日獎勵
-			lastClaimSecond = nowSecond; //最後一次領的時間為現在
-			if (difference >= 60 * 60 * 24 * 2) //大於兩天 代表超過48小時沒領了
-				streak = 0; //連續歸零
-			streak++; //+1 連續領
+			int streak = difference >= 60 * 60 * 24 * 2 ? 1 : getStreak() + 1; //大於兩天 代表超過48小時沒領了 連續歸零 否則+1 連續領
+			LotteryRecords.putIntVolatile(slot, LotteryRecords.STREAK, streak); //只有領到的執行緒會寫入
+			journalInt(LotteryRecords.STREAK, STREAK);
+			addBlocks(DAILY, LedgerHandle.DAILY); //增加每日獎勵
 			return true;
 		}
 
 		public boolean tryClaimBonus(boolean[] bonus)
 		{
 			long addBonus = 0L; //獎勵的額外指令方塊
+			int streak = getStreak();
 
 			if (bonus[0] = (streak % 7 == 0)) //一週
 				addBonus += WEEKLY;
@@ -312,7 +811,7 @@ public final class CommandBlocksHandle
 
 			if (addBonus != 0L)
 			{
-				addBlocks(addBonus);
+				addBlocks(addBonus, LedgerHandle.DAILY_BONUS);
 				return true;
 			}
 			else
@@ -321,7 +820,7 @@ public final class CommandBlocksHandle
 
 		public int getStreak()
 		{
-			return streak;
+			return LotteryRecords.getIntVolatile(slot, LotteryRecords.STREAK);
 		}
 	}
 }
\ No newline at end of file
@@ -1,13 +1,18 @@
 package cartoland.utilities;
 
-import cartoland.Cartoland;
-
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -24,73 +29,263 @@ public final class FileHandle
 		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
 	}
 
-	private static FileWriter logger = null;
 
-	//將JSON讀入進字串
-	static String buildJsonStringFromFile(String fileName)
+	//將JSON檔案讀入成位元組
+	static byte[] buildJsonBytesFromFile(String fileName)
 	{
 		try
 		{
-			return Files.readString(Paths.get(fileName));
+			return Files.readAllBytes(Paths.get(fileName));
 		}
 		catch (IOException exception)
 		{
 			exception.printStackTrace();
 			log(exception);
-			return "{}";
+			return new byte[] { '{', '}' };
 		}
 	}
 
-	private static final List<SerializeObject> serializeObjects = new ArrayList<>();
+	private static final Map<String, SerializeObject> serializeObjects = new ConcurrentHashMap<>(); //檔案名稱為key
+	private static final long SNAPSHOT_INTERVAL_SECONDS = 60L; //每60秒檢查一次有沒有需要寫入的物件
+	private static final ScheduledExecutorService snapshotService = Executors.newSingleThreadScheduledExecutor();
 
 	/**
-	 * Register an object to the {@link #serializeObjects} list, then the objects in that list will be serialized by
-	 * {@link #serialize} when {@link cartoland.events.BotOnlineOffline#onShutdown} was executed. Be aware
-	 * that the object must implement {@link Serializable} interface. Most importantly, this object must be <b>final</b>,
-	 * since Java doesn't have double pointer, there's no way to serialize correct contents if the class reference
-	 * changed its pointing address.
+	 * Register a store to the {@link #serializeObjects} map, then the store will be written by the snapshot thread
+	 * after {@link #markDirty} was called, and by {@link #serialize} when {@link cartoland.events.BotOnlineOffline#onShutdown}
+	 * was executed. Instead of the store itself, the snapshot function returns a copy of the store, so the snapshot
+	 * thread only encodes the copy while event handlers keep modifying the store.
 	 *
-	 * @param fileName The name of the serialize file. Usually has {@code .ser} as file name extension.
-	 * @param object The object that is going to be serialized.
+	 * @param fileName The name of the store file. Usually has {@code .bin} as file name extension.
+	 * @param codec The codec that encodes the copy into the store file.
+	 * @param snapshot The function that returns a copy of the store that is going to be written.
 	 * @since 2.0
 	 * @author Alex Cai
 	 */
-	public static void registerSerialize(String fileName, Object object)
+	public static <T> void registerSerialize(String fileName, BinaryCodec.Codec<T> codec, Supplier<T> snapshot)
+	{
+		serializeObjects.put(fileName, new SerializeObject(fileName, () ->
+		{
+			T copy = snapshot.get(); //在呼叫的執行緒上複製 之後只會讀複本
+			return file -> BinaryCodec.write(file, codec, copy);
+		}));
+	}
+
+	/**
+	 * Mark a registered store as changed, so it will be written by the next snapshot. This only sets a flag, it
+	 * never waits for any IO.
+	 *
+	 * @param fileName The name of the serialize file that was registered by {@link #registerSerialize}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void markDirty(String fileName)
+	{
+		SerializeObject so = serializeObjects.get(fileName);
+		if (so != null)
+			so.dirty = true;
+	}
+
+	/**
+	 * Start the snapshot thread. Every {@link #SNAPSHOT_INTERVAL_SECONDS} seconds, it writes only the stores that
+	 * were marked by {@link #markDirty}, and logs how long it took and how many bytes were written. This method will
+	 * be called in {@link cartoland.events.BotOnlineOffline#onReady}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void startSnapshot()
+	{
+		snapshotService.scheduleWithFixedDelay(FileHandle::snapshot, SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the snapshot thread and wait for the running snapshot to finish. This method will be called in
+	 * {@link cartoland.events.BotOnlineOffline#onShutdown} before {@link #serialize}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void stopSnapshot()
 	{
-		serializeObjects.add(new SerializeObject(fileName, object));
+		snapshotService.shutdown();
+		try
+		{
+			if (!snapshotService.awaitTermination(10L, TimeUnit.SECONDS))
+				snapshotService.shutdownNow();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void snapshot()
+	{
+		long begin = System.nanoTime();
+		int files = 0;
+		long bytes = 0L;
+		for (SerializeObject so : serializeObjects.values())
+		{
+			if (!so.dirty)
+				continue;
+			so.dirty = false; //先清除 複製途中若又有修改 下一次還會再寫
+			long written = serialize(so);
+			if (written < 0L) //失敗了 下次再試
+			{
+				so.dirty = true;
+				continue;
+			}
+			files++;
+			bytes += written;
+		}
+		if (files != 0)
+			log("snapshot " + files + " file(s), " + bytes + " bytes, " + (System.nanoTime() - begin) / 1000000L + " ms");
 	}
 
 	/**
 	 * This method will be call when {@link cartoland.events.BotOnlineOffline#onShutdown} was executed.
-	 * It will serialize every objects in {@link #serializeObjects}, which was registered by {@link #registerSerialize}.
+	 * It will serialize every objects in {@link #serializeObjects}, which was registered by {@link #registerSerialize},
+	 * no matter they were marked as dirty or not.
 	 *
 	 * @since 2.0
 	 * @author Alex Cai
 	 */
 	public static void serialize()
 	{
-		for (SerializeObject so : serializeObjects)
-			serialize(so.fileName, so.object);
+		for (SerializeObject so : serializeObjects.values())
+		{
+			so.dirty = false;
+			serialize(so);
+		}
 	}
 
-	private static void serialize(String fileName, Object object)
+	/**
+	 * Write a registered store into its file. The store will be written into a temporary file first, then the
+	 * temporary file will be atomically renamed to the actual file, so the old file stays intact if anything goes
+	 * wrong. The snapshot thread and {@link #serialize()} share the temporary file, so this holds the monitor of the
+	 * registered store from copying it until the rename. A snapshot that is still running after {@link #stopSnapshot}
+	 * gave up waiting can't interleave with the final write, and the copy taken later always replaces the file later.
+	 *
+	 * @param so The registered store.
+	 * @return The size of the file in bytes, or -1 if failed.
+	 * @since 2.0
+	 * @author Alex Cai
+	 */
+	private static long serialize(SerializeObject so)
 	{
-		if (!(object instanceof Serializable))
-			return;
-		try (FileOutputStream fileStream = new FileOutputStream(fileName);
-			 ObjectOutputStream objectStream = new ObjectOutputStream(fileStream))
+		Path file = Paths.get(so.fileName);
+		Path temp = Paths.get(so.fileName + ".tmp");
+		long bytes;
+		synchronized (so) //快照的執行緒和關機時的serialize會寫同一個暫存檔
 		{
-			objectStream.writeObject(object);
-			objectStream.flush();
+			try
+			{
+				bytes = so.snapshot.get().writeTo(temp); //會force 確定寫進硬碟了 才能取代舊檔案
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException | RuntimeException exception)
+			{
+				exception.printStackTrace();
+				log(exception);
+				return -1L;
+			}
 		}
-		catch (IOException exception)
+		return bytes;
+	}
+
+	/**
+	 * Read a store from its file. If the store file doesn't exist yet, the old {@code .ser} file that was written by
+	 * Java serialization will be migrated, and the store file will be written immediately, so the migration only
+	 * happens once. The old file is kept as a backup.
+	 *
+	 * @param fileName The name of the store file.
+	 * @param legacyFileName The name of the old {@code .ser} file.
+	 * @param codec The codec of the store.
+	 * @return The store, or {@code null} if neither file can be read.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static <T> T deserialize(String fileName, String legacyFileName, BinaryCodec.Codec<T> codec)
+	{
+		T value = deserialize(fileName, codec);
+		if (value != null || !Files.exists(Paths.get(legacyFileName))) //檔案損壞時 改讀舊檔案
+			return value;
+
+		long begin = System.nanoTime();
+		Path file = Paths.get(fileName);
+		value = codec.migrate(deserialize(legacyFileName));
+		if (value == null)
+			return null;
+		try
+		{
+			Path temp = Paths.get(fileName + ".tmp");
+			BinaryCodec.write(temp, codec, value);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException exception) //下次快照時還會再寫
+		{
+			exception.printStackTrace();
+			log(exception);
+		}
+		logLoad(legacyFileName, Paths.get(legacyFileName).toFile().length(), value, begin); //從舊檔案遷移的
+		return value;
+	}
+
+	/**
+	 * Read a store from its file.
+	 *
+	 * @param fileName The name of the store file.
+	 * @param codec The codec of the store.
+	 * @return The store, or {@code null} if the file doesn't exist or can't be read.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static <T> T deserialize(String fileName, BinaryCodec.Codec<T> codec)
+	{
+		long begin = System.nanoTime();
+		Path file = Paths.get(fileName);
+		if (!Files.exists(file))
+			return null;
+		try
+		{
+			T value = BinaryCodec.read(file, codec);
+			logLoad(fileName, Files.size(file), value, begin);
+			return value;
+		}
+		catch (IOException | RuntimeException exception) //檔案損壞
 		{
 			exception.printStackTrace();
 			log(exception);
+			return null;
 		}
 	}
 
-	public static Object deserialize(String fileName)
+	/**
+	 * Log how long it took to load a store and how large it is.
+	 *
+	 * @param fileName The name of the store file.
+	 * @param bytes The size of the file in bytes.
+	 * @param store The loaded store. The number of entries will be logged if it is a collection or a map.
+	 * @param begin The value of {@link System#nanoTime()} when the loading began.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void logLoad(String fileName, long bytes, Object store, long begin)
+	{
+		String entries = store instanceof Map<?, ?> map ? map.size() + " entries, " :
+				store instanceof Collection<?> collection ? collection.size() + " entries, " : "";
+		log("load " + fileName + ": " + entries + bytes + " bytes, " + (System.nanoTime() - begin) / 1000000L + " ms");
+	}
+
+	/**
+	 * Read an old file that was written by Java serialization.
+	 *
+	 * @param fileName The name of the {@code .ser} file.
+	 * @return The deserialized object, or {@code null} if failed.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
+	static Object deserialize(String fileName)
 	{
 		Object object;
 		try (FileInputStream fileStream = new FileInputStream(fileName);
@@ -107,79 +302,103 @@ public final class FileHandle
 		return object;
 	}
 
+	/**
+	 * Tell the log writer that a new day began. Lines are always written into the file of the day they were logged,
+	 * so this only creates the new file earlier. This method will be called by {@link TimerHandle} at midnight.
+	 *
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
 	public static void changeLogDate()
 	{
-		try
-		{
-			closeLog0();
-			startLog0();
-		}
-		catch (IOException exception)
-		{
-			exception.printStackTrace();
-			Cartoland.getJDA().shutdownNow();
-		}
+		LogWriter.changeDate();
 	}
 
+	/**
+	 * Log a line. The line is put into the buffer of {@link LogWriter} and written by its own thread, so this method
+	 * never waits for IO, and can be called before {@link #startLog}.
+	 *
+	 * @param output The content of the line.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
 	public static void log(String output)
 	{
-		//時間 內容
-		String logString = TimerHandle.getTimeString() + '\t' + output + '\n';
-		try
-		{
-			logger.write(logString);
-		}
-		catch (IOException exception)
-		{
-			exception.printStackTrace();
-			Cartoland.getJDA().shutdownNow();
-		}
+		LogWriter.offer(LogEntry.info(output));
 	}
 
+	/**
+	 * Log an exception, including its type, message and stack trace.
+	 *
+	 * @param exception The exception.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
 	public static void log(Exception exception)
 	{
-		log(Arrays.stream(exception.getStackTrace())
+		LogWriter.offer(new LogEntry(System.currentTimeMillis(), LogEntry.ERROR, 0L, null, null, 0L, -1L,
+				Arrays.stream(exception.getStackTrace())
 					.map(CommonFunctions.stringValue)
-					.collect(Collectors.joining("\n")));
+					.collect(Collectors.joining("\n", exception + "\n", ""))));
 	}
 
-	private static void startLog0() throws IOException
+	/**
+	 * Log that a user used a command.
+	 *
+	 * @param userID The ID of the user.
+	 * @param userName The name of the user.
+	 * @param command The command, such as {@code "/lottery"}.
+	 * @param channelID The ID of the channel where the command was used.
+	 * @param latencyNanos How long it took to handle the command, in nanoseconds.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void logCommand(long userID, String userName, String command, long channelID, long latencyNanos)
 	{
-		//一定要事先備好logs資料夾
-		logger = new FileWriter("logs/" + TimerHandle.getDateString(), true);
+		LogWriter.offer(new LogEntry(System.currentTimeMillis(), LogEntry.COMMAND, userID, userName, command, channelID, latencyNanos / 1000000L, null));
 	}
 
-	public static void startLog()
+	/**
+	 * Log a direct message that the bot received.
+	 *
+	 * @param userID The ID of the user.
+	 * @param userName The name of the user.
+	 * @param channelID The ID of the private channel.
+	 * @param message The raw content of the message.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void logDirectMessage(long userID, String userName, long channelID, String message)
 	{
-		try
-		{
-			startLog0();
-		}
-		catch (IOException exception)
-		{
-			exception.printStackTrace();
-			Cartoland.getJDA().shutdownNow();
-		}
+		LogWriter.offer(new LogEntry(System.currentTimeMillis(), LogEntry.DIRECT_MESSAGE, userID, userName, null, channelID, -1L, message));
 	}
 
-	private static void closeLog0() throws IOException
+	public static void startLog()
 	{
-		if (logger != null)
-			logger.close();
+		LogWriter.start();
 	}
 
 	public static void closeLog()
 	{
-		try
-		{
-			closeLog0();
-		}
-		catch (IOException exception)
+		LogWriter.close();
+	}
+
+	private static class SerializeObject
+	{
+		private final String fileName;
+		private final Supplier<StoreWriter> snapshot;
+		private volatile boolean dirty = false;
+
+		private SerializeObject(String fileName, Supplier<StoreWriter> snapshot)
 		{
-			exception.printStackTrace();
-			Cartoland.getJDA().shutdownNow();
+			this.fileName = fileName;
+			this.snapshot = snapshot;
 		}
 	}
 
-	private static record SerializeObject(String fileName, Object object) {}
-}
\ No newline at end of file
+	@FunctionalInterface
+	private interface StoreWriter
+	{
+		long writeTo(Path file) throws IOException;
+	}
+}
@@ -17,7 +17,7 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@code ForumsHandle} is a utility class that has functions which controls map-discuss forum and question forum
@@ -63,18 +63,22 @@ public final class ForumsHandle
 			If it didn't, try offer more information of question.
 			""".formatted(resolvedFormat, resolvedFormat);
 
-	private static final String IDLED_QUESTIONS_SET_FILE_NAME = "serialize/idled_questions.ser";
-	private static final String HAS_START_MESSAGE_FILE_NAME = "serialize/has_start_message.ser";
-	//https://stackoverflow.com/questions/41778276/casting-from-object-to-arraylist
-	private static final Set<Long> idledQuestionForumPosts = FileHandle.deserialize(IDLED_QUESTIONS_SET_FILE_NAME) instanceof HashSet<?> set ?
-			set.stream().map(element -> (Long)element).collect(Collectors.toSet()) : new HashSet<>();
-	private static final Set<Long> hasStartMessageForumPosts = FileHandle.deserialize(HAS_START_MESSAGE_FILE_NAME) instanceof HashSet<?> set ?
-			set.stream().map(element -> (Long)element).collect(Collectors.toSet()) : new HashSet<>();
+	private static final String IDLED_QUESTIONS_SET_FILE_NAME = "serialize/idled_questions.bin";
+	private static final String HAS_START_MESSAGE_FILE_NAME = "serialize/has_start_message.bin";
+	private static final Set<Long> idledQuestionForumPosts = ConcurrentHashMap.newKeySet();
+	private static final Set<Long> hasStartMessageForumPosts = ConcurrentHashMap.newKeySet();
 
 	static
 	{
-		FileHandle.registerSerialize(IDLED_QUESTIONS_SET_FILE_NAME, idledQuestionForumPosts);
-		FileHandle.registerSerialize(HAS_START_MESSAGE_FILE_NAME, hasStartMessageForumPosts);
+		Set<Long> saved = FileHandle.deserialize(IDLED_QUESTIONS_SET_FILE_NAME, "serialize/idled_questions.ser", BinaryCodec.LONG_SET);
+		if (saved != null)
+			idledQuestionForumPosts.addAll(saved);
+		saved = FileHandle.deserialize(HAS_START_MESSAGE_FILE_NAME, "serialize/has_start_message.ser", BinaryCodec.LONG_SET);
+		if (saved != null)
+			hasStartMessageForumPosts.addAll(saved);
+
+		FileHandle.registerSerialize(IDLED_QUESTIONS_SET_FILE_NAME, BinaryCodec.LONG_SET, () -> new HashSet<>(idledQuestionForumPosts));
+		FileHandle.registerSerialize(HAS_START_MESSAGE_FILE_NAME, BinaryCodec.LONG_SET, () -> new HashSet<>(hasStartMessageForumPosts));
 	}
 
 	/**
@@ -97,7 +101,8 @@ public final class ForumsHandle
 			forumPost.retrieveStartMessage().queue(message -> message.pin().queue()); //釘選第一則訊息
 		else if (parentChannelID == IDs.QUESTIONS_CHANNEL_ID) //是問題論壇
 			forumPost.sendMessageEmbeds(startEmbed).queue(); //傳送發問指南
-		hasStartMessageForumPosts.add(forumPost.getIdLong());
+		if (hasStartMessageForumPosts.add(forumPost.getIdLong()))
+			FileHandle.markDirty(HAS_START_MESSAGE_FILE_NAME);
 	}
 
 	public static void createForumPost(ThreadChannel forumPost)
@@ -151,7 +156,8 @@ public final class ForumsHandle
 		tags.remove(unresolvedForumTag); //移除unresolved
 		tags.add(resolvedForumTag); //新增resolved
 		forumPost.getManager().setAppliedTags(tags).queue();
-		idledQuestionForumPosts.remove(forumPost.getIdLong());
+		if (idledQuestionForumPosts.remove(forumPost.getIdLong()))
+			FileHandle.markDirty(IDLED_QUESTIONS_SET_FILE_NAME);
 
 		//移除🎗️ 並關閉貼文
 		unIdleQuestionForumPost(forumPost, true);
@@ -175,6 +181,7 @@ public final class ForumsHandle
 			forumPost.sendMessage(String.format(remindMessage, mentionOwner, mentionOwner)).queue(); //提醒開串者
 
 			idledQuestionForumPosts.add(forumPost.getIdLong()); //記錄這個貼文正在idle
+			FileHandle.markDirty(IDLED_QUESTIONS_SET_FILE_NAME);
 
 			//增加🎗️
 			forumPost.retrieveStartMessage().queue(message -> message.addReaction(reminder_ribbon).queue());
@@ -195,7 +202,8 @@ public final class ForumsHandle
 			if (message.getReactions().stream().anyMatch(reaction -> reaction.getEmoji().equals(reminder_ribbon))) //如果第一則訊息有🎗️
 				message.removeReaction(reminder_ribbon).queue(); //移除🎗️
 
-			idledQuestionForumPosts.remove(forumPost.getIdLong()); //將貼文從idle列表中移除
+			if (idledQuestionForumPosts.remove(forumPost.getIdLong())) //將貼文從idle列表中移除
+				FileHandle.markDirty(IDLED_QUESTIONS_SET_FILE_NAME);
 
 			if (archive)
 				forumPost.getManager().setArchived(true).queue(); //關閉貼文
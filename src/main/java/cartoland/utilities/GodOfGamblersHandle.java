@@ -0,0 +1,157 @@
+package cartoland.utilities;
+
+import cartoland.Cartoland;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GodOfGamblersHandle} is a utility class that gives and takes the God of Gamblers role, which belongs to the
+ * members who have at least {@link #GAMBLE_ROLE_MIN} command blocks. When the command blocks of a user crossed the
+ * threshold, the user is only put into a set of pending users, so a user who crossed the threshold many times within
+ * an interval is checked only once, by the command blocks at that moment, and a role that was going to flap costs no
+ * request at all. The pending users are applied in batches of at most {@link #MAX_CHANGES_PER_BATCH} requests, and a
+ * periodic reconciliation compares every role holder with the balances, which fixes anything that was missed, such as
+ * a change while the bot was offline. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class GodOfGamblersHandle
+{
+	private GodOfGamblersHandle()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	static final long GAMBLE_ROLE_MIN = 100000L;
+	private static final long APPLY_INTERVAL_SECONDS = 5L; //每5秒套用一批
+	private static final int MAX_CHANGES_PER_BATCH = 5; //每批最多送出幾個請求 剩下的留到下一批
+	private static final long RECONCILE_INTERVAL_MINUTES = 30L; //每30分鐘全部比對一次
+
+	private static final Set<Long> pending = ConcurrentHashMap.newKeySet(); //同一位使用者只會有一筆
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * Remember that the command blocks of a user crossed {@link #GAMBLE_ROLE_MIN}. This method never blocks or sends
+	 * any request.
+	 *
+	 * @param userID The ID of the user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void crossed(long userID)
+	{
+		pending.add(userID);
+	}
+
+	/**
+	 * Start applying pending users and reconciling. This method will be called in
+	 * {@link cartoland.events.BotOnlineOffline#onReady}, after the members were cached.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void start()
+	{
+		executorService.scheduleWithFixedDelay(GodOfGamblersHandle::applyPending, APPLY_INTERVAL_SECONDS, APPLY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		executorService.scheduleWithFixedDelay(GodOfGamblersHandle::reconcile, 0L, RECONCILE_INTERVAL_MINUTES, TimeUnit.MINUTES); //上線時先比對一次
+	}
+
+	public static void stop()
+	{
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Apply at most {@link #MAX_CHANGES_PER_BATCH} changes. A user is removed from {@link #pending} before the command
+	 * blocks are read, so a crossing after that will put the user back, and will not be lost.
+	 */
+	private static void applyPending()
+	{
+		try
+		{
+			if (pending.isEmpty())
+				return;
+			Guild cartoland = Cartoland.getJDA().getGuildById(IDs.CARTOLAND_SERVER_ID); //創聯
+			if (cartoland == null) //找不到創聯
+				return;
+			Role godOfGamblersRole = cartoland.getRoleById(IDs.GOD_OF_GAMBLERS_ROLE_ID); //賭神身分組
+			if (godOfGamblersRole == null) //找不到賭神身分組
+				return;
+
+			int changes = 0;
+			for (Iterator<Long> iterator = pending.iterator(); iterator.hasNext() && changes < MAX_CHANGES_PER_BATCH;)
+			{
+				long userID = iterator.next();
+				iterator.remove();
+				Member member = cartoland.getMemberById(userID); //成員都有快取 不需要retrieve
+				if (member == null) //不在創聯
+					continue;
+				boolean qualified = blocksOf(userID) >= GAMBLE_ROLE_MIN;
+				if (qualified == member.getRoles().contains(godOfGamblersRole)) //跨過去又跨回來 或是已經正確了
+					continue;
+				if (qualified) //大於等於GAMBLE_ROLE_MIN 且沒有身分組
+					cartoland.addRoleToMember(member, godOfGamblersRole).queue(); //給予賭神身分組
+				else //小於GAMBLE_ROLE_MIN 且有身分組
+					cartoland.removeRoleFromMember(member, godOfGamblersRole).queue(); //剝奪賭神身分組
+				changes++;
+			}
+		}
+		catch (RuntimeException exception) //不能讓例外停止排程
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+
+	/**
+	 * Compare the role holders with the users who have enough command blocks, and put every difference into
+	 * {@link #pending}. The users who have enough command blocks are the top of {@link LotteryRanking}, so this
+	 * doesn't need to check every user.
+	 */
+	private static void reconcile()
+	{
+		try
+		{
+			Guild cartoland = Cartoland.getJDA().getGuildById(IDs.CARTOLAND_SERVER_ID);
+			if (cartoland == null)
+				return;
+			Role godOfGamblersRole = cartoland.getRoleById(IDs.GOD_OF_GAMBLERS_ROLE_ID);
+			if (godOfGamblersRole == null)
+				return;
+
+			for (Member member : cartoland.getMembersWithRoles(godOfGamblersRole)) //有身分組 但方塊不夠
+				if (blocksOf(member.getIdLong()) < GAMBLE_ROLE_MIN)
+					pending.add(member.getIdLong());
+
+			int[] slots = new int[LotteryRanking.countAtLeast(GAMBLE_ROLE_MIN)];
+			LotteryRanking.copyRange(0, slots, new long[slots.length], new int[slots.length]);
+			for (int slot : slots) //方塊夠 但沒有身分組
+			{
+				long userID = LotteryRecords.getLong(slot, LotteryRecords.USER_ID);
+				Member member = cartoland.getMemberById(userID);
+				if (member != null && !member.getRoles().contains(godOfGamblersRole))
+					pending.add(userID);
+			}
+		}
+		catch (RuntimeException exception)
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+
+	private static long blocksOf(long userID)
+	{
+		int slot = UserTable.getLotterySlot(userID);
+		return slot != -1 ? LotteryRecords.getLongVolatile(slot, LotteryRecords.BLOCKS) : 0L; //沒有紀錄 不會新增紀錄
+	}
+}
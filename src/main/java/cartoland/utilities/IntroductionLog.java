@@ -0,0 +1,392 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@code IntroductionLog} is a utility class that stores introductions of users in an append-only, memory-mapped
+ * file, so the texts are not on the heap. Every update appends a new entry, and {@link UserTable} remembers the
+ * offset of the latest entry of each user. Long introductions are compressed by Deflate. Since old entries are never
+ * overwritten, {@link #writeCompacted} rewrites the file with only the latest entries once in a while. Entries are
+ * group-committed like {@link JournalHandle}: {@link #append} only copies the entry into the mapped file, and a
+ * background thread forces the new entries and then moves the end in the header, so the end never covers an entry
+ * that is not on the storage device, and a burst of introductions costs one force. {@link UserTable} serializes the
+ * writers, and never holds its own lock while this class does I/O. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class IntroductionLog
+{
+	private IntroductionLog()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final Path LOG_FILE = Paths.get("serialize/introduction.log");
+	private static final Path TEMP_FILE = Paths.get(LOG_FILE + ".tmp");
+	private static final int MAGIC = 0x43494E54; //CINT
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16; //magic + 版本 + 結尾位置
+	private static final int END_OFFSET = 8;
+	private static final int ENTRY_HEADER_SIZE = 8 + 1 + 4 + 4; //使用者ID + 旗標 + 原本長度 + 儲存長度
+	private static final long INITIAL_CAPACITY = 1L << 20; //1MB
+	private static final int COMPRESS_THRESHOLD = 256; //超過這個長度的介紹才壓縮
+	private static final long COMMIT_DELAY_MILLIS = 50L; //寫入後50毫秒內force
+
+	private static final byte DEFLATED = 1;
+	private static final byte DELETED = 2;
+
+	private static FileChannel channel;
+	private static volatile MappedByteBuffer log; //擴大或整理時會換成新的映射
+	private static long end; //下一筆資料的位置
+	private static long durableEnd; //已經force 並寫進標頭的結尾
+	private static long liveBytes; //最新的資料佔了多少位元組 其他都是可以整理掉的
+	private static int generation = 0; //換成整理過的檔案時增加 舊檔案的force就不用再寫標頭
+	private static boolean commitScheduled = false;
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * Map the log file and pass the latest entry of each user to the consumer, in the order they were written.
+	 *
+	 * @param consumer The function that receives a user ID and the offset of the entry, 0 if the introduction of the
+	 * user was deleted. It should call {@link #supersede} if the user already had an entry.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void open(OffsetConsumer consumer)
+	{
+		try
+		{
+			channel = FileChannel.open(LOG_FILE, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long fileSize = channel.size();
+			map(Math.max(fileSize, INITIAL_CAPACITY));
+			if (fileSize < HEADER_SIZE || log.getInt(0) != MAGIC) //新檔案
+			{
+				log.putInt(0, MAGIC).putInt(4, VERSION);
+				setEnd(HEADER_SIZE);
+				log.force(END_OFFSET, 8);
+				durableEnd = end;
+				return;
+			}
+		}
+		catch (IOException exception)
+		{
+			throw new UncheckedIOException(exception);
+		}
+
+		end = durableEnd = log.getLong(END_OFFSET);
+		for (long offset = HEADER_SIZE; offset < end; offset += entrySize(offset))
+		{
+			if ((log.get((int) offset + 8) & DELETED) != 0) //刪除紀錄
+				consumer.accept(log.getLong((int) offset), 0L);
+			else
+			{
+				liveBytes += entrySize(offset); //被取代時 會透過supersede扣掉
+				consumer.accept(log.getLong((int) offset), offset);
+			}
+		}
+	}
+
+	/**
+	 * Append an introduction to the log. The entry can be read immediately, and will be forced to the storage device
+	 * within {@link #COMMIT_DELAY_MILLIS} milliseconds, before the end in the header moves, so an entry that was written
+	 * halfway is never read after a restart.
+	 *
+	 * @param userID The ID of the user.
+	 * @param introduction The introduction, {@code null} means delete the introduction.
+	 * @return The offset of the new entry, or 0 if deleted.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized long append(long userID, String introduction)
+	{
+		byte flags = 0;
+		byte[] raw = introduction != null ? introduction.getBytes(StandardCharsets.UTF_8) : new byte[0];
+		byte[] stored = raw;
+		if (introduction == null)
+			flags = DELETED;
+		else if (raw.length > COMPRESS_THRESHOLD)
+		{
+			byte[] compressed = deflate(raw);
+			if (compressed.length < raw.length) //真的有變小才用
+			{
+				stored = compressed;
+				flags = DEFLATED;
+			}
+		}
+
+		long offset = end;
+		long newEnd = offset + ENTRY_HEADER_SIZE + stored.length;
+		if (newEnd > log.capacity()) //空間不夠
+		{
+			try
+			{
+				map(Math.max((long) log.capacity() << 1, newEnd));
+			}
+			catch (IOException exception)
+			{
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		log.putLong((int) offset, userID)
+				.put((int) offset + 8, flags)
+				.putInt((int) offset + 9, raw.length)
+				.putInt((int) offset + 13, stored.length)
+				.put((int) offset + ENTRY_HEADER_SIZE, stored);
+		end = newEnd; //標頭裡的結尾等到force之後才移動
+		if (introduction != null)
+			liveBytes += newEnd - offset;
+		if (!commitScheduled) //同一批只排一次
+		{
+			commitScheduled = true;
+			executorService.schedule(IntroductionLog::commit, COMMIT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return introduction != null ? offset : 0L;
+	}
+
+	/**
+	 * Force the entries that were appended since the last commit, then move the end in the header and force it. The
+	 * entries are forced without holding the monitor, so appending never waits for the storage device.
+	 */
+	private static void commit()
+	{
+		MappedByteBuffer buffer;
+		long from, to;
+		int committingGeneration;
+		synchronized (IntroductionLog.class)
+		{
+			commitScheduled = false;
+			buffer = log;
+			from = durableEnd;
+			to = end;
+			committingGeneration = generation;
+		}
+		if (from == to) //沒有新的資料
+			return;
+		try
+		{
+			buffer.force((int) from, (int) (to - from)); //先寫完資料 才移動結尾
+			synchronized (IntroductionLog.class)
+			{
+				if (committingGeneration != generation) //途中換成整理過的檔案了 新檔案已經force過
+					return;
+				log.putLong(END_OFFSET, to); //end可能已經又往後了 只寫入force過的部分
+				log.force(END_OFFSET, 8);
+				durableEnd = to;
+			}
+		}
+		catch (RuntimeException exception) //下次再試
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+
+	/**
+	 * Stop the commit thread and commit the rest. This method will be called in
+	 * {@link cartoland.events.BotOnlineOffline#onShutdown} through {@link UserTable#closeIntroductions}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void close()
+	{
+		executorService.shutdown();
+		try
+		{
+			if (!executorService.awaitTermination(1L, TimeUnit.SECONDS))
+				executorService.shutdownNow();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+		commit(); //剩下的資料
+	}
+
+	/**
+	 * Read an introduction directly from the mapped file.
+	 *
+	 * @param offset The offset of the entry.
+	 * @return The introduction.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static String read(long offset)
+	{
+		MappedByteBuffer log = IntroductionLog.log; //讀到一半被擴大也沒關係 兩個映射的內容相同
+		int position = (int) offset;
+		int rawLength = log.getInt(position + 9);
+		ByteBuffer stored = log.slice(position + ENTRY_HEADER_SIZE, log.getInt(position + 13));
+		if ((log.get(position + 8) & DEFLATED) == 0) //沒有壓縮
+			return StandardCharsets.UTF_8.decode(stored).toString();
+
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(stored);
+			byte[] raw = new byte[rawLength];
+			inflater.inflate(raw);
+			return new String(raw, StandardCharsets.UTF_8);
+		}
+		catch (DataFormatException exception)
+		{
+			throw new IllegalStateException(exception);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Called when an entry is replaced by a newer one or deleted, so the garbage can be counted.
+	 *
+	 * @param offset The offset of the old entry.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void supersede(long offset)
+	{
+		liveBytes -= entrySize(offset);
+	}
+
+	/**
+	 * @return {@code true} if more than half of the log is superseded entries.
+	 */
+	static synchronized boolean shouldCompact()
+	{
+		return end - HEADER_SIZE > liveBytes << 1;
+	}
+
+	/**
+	 * Write a new log with only the given entries into a temporary file and force it. The current log is not changed
+	 * until {@link #swap}, so the caller doesn't need to hold any lock of {@link UserTable}, but no entry may be
+	 * appended in between.
+	 *
+	 * @param offsets The offsets of the latest entries.
+	 * @return The offsets of the entries in the new log, or {@code null} if the new log can't be written.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static long[] writeCompacted(long[] offsets)
+	{
+		MappedByteBuffer log = IntroductionLog.log;
+		long[] newOffsets = new long[offsets.length];
+		try (FileChannel tempChannel = FileChannel.open(TEMP_FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			long newEnd = HEADER_SIZE;
+			tempChannel.position(HEADER_SIZE);
+			for (int i = 0; i < offsets.length; i++)
+			{
+				int size = entrySize(offsets[i]);
+				ByteBuffer entry = log.slice((int) offsets[i], size);
+				while (entry.hasRemaining())
+					tempChannel.write(entry);
+				newOffsets[i] = newEnd;
+				newEnd += size;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(newEnd).flip();
+			while (header.hasRemaining())
+				tempChannel.write(header, header.position());
+			tempChannel.force(true);
+		}
+		catch (IOException exception) //失敗了就繼續用舊的
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+			return null;
+		}
+		return newOffsets;
+	}
+
+	/**
+	 * Replace the log by the file from {@link #writeCompacted}. This is only a rename and a new mapping, the new file
+	 * was already forced.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void swap()
+	{
+		try
+		{
+			channel.close();
+			Files.move(TEMP_FILE, LOG_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(LOG_FILE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			map(Math.max(channel.size(), INITIAL_CAPACITY));
+		}
+		catch (IOException exception)
+		{
+			throw new UncheckedIOException(exception);
+		}
+		long oldSize = end - HEADER_SIZE;
+		end = durableEnd = log.getLong(END_OFFSET);
+		liveBytes = end - HEADER_SIZE;
+		generation++; //舊檔案還沒寫進標頭的結尾不用再寫
+		FileHandle.log("compact introduction log: " + oldSize + " -> " + liveBytes + " bytes");
+	}
+
+	private static void map(long capacity) throws IOException
+	{
+		log = channel.map(FileChannel.MapMode.READ_WRITE, 0L, capacity); //會自動擴大檔案
+	}
+
+	private static void setEnd(long newEnd)
+	{
+		end = newEnd;
+		log.putLong(END_OFFSET, newEnd);
+	}
+
+	private static int entrySize(long offset)
+	{
+		return ENTRY_HEADER_SIZE + log.getInt((int) offset + 13);
+	}
+
+	private static byte[] deflate(byte[] raw)
+	{
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try
+		{
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] buffer = new byte[raw.length];
+			int length = deflater.deflate(buffer);
+			return deflater.finished() ? Arrays.copyOf(buffer, length) : raw; //壓縮後還更大
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * {@code OffsetConsumer} is a functional interface that receives an entry of the log.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	@FunctionalInterface
+	interface OffsetConsumer
+	{
+		void accept(long userID, long offset);
+	}
+}
@@ -0,0 +1,320 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@code JournalHandle} is a utility class that handles the write-ahead journal of lottery data. Every mutation of
+ * {@link CommandBlocksHandle.LotteryData} is appended as a fixed-size binary record, which will be group-committed by
+ * a background thread every few milliseconds, and replayed when the bot starts. Since every record stores the new
+ * value of a field instead of the difference, replaying a record more than once is harmless. Every record also has
+ * the sequence number of the change for that user, and the records file keeps the sequence number of the last change
+ * it has, so a record that is older than the records file is skipped instead of rolling the value back, for example
+ * when only the process crashed and the mapped pages were still written back. Two records that must
+ * not be separated, such as both sides of a transfer, are appended by {@link #appendPair} as one unit: the first one is
+ * flagged by {@link #PAIRED}, they are always written in the same batch, and they are replayed together or not at
+ * all. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class JournalHandle
+{
+	private JournalHandle()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final Path JOURNAL_FILE = Paths.get("serialize/lottery_data.journal");
+	private static final int RECORD_SIZE = 1 + 8 + 8 + 4; //欄位 + 使用者ID + 新的值 + 序號
+	private static final long COMMIT_INTERVAL_MILLIS = 5L; //每5毫秒寫入一次
+	private static final long COMPACT_THRESHOLD = RECORD_SIZE * 65536L; //日誌超過這個大小就整理成快照
+	private static final byte PAIRED = (byte) 0x80; //欄位代號的最高位元 代表這筆和下一筆是同一個異動 所以欄位代號不能用到這個位元
+
+	private static final Queue<JournalRecord> pending = new ConcurrentLinkedQueue<>(); //還沒寫入的紀錄 JDA的執行緒只會放進這裡 不會等待IO
+	private static final List<JournalRecord> batch = new ArrayList<>(); //已經從pending取出 但還沒force成功的紀錄 只有寫入的執行緒會用到
+	private static final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+	private static FileChannel journal;
+	private static long committedSize; //上一次force成功時日誌的大小
+	private static boolean failed; //上一次寫入失敗 日誌裡可能有寫到一半的紀錄
+	private static BooleanSupplier snapshot; //讓已套用的異動全部寫入硬碟 成功時回傳true
+
+	/**
+	 * Append a record to the journal. This method never blocks, the record will be written by the background thread
+	 * within {@link #COMMIT_INTERVAL_MILLIS} milliseconds.
+	 *
+	 * @param field The code of the field that changed.
+	 * @param userID The ID of the user whose data changed.
+	 * @param value The new value of the field.
+	 * @param sequence The sequence number of the change for this user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void append(byte field, long userID, long value, int sequence)
+	{
+		pending.add(new JournalRecord(field, userID, value, sequence, null));
+	}
+
+	/**
+	 * Append two records that must be applied together, such as the new command blocks of both users of a transfer.
+	 * If the process dies before both of them are written, neither of them is replayed.
+	 *
+	 * @param field The code of the field that changed.
+	 * @param userID The ID of the first user.
+	 * @param value The new value of the field of the first user.
+	 * @param sequence The sequence number of the change for the first user.
+	 * @param otherUserID The ID of the second user.
+	 * @param otherValue The new value of the field of the second user.
+	 * @param otherSequence The sequence number of the change for the second user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void appendPair(byte field, long userID, long value, int sequence, long otherUserID, long otherValue, int otherSequence)
+	{
+		pending.add(new JournalRecord(field, userID, value, sequence, new JournalRecord(field, otherUserID, otherValue, otherSequence, null))); //同一個物件 不會被拆到兩批
+	}
+
+	/**
+	 * Read every complete record in the journal file and pass them to the replayer in the order they were written.
+	 * An incomplete record at the end of the file, which means the process died while writing it, is ignored, and so
+	 * is the first half of a pair whose second half is missing.
+	 *
+	 * @param replayer The function that applies a record.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void replay(Replayer replayer)
+	{
+		if (!Files.exists(JOURNAL_FILE))
+			return;
+		try (FileChannel channel = FileChannel.open(JOURNAL_FILE, StandardOpenOption.READ))
+		{
+			buffer.clear();
+			while (channel.read(buffer) > 0)
+			{
+				buffer.flip();
+				while (buffer.remaining() >= RECORD_SIZE)
+				{
+					if ((buffer.get(buffer.position()) & PAIRED) == 0) //單獨的紀錄
+						replayer.replay(buffer.get(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+					else if (buffer.remaining() >= RECORD_SIZE * 2) //一對紀錄都讀到了才套用
+					{
+						replayer.replay((byte) (buffer.get() & ~PAIRED), buffer.getLong(), buffer.getLong(), buffer.getInt());
+						replayer.replay(buffer.get(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+					}
+					else
+						break;
+				}
+				buffer.compact(); //不完整的紀錄留到下一輪
+			}
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Open the journal file and start the group commit thread. If the journal still has records from last time, they
+	 * will be folded into a snapshot immediately, so this method should be called after {@link #replay}.
+	 *
+	 * @param snapshotFunction The function that makes every applied mutation durable, and returns whether it
+	 * succeeded. The journal will only be truncated if the snapshot succeeded.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void start(BooleanSupplier snapshotFunction)
+	{
+		snapshot = snapshotFunction;
+		try
+		{
+			journal = FileChannel.open(JOURNAL_FILE, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long size = journal.size();
+			size -= size % RECORD_SIZE; //去掉寫到一半的紀錄
+			if (size != 0L)
+			{
+				ByteBuffer lastField = ByteBuffer.allocate(1);
+				journal.read(lastField, size - RECORD_SIZE);
+				if ((lastField.get(0) & PAIRED) != 0) //只有一對的第一筆會有標記 所以最後一筆有標記代表另一半沒寫進去
+					size -= RECORD_SIZE;
+			}
+			journal.truncate(size);
+			journal.position(size);
+			committedSize = size;
+			if (size != 0L) //上次有沒整理的紀錄
+				compact();
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+			return;
+		}
+
+		executorService.scheduleWithFixedDelay(JournalHandle::commit, COMMIT_INTERVAL_MILLIS, COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the group commit thread, write every pending record, fold them into a snapshot and close the journal file.
+	 * This method will be called in {@link cartoland.events.BotOnlineOffline#onShutdown}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void close()
+	{
+		executorService.shutdown();
+		try
+		{
+			if (!executorService.awaitTermination(1L, TimeUnit.SECONDS))
+				executorService.shutdownNow();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (journal == null)
+			return;
+		commit(); //剩下的紀錄
+		try
+		{
+			compact();
+			journal.close();
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+
+	/**
+	 * Write every pending record into the journal and force it. If the writing fails, the records stay in
+	 * {@link #batch}, and the next commit will cut the journal back to {@link #committedSize} and write them again.
+	 * Replaying a record twice is harmless, so it doesn't matter whether a part of them was written. The failure also
+	 * tries to take a snapshot, because the records are no longer needed once the records file is durable.
+	 */
+	private static void commit()
+	{
+		JournalRecord record;
+		while ((record = pending.poll()) != null)
+			batch.add(record);
+		if (batch.isEmpty()) //沒有新紀錄
+			return;
+
+		try
+		{
+			if (failed) //去掉上次寫到一半的紀錄
+			{
+				journal.truncate(committedSize);
+				journal.position(committedSize);
+				failed = false;
+			}
+			buffer.clear();
+			for (JournalRecord each : batch)
+			{
+				if (buffer.remaining() < RECORD_SIZE * 2) //緩衝區放不下一對紀錄了
+					writeBuffer();
+				if (each.paired == null)
+					buffer.put(each.field).putLong(each.userID).putLong(each.value).putInt(each.sequence);
+				else
+					buffer.put((byte) (each.field | PAIRED)).putLong(each.userID).putLong(each.value).putInt(each.sequence)
+							.put(each.paired.field).putLong(each.paired.userID).putLong(each.paired.value).putInt(each.paired.sequence);
+			}
+			writeBuffer();
+			journal.force(false); //一整批只需要一次force
+			batch.clear();
+			committedSize = journal.position();
+
+			if (committedSize >= COMPACT_THRESHOLD) //日誌太大了
+				compact();
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+			failed = true; //batch留到下一次重試
+			try
+			{
+				if (compact()) //快照成功的話 這些紀錄已經不需要了
+					batch.clear();
+			}
+			catch (IOException compactException)
+			{
+				compactException.printStackTrace();
+				FileHandle.log(compactException);
+			}
+		}
+	}
+
+	private static void writeBuffer() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			journal.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Fold the journal into a snapshot. This only runs on the commit thread (or before it starts), so no record can
+	 * be written between taking the snapshot and truncating the journal. The records that were queued during the
+	 * snapshot stay in {@link #pending}, and will be written into the truncated journal.
+	 *
+	 * @return {@code true} if the snapshot succeeded and the journal was truncated.
+	 * @throws IOException If the journal can't be truncated.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	private static boolean compact() throws IOException
+	{
+		boolean success;
+		try
+		{
+			success = snapshot.getAsBoolean();
+		}
+		catch (RuntimeException exception) //快照途中資料被修改 下次再試
+		{
+			exception.printStackTrace();
+			FileHandle.log(exception);
+			return false;
+		}
+		if (!success)
+			return false;
+		journal.truncate(0L);
+		journal.position(0L);
+		committedSize = 0L;
+		failed = false; //寫到一半的紀錄也一起去掉了
+		return true;
+	}
+
+	/**
+	 * {@code Replayer} is a functional interface that applies a record of the journal.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	@FunctionalInterface
+	interface Replayer
+	{
+		void replay(byte field, long userID, long value, int sequence);
+	}
+
+	private record JournalRecord(byte field, long userID, long value, int sequence, JournalRecord paired) {}
+}
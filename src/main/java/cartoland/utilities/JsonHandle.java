@@ -1,16 +1,40 @@
 package cartoland.utilities;
 
+import net.dv8tion.jda.api.interactions.DiscordLocale;
+import net.dv8tion.jda.api.interactions.Interaction;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * {@code JsonHandle} is a utility class that handles all the need of JSON. It will load every JSON files that the bot need
  * at the beginning of process, and provide every information that the outer classes need. This is the only place
- * that imports {@link JSONArray} and {@link JSONObject}. Can not be instantiated or inherited.
+ * that imports {@link JSONArray} and {@link JSONObject}.
+ * <p>
+ * The language files are compiled into an immutable {@link LanguageBundle}, which is replaced as a whole by a single
+ * volatile write, so readers never see half of the old files and half of the new ones. New bundles are built by
+ * {@link #reloadLanguageFiles} in a background thread, either by {@code /reload} or automatically when a file in
+ * {@code lang/} changed; if the new files are broken, the old bundle is kept. Can not be instantiated or inherited.
  *
  * @since 1.0
  * @author Alex Cai
@@ -22,81 +46,250 @@ public final class JsonHandle
 		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
 	}
 
-	private static final String USERS_FILE_NAME = "serialize/users.ser";
+	private static final String[] LANGUAGE_FILES = { Languages.TW_MANDARIN, Languages.TAIWANESE, Languages.CANTONESE, Languages.CHINESE, Languages.ESPANOL, Languages.JAPANESE }; //英文以外的語言檔
+	private static final String[] REQUIRED_LISTS = { "help.list", "cmd.list", "faq.list", "dtp.list" }; //英文檔案一定要有的陣列
+	private static final String[] REPLY_COMMANDS = { "help", "cmd", "faq", "dtp", "lang" }; //回覆只和語言 指令 參數有關的指令
+	private static final String LANG_DIRECTORY = "lang/";
+	private static final String CACHE_FILE = "serialize/lang_bundle.bin"; //編譯好的語言檔
+	private static final long DEBOUNCE_MILLIS = 500L; //存檔時常常連續改好幾次 等到停下來500毫秒後才重新載入
 
-	@SuppressWarnings("unchecked")
-	private static final Map<Long, String> users = (FileHandle.deserialize(USERS_FILE_NAME) instanceof HashMap map) ? map : new HashMap<>(); //使用者的語言設定 id為key en, tw 等等的語言字串為value
-	private static final Map<String, JSONObject> languageFileMap = new HashMap<>(7); //語言字串為key 語言檔案為value
-	private static final Map<String, List<String>> commandListMap = new HashMap<>(4); //cmd.list等等為key 語言檔案對應的JSONArray為value
-	private static final StringBuilder builder = new StringBuilder();
-
-	private static JSONObject englishFile; //英文檔案
+	private static volatile LanguageBundle bundle; //編譯好的語言檔 只會整個被換掉 不會被修改
+	private static final ScheduledExecutorService reloadService = Executors.newSingleThreadScheduledExecutor();
+	private static ScheduledFuture<?> pendingReload; //還在等待的自動重新載入
+	private static WatchService watchService;
 
 	static
 	{
-		reloadLanguageFiles();
-		FileHandle.registerSerialize(USERS_FILE_NAME, users);
+		LanguageBundle firstBundle = compile(); //第一次載入 沒有舊的可以用 就算有問題也只能用它
+		for (String problem : firstBundle.problems())
+		{
+			System.err.println(problem);
+			FileHandle.log(problem);
+		}
+		bundle = firstBundle;
 	}
 
+	/**
+	 * Get the reply of {@code /help}, {@code /cmd}, {@code /faq}, {@code /dtp} or {@code /lang} without argument,
+	 * which was rendered when the language files were loaded.
+	 *
+	 * @param userID Determines which json file are going to access.
+	 * @param commandName The command, only "help", "cmd", "faq", "dtp" and "lang" are allowed.
+	 * @return The list of all arguments of the command.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
 	public static String command(long userID, String commandName)
 	{
-		builder.setLength(0);
-		builder.append(getStringFromJsonKey(userID, commandName + ".begin")); //開頭 注意每個語言檔的指令裡一定要有.begin 否則會出現"null"
-		JSONArray dotListArray = englishFile.getJSONArray(commandName + ".list"); //中間的資料 注意每個語言檔的指令裡一定要有.list 否則會擲出JSONException
-		int dotListLength = dotListArray.length();
-		if (dotListLength != 0) //建立回覆字串
-		{
-			for (int i = 0; ; i++)
-			{
-				builder.append(dotListArray.opt(i)); //如果超出JSON陣列的範圍 會出現"null"
-				if (i + 1 == dotListLength) //已經是最後一個了
-					break;
-				builder.append(", ");
-			}
-		}
-		return builder.append(getStringFromJsonKey(userID, commandName + ".end")).toString(); //結尾 注意每個語言檔的指令裡一定要有.end 否則會出現"null"
+		return bundle.commandReply(UserTable.getLanguageCode(userID), commandName, null);
 	}
 
+	/**
+	 * Get the reply of {@code /help}, {@code /cmd}, {@code /faq}, {@code /dtp} or {@code /lang} with an argument,
+	 * which was rendered when the language files were loaded. For {@code /lang}, the language of the user is also
+	 * changed.
+	 *
+	 * @param userID Determines which json file are going to access.
+	 * @param commandName The command, only "help", "cmd", "faq", "dtp" and "lang" are allowed.
+	 * @param argument The argument of the command.
+	 * @return The reply of the argument, or the fail message if the argument is unknown.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
 	public static String command(long userID, String commandName, String argument)
 	{
-		String result = getStringFromJsonKey(userID, commandName + ".name." + argument);
+		String result = bundle.commandReply(UserTable.getLanguageCode(userID), commandName, argument); //用更改之前的語言回覆
 		if ("lang".equals(commandName)) //如果使用的是/lang指令(或/language)
+			UserTable.setLanguage(userID, argument); //更改語言
+		return result;
+	}
+
+	public static List<String> commandList(String commandName)
+	{
+		return bundle.list(commandName + ".list");
+	}
+
+	/**
+	 * Load every language file and compile them into a new {@link LanguageBundle} in the background thread. If the
+	 * files can't be parsed, or have problems such as unknown or cyclic references, the problems are logged and the
+	 * old bundle is kept.
+	 *
+	 * @return A future that completes with {@code true} if the new bundle was published.
+	 * @since 1.0
+	 * @author Alex Cai
+	 */
+	public static CompletableFuture<Boolean> reloadLanguageFiles()
+	{
+		return CompletableFuture.supplyAsync(JsonHandle::rebuild, reloadService);
+	}
+
+	/**
+	 * Watch the {@code lang/} directory, and reload the language files automatically after they changed. Changes
+	 * within {@link #DEBOUNCE_MILLIS} are merged into one reload.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void startWatching()
+	{
+		try
+		{
+			watchService = FileSystems.getDefault().newWatchService();
+			Paths.get(LANG_DIRECTORY).register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		}
+		catch (IOException exception) //沒辦法自動重新載入 還是可以用/reload
 		{
-			users.put(userID, argument); //更改語言
-			return result; //結束
+			exception.printStackTrace();
+			FileHandle.log(exception);
+			return;
 		}
+		Thread watchThread = new Thread(JsonHandle::watch, "lang-watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
 
-		//"null"字串 代表獲取失敗
-		return "null".equals(result) ? getStringFromJsonKey(userID, commandName + ".fail") : result; //注意每個語言檔的指令裡一定要有.fail 否則會出現"null"
+	public static void stopWatching()
+	{
+		try
+		{
+			if (watchService != null)
+				watchService.close(); //會讓watch結束
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+		}
+		reloadService.shutdownNow();
 	}
 
-	public static List<String> commandList(String commandName)
+	private static void watch()
 	{
-		return commandListMap.get(commandName + ".list");
+		try
+		{
+			while (true)
+			{
+				WatchKey key = watchService.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) //OVERFLOW沒有檔名 當作有改變
+					if (!(event.context() instanceof Path file) || file.toString().endsWith(".json"))
+						changed = true;
+				key.reset();
+				if (changed)
+					scheduleReload();
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException exception) //停止監看
+		{
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private static List<String> buildStringListFromJsonArray(JSONArray jsonArray)
+	private static synchronized void scheduleReload()
 	{
-		return jsonArray.toList()
-				.stream()
-				.map(CommonFunctions.stringValue)
-				.toList();
+		if (pendingReload != null)
+			pendingReload.cancel(false); //又改了 重新計時
+		if (!reloadService.isShutdown())
+			pendingReload = reloadService.schedule(JsonHandle::rebuild, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
 	}
 
-	public static void reloadLanguageFiles()
+	/**
+	 * Build a new bundle and publish it if it has no problem. Only called in {@link #reloadService}.
+	 *
+	 * @return {@code true} if the new bundle was published.
+	 */
+	private static boolean rebuild()
 	{
-		languageFileMap.put(Languages.ENGLISH, englishFile = new JSONObject(FileHandle.buildJsonStringFromFile("lang/en.json")));
-		languageFileMap.put(Languages.TW_MANDARIN, new JSONObject(FileHandle.buildJsonStringFromFile("lang/tw.json")));
-		languageFileMap.put(Languages.TAIWANESE, new JSONObject(FileHandle.buildJsonStringFromFile("lang/ta.json")));
-		languageFileMap.put(Languages.CANTONESE, new JSONObject(FileHandle.buildJsonStringFromFile("lang/hk.json")));
-		languageFileMap.put(Languages.CHINESE, new JSONObject(FileHandle.buildJsonStringFromFile("lang/cn.json")));
-		languageFileMap.put(Languages.ESPANOL, new JSONObject(FileHandle.buildJsonStringFromFile("lang/es.json")));
-		languageFileMap.put(Languages.JAPANESE, new JSONObject(FileHandle.buildJsonStringFromFile("lang/jp.json")));
+		LanguageBundle newBundle;
+		try
+		{
+			newBundle = compile();
+		}
+		catch (RuntimeException exception) //JSON格式錯誤 例如還沒存完的檔案
+		{
+			FileHandle.log("reload language files failed, keep the old ones: " + exception.getMessage());
+			return false;
+		}
 
-		commandListMap.put("help.list", buildStringListFromJsonArray(englishFile.getJSONArray("help.list")));
-		commandListMap.put("cmd.list",  buildStringListFromJsonArray(englishFile.getJSONArray("cmd.list")));
-		commandListMap.put("faq.list",  buildStringListFromJsonArray(englishFile.getJSONArray("faq.list")));
-		commandListMap.put("dtp.list",  buildStringListFromJsonArray(englishFile.getJSONArray("dtp.list")));
+		List<String> problems = newBundle.problems();
+		if (!problems.isEmpty())
+		{
+			for (String problem : problems)
+				FileHandle.log(problem);
+			FileHandle.log("reload language files failed, keep the old ones: " + problems.size() + " problem(s)");
+			return false;
+		}
+		bundle = newBundle; //只需要這一次寫入 其他執行緒就會看到完整的新語言檔
+		FileHandle.log("reload language files");
+		return true;
+	}
+
+	/**
+	 * Compile every language file. If the files and settings are the same as when {@link #CACHE_FILE} was written,
+	 * the bundle is restored from the cache without parsing JSON; otherwise, the files are parsed in parallel, and the
+	 * cache is rewritten if the new bundle has no problem.
+	 *
+	 * @return The new bundle, with problems if there are any.
+	 * @throws org.json.JSONException If a file is not valid JSON.
+	 */
+	private static LanguageBundle compile()
+	{
+		Map<String, byte[]> sources = new HashMap<>(LANGUAGE_FILES.length * 2);
+		sources.put(Languages.ENGLISH, FileHandle.buildJsonBytesFromFile(LANG_DIRECTORY + "en.json")); //英文檔案
+		for (String language : LANGUAGE_FILES)
+			sources.put(language, FileHandle.buildJsonBytesFromFile(LANG_DIRECTORY + language + ".json"));
+		byte[] hash = LanguageCache.hash(sources, String.join(",", REQUIRED_LISTS), String.join(",", REPLY_COMMANDS));
+		Path cacheFile = Paths.get(CACHE_FILE);
+		LanguageBundle cachedBundle = LanguageCache.read(cacheFile, hash, REPLY_COMMANDS);
+		if (cachedBundle != null) //語言檔沒有改過
+			return cachedBundle;
+
+		Map<String, CompletableFuture<Map<String, Object>>> parsings = new HashMap<>(sources.size() * 2);
+		for (Map.Entry<String, byte[]> source : sources.entrySet()) //每個檔案分開解析
+			parsings.put(source.getKey(), CompletableFuture.supplyAsync(new Parsing(source.getValue())));
+		Map<String, Map<String, Object>> files = new HashMap<>(sources.size() * 2);
+		for (Map.Entry<String, CompletableFuture<Map<String, Object>>> parsing : parsings.entrySet())
+		{
+			try
+			{
+				files.put(parsing.getKey(), parsing.getValue().join());
+			}
+			catch (CompletionException exception) //擲出原本的JSONException
+			{
+				if (exception.getCause() instanceof RuntimeException cause)
+					throw cause;
+				throw exception;
+			}
+		}
+
+		LanguageBundle newBundle = new LanguageBundle(files, REQUIRED_LISTS, REPLY_COMMANDS);
+		if (newBundle.problems().isEmpty()) //有問題的話 下次啟動還要再回報一次
+		{
+			try
+			{
+				LanguageCache.write(cacheFile, hash, newBundle);
+			}
+			catch (IOException exception) //沒有快取只是啟動比較慢
+			{
+				FileHandle.log(exception);
+			}
+		}
+		return newBundle;
+	}
+
+	/**
+	 * Parse a JSON file in another thread. This is a nested class instead of a lambda, because the body of a lambda
+	 * is a method of {@code JsonHandle}, and the first {@link #compile} runs in the static initializer, so the other
+	 * thread would wait for the initialization of {@code JsonHandle} forever.
+	 *
+	 * @param content The content of the file.
+	 */
+	private record Parsing(byte[] content) implements Supplier<Map<String, Object>>
+	{
+		@Override
+		public Map<String, Object> get()
+		{
+			return new JSONObject(new String(content, StandardCharsets.UTF_8)).toMap();
+		}
 	}
 
 	/**
@@ -111,27 +304,73 @@ public final class JsonHandle
 	public static String getStringFromJsonKey(long userID, String key)
 	{
 		//程式設計原則 make the common case fast
-		//這個函式還能再最佳化嗎?
-
-		//獲取使用者設定的語言
-		//找不到設定的語言就放台灣正體進去
-		JSONObject file = languageFileMap.get(users.computeIfAbsent(userID, k -> Languages.TW_MANDARIN));
-		Object optionalValue; //要獲得的字串(物件型態)
-		String result; //要獲得的字串
-		while (true)
+		//&和英文的預設值都在載入時解析好了 這裡只剩查表
+
+		//獲取使用者設定的語言 沒有設定就用Discord的地區設定
+		//兩者都沒有的話 語言代碼0會對應到台灣正體
+		return bundle.get(UserTable.getLanguageCode(userID), LanguageBundle.findKeyID(key)); //注意若沒找到 會回傳內容為"null"的字串
+	}
+
+	/**
+	 * Get a string like {@link #getStringFromJsonKey}, and format it with arguments like {@link String#formatted}.
+	 * The string is parsed only once, so this is faster than calling {@link String#formatted} on the result of
+	 * {@link #getStringFromJsonKey}.
+	 *
+	 * @param userID Determines which json file are going to access.
+	 * @param key The key of a string in a json file.
+	 * @param args The arguments.
+	 * @return The formatted string.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static String format(long userID, String key, Object... args)
+	{
+		return bundle.template(UserTable.getLanguageCode(userID), LanguageBundle.findKeyID(key)).render(args);
+	}
+
+	/**
+	 * Same as {@link #format}, but appends the result to a builder instead of creating a new string.
+	 *
+	 * @param builder The builder that the result is appended to.
+	 * @param userID Determines which json file are going to access.
+	 * @param key The key of a string in a json file.
+	 * @param args The arguments.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void formatTo(StringBuilder builder, long userID, String key, Object... args)
+	{
+		bundle.template(UserTable.getLanguageCode(userID), LanguageBundle.findKeyID(key)).appendTo(builder, args);
+	}
+
+	/**
+	 * Remember the language from the Discord locale of the user who triggered an interaction, so replies can use it
+	 * when the user has not chosen a language by {@code /lang}. If the locale of the user has no language file, the
+	 * locale of the guild is used instead. This method is called before handling each interaction.
+	 *
+	 * @param interaction The interaction that carries the locales.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void rememberLocale(Interaction interaction)
+	{
+		String language = languageOfLocale(interaction.getUserLocale());
+		if (language == null && interaction.isFromGuild())
+			language = languageOfLocale(interaction.getGuildLocale());
+		if (language != null)
+			UserTable.setLocaleLanguage(interaction.getUser().getIdLong(), language);
+	}
+
+	private static String languageOfLocale(DiscordLocale locale)
+	{
+		return switch (locale)
 		{
-			optionalValue = file.opt(key); //之所以使用optString 是為了更快一些 getString還要檢查has
-
-			//如果使用者的語言檔沒有這個key 就預設使用英文
-			//之所以不用String.valueOf包住全部 而是只包englishFile.opt(key) 是因為只有它才需要valueOf optionalValue只需一個轉字串即可
-			result = optionalValue != null ? optionalValue.toString() : String.valueOf(englishFile.opt(key));
-
-			//注意.json檔內一定不能有空字串 否則charAt會擲出StringIndexOutOfBoundsException
-			//為了讓機器人省去檢查 也為了省去動用result.startsWith 辛苦一下我們人類了
-			if (result.charAt(0) == '&') //以&開頭的json key 代表要去那個地方找 (&在C/C++中代表reference)
-				key = result.substring(1); //獲得新的key 進入下一輪迴圈
-			else //並不是以&開頭
-				return result; //result就是最終找到的結果了 直接結束 注意若沒找到 會回傳內容為"null"的字串
-		}
+			case ENGLISH_US, ENGLISH_UK -> Languages.ENGLISH;
+			case CHINESE_TAIWAN -> Languages.TW_MANDARIN;
+			case CHINESE_CHINA -> Languages.CHINESE;
+			case SPANISH -> Languages.ESPANOL;
+			case JAPANESE -> Languages.JAPANESE;
+			default -> null; //沒有對應的語言檔 台語和粵語在Discord沒有地區設定
+		};
 	}
 }
\ No newline at end of file
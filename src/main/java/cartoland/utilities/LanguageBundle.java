@@ -0,0 +1,347 @@
+package cartoland.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code LanguageBundle} is the compiled form of all language files. Every key is interned into an integer ID that
+ * never changes while the bot is running, and every language is compiled into a dense {@code String[]} indexed by
+ * the ID, with all {@code &} references and English fallbacks already resolved. Therefore, looking up a string is
+ * just two array loads. Unknown and cyclic references are reported when compiling, rather than found when replying.
+ * A bundle without problems can be cached by {@link LanguageCache}, and restored without parsing the JSON files.
+ * Strings that are used with arguments are also parsed into {@link ReplyTemplate}s, once for each language when they
+ * are first used. The lists in the English file, such as {@code cmd.list}, are kept as {@code List<String>}. The
+ * replies of {@code /help}, {@code /cmd}, {@code /faq}, {@code /dtp} and {@code /lang} depend only on the language,
+ * the command and the argument, so they are all rendered when compiling, and replying is just a map lookup. An
+ * instance is immutable once compiled, except the cache of templates, so it can be replaced by a new instance while
+ * other threads are still reading the old one.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class LanguageBundle
+{
+	static final String MISSING = "null"; //找不到的字串 和以前JSONObject.opt的結果相同
+	private static final ReplyTemplate MISSING_TEMPLATE = new ReplyTemplate(MISSING);
+
+	//所有語言檔共用的key編號 重新載入時只會增加 不會改變
+	private static final Map<String, Integer> keyIDs = new ConcurrentHashMap<>(1024);
+	private static final AtomicInteger nextKeyID = new AtomicInteger();
+
+	private final String[][] tables; //tables[語言代碼][key編號]
+	private final ReplyTemplate[][] templates; //和tables相同 第一次使用時才解析
+	private final Map<String, List<String>> lists = new HashMap<>(); //英文檔案中的陣列 例如cmd.list
+	private final Map<String, CommandReplies[]> commandReplies = new HashMap<>(); //commandReplies.get(指令)[語言代碼]
+	private final List<String> problems = new ArrayList<>();
+
+	/**
+	 * Get the ID of a key. The same key always gets the same ID, even after the language files are reloaded.
+	 *
+	 * @param key The key in the language files.
+	 * @return The ID of the key.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static int keyID(String key)
+	{
+		Integer keyID = keyIDs.get(key);
+		return keyID != null ? keyID : keyIDs.computeIfAbsent(key, k -> nextKeyID.getAndIncrement());
+	}
+
+	/**
+	 * Find the ID of a key without interning it, so keys built from user input will not fill the map.
+	 *
+	 * @param key The key in the language files.
+	 * @return The ID of the key, or -1 if no language file has ever had the key.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static int findKeyID(String key)
+	{
+		Integer keyID = keyIDs.get(key);
+		return keyID != null ? keyID : -1;
+	}
+
+	/**
+	 * Compile the language files.
+	 *
+	 * @param files The content of every language file, with language codes of {@link UserTable} as keys. The English
+	 * file is the fallback of all the others.
+	 * @param requiredLists The keys of the lists that the English file must have.
+	 * @param replyCommands The commands whose replies are rendered in advance, such as {@code "cmd"}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	LanguageBundle(Map<String, Map<String, Object>> files, String[] requiredLists, String... replyCommands)
+	{
+		Map<String, Object> englishFile = files.get(Languages.ENGLISH);
+		for (Map.Entry<String, Map<String, Object>> fileEntry : files.entrySet())
+		{
+			if (fileEntry.getValue().isEmpty()) //讀取失敗的檔案也會是空的
+				problems.add("empty language file: " + fileEntry.getKey());
+			for (String key : fileEntry.getValue().keySet())
+				keyID(key); //先編號 才知道表要多大
+		}
+		for (Map.Entry<String, Object> entry : englishFile.entrySet())
+			if (entry.getValue() instanceof List<?> list)
+				lists.put(entry.getKey(), list.stream().map(CommonFunctions.stringValue).toList());
+		for (String requiredList : requiredLists)
+			if (!lists.containsKey(requiredList))
+				problems.add("en: missing list \"" + requiredList + '"');
+
+		int keyCount = nextKeyID.get();
+		tables = new String[UserTable.languageCodeCount()][];
+		for (int code = 1; code < tables.length; code++)
+		{
+			String language = UserTable.languageOfCode(code);
+			Map<String, Object> file = files.get(language);
+			if (file == null)
+			{
+				problems.add("missing language file: " + language);
+				file = englishFile;
+			}
+			String[] table = new String[keyCount];
+			byte[] states = new byte[keyCount]; //0:還沒解析 1:解析中 2:解析完成
+			for (Map.Entry<String, Integer> keyEntry : keyIDs.entrySet())
+				if (keyEntry.getValue() < keyCount)
+					resolve(language, file, englishFile, keyEntry.getKey(), table, states);
+			tables[code] = table;
+		}
+		tables[0] = tables[UserTable.languageCodeOf(Languages.TW_MANDARIN)]; //沒有設定語言的使用者
+		templates = emptyTemplates(keyCount);
+		for (String commandName : replyCommands)
+			commandReplies.put(commandName, renderReplies(commandName));
+	}
+
+	/**
+	 * Restore a bundle that was compiled before, from {@link LanguageCache}. The keys are interned again, so they may
+	 * get different IDs from the ones when the bundle was cached.
+	 *
+	 * @param keys The keys of the cached bundle.
+	 * @param languageTables The resolved strings of each language, in the same order as {@code keys}.
+	 * @param lists The lists in the English file.
+	 * @param replyCommands The commands whose replies are rendered in advance, such as {@code "cmd"}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	LanguageBundle(String[] keys, Map<String, String[]> languageTables, Map<String, List<String>> lists, String... replyCommands)
+	{
+		int[] ids = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			ids[i] = keyID(keys[i]);
+		int keyCount = nextKeyID.get();
+		tables = new String[UserTable.languageCodeCount()][];
+		for (int code = 1; code < tables.length; code++)
+		{
+			String[] cachedTable = languageTables.get(UserTable.languageOfCode(code));
+			String[] table = new String[keyCount];
+			Arrays.fill(table, MISSING); //快取之後才出現的key
+			for (int i = 0; i < ids.length; i++)
+				table[ids[i]] = cachedTable[i];
+			tables[code] = table;
+		}
+		tables[0] = tables[UserTable.languageCodeOf(Languages.TW_MANDARIN)];
+		templates = emptyTemplates(keyCount);
+		this.lists.putAll(lists);
+		for (String commandName : replyCommands)
+			commandReplies.put(commandName, renderReplies(commandName));
+	}
+
+	private ReplyTemplate[][] emptyTemplates(int keyCount)
+	{
+		ReplyTemplate[][] emptyTemplates = new ReplyTemplate[tables.length][];
+		for (int code = 1; code < emptyTemplates.length; code++)
+			emptyTemplates[code] = new ReplyTemplate[keyCount];
+		emptyTemplates[0] = emptyTemplates[UserTable.languageCodeOf(Languages.TW_MANDARIN)];
+		return emptyTemplates;
+	}
+
+	/**
+	 * Render every reply of a command in every language.
+	 *
+	 * @param commandName The command, such as {@code "cmd"}.
+	 * @return The replies, indexed by language code.
+	 */
+	private CommandReplies[] renderReplies(String commandName)
+	{
+		String namePrefix = commandName + ".name.";
+		boolean isLang = "lang".equals(commandName);
+		List<String> dotList = lists.get(commandName + ".list");
+		StringBuilder builder = new StringBuilder();
+		CommandReplies[] replies = new CommandReplies[tables.length];
+		for (int code = 1; code < replies.length; code++)
+		{
+			String[] table = tables[code];
+			//"null"字串 代表獲取失敗 /lang則是直接回傳"null"
+			String fail = isLang ? MISSING : table[keyID(commandName + ".fail")];
+
+			String listReply;
+			if (dotList == null) //沒有列表的指令 例如/lang的參數是必須的
+				listReply = fail;
+			else
+			{
+				builder.setLength(0);
+				builder.append(table[keyID(commandName + ".begin")]) //開頭 注意每個語言檔的指令裡一定要有.begin 否則會出現"null"
+						.append(String.join(", ", dotList)) //中間的資料
+						.append(table[keyID(commandName + ".end")]); //結尾 注意每個語言檔的指令裡一定要有.end 否則會出現"null"
+				listReply = builder.toString();
+			}
+
+			Map<String, String> names = new HashMap<>();
+			for (Map.Entry<String, Integer> keyEntry : keyIDs.entrySet())
+			{
+				String key = keyEntry.getKey();
+				int keyID = keyEntry.getValue();
+				if (key.startsWith(namePrefix) && keyID < table.length && !MISSING.equals(table[keyID]))
+					names.put(key.substring(namePrefix.length()), table[keyID]);
+			}
+			replies[code] = new CommandReplies(listReply, Map.copyOf(names), fail);
+		}
+		replies[0] = replies[UserTable.languageCodeOf(Languages.TW_MANDARIN)];
+		return replies;
+	}
+
+	private String resolve(String language, Map<String, Object> file, Map<String, Object> englishFile, String key, String[] table, byte[] states)
+	{
+		int keyID = keyID(key);
+		if (states[keyID] == 2)
+			return table[keyID];
+		if (states[keyID] == 1) //繞回自己了
+		{
+			problems.add(language + ": cyclic reference at \"" + key + '"');
+			return MISSING;
+		}
+
+		states[keyID] = 1;
+		Object value = file.get(key);
+		if (value == null) //這個語言沒有 就用英文
+			value = englishFile.get(key);
+		String result;
+		if (value == null)
+			result = MISSING;
+		else
+		{
+			result = value.toString();
+			if (!result.isEmpty() && result.charAt(0) == '&') //以&開頭的json key 代表要去那個地方找 (&在C/C++中代表reference)
+			{
+				String target = result.substring(1);
+				if (file.containsKey(target) || englishFile.containsKey(target))
+					result = resolve(language, file, englishFile, target, table, states);
+				else
+				{
+					problems.add(language + ": \"" + key + "\" refers to unknown key \"" + target + '"');
+					result = MISSING;
+				}
+			}
+		}
+		table[keyID] = result;
+		states[keyID] = 2;
+		return result;
+	}
+
+	/**
+	 * @param languageCode The language code of {@link UserTable}.
+	 * @param keyID The ID from {@link #keyID} or {@link #findKeyID}.
+	 * @return The string, or {@link #MISSING} if no language has the key.
+	 */
+	String get(int languageCode, int keyID)
+	{
+		String[] table = tables[languageCode];
+		return keyID >= 0 && keyID < table.length ? table[keyID] : MISSING; //編譯之後才出現的key
+	}
+
+	/**
+	 * Get the template of a string. Two threads may parse the same string at the same time, but they get equal
+	 * templates, so the race is harmless.
+	 *
+	 * @param languageCode The language code of {@link UserTable}.
+	 * @param keyID The ID from {@link #keyID} or {@link #findKeyID}.
+	 * @return The template, which renders {@link #MISSING} if no language has the key.
+	 */
+	ReplyTemplate template(int languageCode, int keyID)
+	{
+		ReplyTemplate[] languageTemplates = templates[languageCode];
+		if (keyID < 0 || keyID >= languageTemplates.length)
+			return MISSING_TEMPLATE;
+		ReplyTemplate template = languageTemplates[keyID];
+		if (template == null)
+			languageTemplates[keyID] = template = new ReplyTemplate(tables[languageCode][keyID]);
+		return template;
+	}
+
+	/**
+	 * @param key The key of a list in the English file, such as {@code cmd.list}.
+	 * @return The list, or {@code null} if the English file doesn't have the list.
+	 */
+	List<String> list(String key)
+	{
+		return lists.get(key);
+	}
+
+	/**
+	 * @param languageCode The language code of {@link UserTable}.
+	 * @param commandName The command, such as {@code "cmd"}.
+	 * @param argument The argument of the command, or {@code null} for the list of all arguments.
+	 * @return The rendered reply, or {@code null} if the replies of the command were not rendered.
+	 */
+	String commandReply(int languageCode, String commandName, String argument)
+	{
+		CommandReplies[] replies = commandReplies.get(commandName);
+		if (replies == null)
+			return null;
+		CommandReplies reply = replies[languageCode];
+		return argument == null ? reply.list : reply.names.getOrDefault(argument, reply.fail);
+	}
+
+	/**
+	 * @return The number of keys in the tables of this bundle.
+	 */
+	int keyCount()
+	{
+		return tables[0].length;
+	}
+
+	/**
+	 * @return The keys in the tables of this bundle, indexed by their IDs.
+	 */
+	String[] keys()
+	{
+		String[] keys = new String[keyCount()];
+		Arrays.fill(keys, ""); //正在被其他執行緒編號的key
+		for (Map.Entry<String, Integer> keyEntry : keyIDs.entrySet())
+			if (keyEntry.getValue() < keys.length)
+				keys[keyEntry.getValue()] = keyEntry.getKey();
+		return keys;
+	}
+
+	/**
+	 * @return The lists in the English file, with keys such as {@code cmd.list}.
+	 */
+	Map<String, List<String>> lists()
+	{
+		return Collections.unmodifiableMap(lists);
+	}
+
+	/**
+	 * @return The problems found when compiling, such as unknown or cyclic references.
+	 */
+	List<String> problems()
+	{
+		return Collections.unmodifiableList(problems);
+	}
+
+	/**
+	 * The replies of a command in a language.
+	 *
+	 * @param list The reply without argument, which lists all arguments.
+	 * @param names The replies of each argument.
+	 * @param fail The reply of an unknown argument.
+	 */
+	private record CommandReplies(String list, Map<String, String> names, String fail) {}
+}
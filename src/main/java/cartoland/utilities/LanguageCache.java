@@ -0,0 +1,230 @@
+package cartoland.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * {@code LanguageCache} is a utility class that writes a compiled {@link LanguageBundle} into a single binary file,
+ * and reads it back by mapping the file into memory, so the bot doesn't need to parse the JSON files when they have
+ * not changed since the last start. The cache file starts with a magic number, the format version, the SHA-256 hash
+ * of the language files and the settings of the bundle, the length and the CRC32 checksum of the payload. A cache
+ * whose hash doesn't match is stale, and is ignored. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class LanguageCache
+{
+	private LanguageCache()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final int MAGIC = 0x43544C42; //CTLB
+	private static final byte FORMAT_VERSION = 1;
+	private static final int HASH_SIZE = 32; //SHA-256
+	private static final int HEADER_SIZE = 4 + 1 + HASH_SIZE + 4 + 4; //magic + 格式版本 + 雜湊值 + 長度 + CRC32
+
+	/**
+	 * Hash the content of the language files and the settings that affect the compiled bundle.
+	 *
+	 * @param sources The content of every language file, with language codes as keys.
+	 * @param settings Everything else that changes the bundle, such as the required lists.
+	 * @return The SHA-256 hash.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static byte[] hash(Map<String, byte[]> sources, String... settings)
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException exception) //每個Java平台都一定要支援SHA-256
+		{
+			throw new IllegalStateException(exception);
+		}
+		String[] languages = sources.keySet().toArray(new String[0]);
+		Arrays.sort(languages); //和Map的順序無關
+		for (String language : languages)
+		{
+			byte[] content = sources.get(language);
+			digest.update(language.getBytes(StandardCharsets.UTF_8));
+			digest.update(intBytes(content.length)); //避免兩個檔案的邊界移動之後 雜湊值還是一樣
+			digest.update(content);
+		}
+		for (String setting : settings)
+		{
+			byte[] bytes = setting.getBytes(StandardCharsets.UTF_8);
+			digest.update(intBytes(bytes.length));
+			digest.update(bytes);
+		}
+		digest.update(intBytes(UserTable.languageCodeCount()));
+		return digest.digest();
+	}
+
+	private static byte[] intBytes(int value)
+	{
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	/**
+	 * Read a bundle from the cache file.
+	 *
+	 * @param file The cache file.
+	 * @param sourceHash The hash from {@link #hash} of the current language files.
+	 * @param replyCommands Passed to the bundle, same as {@link LanguageBundle#LanguageBundle(Map, String[], String...)}.
+	 * @return The bundle, or {@code null} if the cache doesn't exist, is stale, or is broken.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static LanguageBundle read(Path file, byte[] sourceHash, String... replyCommands)
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION)
+				return null; //舊格式 當作過期
+			byte[] hash = new byte[HASH_SIZE];
+			buffer.get(hash);
+			if (!Arrays.equals(hash, sourceHash)) //語言檔改過了
+				return null;
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length != buffer.remaining())
+				return null;
+			CRC32 crc = new CRC32();
+			crc.update(buffer.slice());
+			if ((int) crc.getValue() != checksum)
+				return null;
+
+			String[] keys = new String[buffer.getInt()];
+			for (int i = 0; i < keys.length; i++)
+				keys[i] = readString(buffer);
+			int languageCount = buffer.getInt();
+			Map<String, String[]> languageTables = new HashMap<>(languageCount * 2);
+			for (int i = 0; i < languageCount; i++)
+			{
+				String language = readString(buffer);
+				String[] table = new String[keys.length];
+				for (int j = 0; j < table.length; j++)
+					table[j] = readString(buffer);
+				languageTables.put(language, table);
+			}
+			int listCount = buffer.getInt();
+			Map<String, List<String>> lists = new HashMap<>(listCount * 2);
+			for (int i = 0; i < listCount; i++)
+			{
+				String key = readString(buffer);
+				List<String> list = new ArrayList<>();
+				for (int j = buffer.getInt(); j > 0; j--)
+					list.add(readString(buffer));
+				lists.put(key, List.copyOf(list));
+			}
+			for (int code = 1; code < UserTable.languageCodeCount(); code++)
+				if (!languageTables.containsKey(UserTable.languageOfCode(code)))
+					return null;
+			return new LanguageBundle(keys, languageTables, lists, replyCommands);
+		}
+		catch (NoSuchFileException exception) //第一次啟動
+		{
+			return null;
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException exception) //壞掉的快取就重新編譯
+		{
+			FileHandle.log("language cache is broken: " + exception);
+			return null;
+		}
+	}
+
+	private static String readString(MappedByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		String string = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+
+	/**
+	 * Write a bundle into the cache file. The file is written into a temporary file first, then moved to replace the
+	 * old one, so a crash never leaves a half-written cache.
+	 *
+	 * @param file The cache file.
+	 * @param sourceHash The hash from {@link #hash} of the language files that the bundle was compiled from.
+	 * @param bundle The bundle, which must have no problem.
+	 * @throws IOException If an I/O error occurs.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void write(Path file, byte[] sourceHash, LanguageBundle bundle) throws IOException
+	{
+		ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(256 * 1024);
+		DataOutputStream payload = new DataOutputStream(payloadBytes);
+		int keyCount = bundle.keyCount();
+		String[] keys = bundle.keys();
+		payload.writeInt(keyCount);
+		for (String key : keys)
+			writeString(payload, key);
+		int languageCount = UserTable.languageCodeCount() - 1; //語言代碼0和台灣正體是同一個
+		payload.writeInt(languageCount);
+		for (int code = 1; code <= languageCount; code++)
+		{
+			writeString(payload, UserTable.languageOfCode(code));
+			for (int keyID = 0; keyID < keyCount; keyID++)
+				writeString(payload, bundle.get(code, keyID));
+		}
+		Map<String, List<String>> lists = bundle.lists();
+		payload.writeInt(lists.size());
+		for (Map.Entry<String, List<String>> entry : lists.entrySet())
+		{
+			writeString(payload, entry.getKey());
+			payload.writeInt(entry.getValue().size());
+			for (String element : entry.getValue())
+				writeString(payload, element);
+		}
+		payload.flush();
+
+		byte[] content = payloadBytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(HEADER_SIZE + content.length);
+		DataOutputStream output = new DataOutputStream(fileBytes);
+		output.writeInt(MAGIC);
+		output.writeByte(FORMAT_VERSION);
+		output.write(sourceHash);
+		output.writeInt(content.length);
+		output.writeInt((int) crc.getValue());
+		output.write(content);
+		output.flush();
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temporary, fileBytes.toByteArray());
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeString(DataOutputStream output, String string) throws IOException
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
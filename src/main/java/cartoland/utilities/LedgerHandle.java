@@ -0,0 +1,287 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code LedgerHandle} is a utility class that keeps an append-only ledger of every change of command blocks, so the
+ * reason of a balance can always be found. Every entry has the time, the user, the difference, the reason and a
+ * reference, which is the other user of a transfer, or the seed of a bet or a slot that replays its outcome. Entries
+ * have a fixed size, and each entry also stores the offset of the previous entry of the same user, so the entries of a
+ * user form a linked list from the newest one, and {@code /lottery history} only reads the entries it shows instead of
+ * scanning the whole file. The offset of the newest entry of each user is rebuilt by {@link #open} when the bot starts.
+ * The file is memory-mapped like {@link IntroductionLog}, and forced together with {@link LotteryRecords}. Can not be
+ * instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class LedgerHandle
+{
+	private LedgerHandle()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final Path LEDGER_FILE = Paths.get("serialize/lottery_ledger.bin");
+	private static final int MAGIC = 0x434C4447; //CLDG
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16; //magic + 版本 + 結尾位置
+	private static final int END_OFFSET = 8;
+	private static final int ENTRY_SIZE = 8 + 8 + 8 + 8 + 8 + 1; //時間 + 使用者ID + 差額 + 對方或種子 + 上一筆 + 原因
+	private static final long INITIAL_CAPACITY = ENTRY_SIZE * 65536L;
+
+	public static final byte OPENING = 0; //帳本建立之前就有的方塊 或是和帳本不一致時的調整
+	public static final byte CHAT = 1;
+	public static final byte BET = 2;
+	public static final byte SLOT = 3;
+	public static final byte TRANSFER = 4;
+	public static final byte DAILY = 5;
+	public static final byte DAILY_BONUS = 6;
+	public static final byte ONE_A_TWO_B = 7;
+	private static final String[] REASON_NAMES = { "opening", "chat", "bet", "slot", "transfer", "daily", "daily_bonus", "one_a_two_b" };
+
+	private static FileChannel channel;
+	private static MappedByteBuffer ledger;
+	private static long end; //下一筆資料的位置
+	private static boolean full = false; //超過2GB 無法再對應到記憶體
+	private static final Map<Long, long[]> index = new HashMap<>(); //使用者ID => { 最新一筆的位置, 筆數 }
+
+	/**
+	 * An entry of the ledger.
+	 *
+	 * @param time The time in milliseconds since 1970/1/1.
+	 * @param delta The difference of command blocks, negative if the user lost command blocks.
+	 * @param reason The reason, one of the constants of this class.
+	 * @param reference The ID of the other user of a transfer, or the seed of a bet or a slot, 0 if there isn't one.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public record Entry(long time, long delta, byte reason, long reference) {}
+
+	/**
+	 * Map the ledger file and rebuild the index of every user. This method will be called in the static block of
+	 * {@link CommandBlocksHandle}, before any command blocks change.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void open()
+	{
+		try
+		{
+			channel = FileChannel.open(LEDGER_FILE, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long fileSize = channel.size();
+			map(Math.max(fileSize, INITIAL_CAPACITY));
+			if (fileSize < HEADER_SIZE || ledger.getInt(0) != MAGIC) //新檔案
+			{
+				ledger.putInt(0, MAGIC).putInt(4, VERSION);
+				setEnd(HEADER_SIZE);
+				return;
+			}
+		}
+		catch (IOException exception)
+		{
+			throw new UncheckedIOException(exception);
+		}
+
+		end = ledger.getLong(END_OFFSET);
+		for (long offset = HEADER_SIZE; offset < end; offset += ENTRY_SIZE)
+		{
+			long[] userIndex = index.computeIfAbsent(ledger.getLong((int) offset + 8), userID -> new long[2]);
+			userIndex[0] = offset;
+			userIndex[1]++;
+		}
+	}
+
+	/**
+	 * Append an entry to the ledger. The entry is not forced to the storage device here, it will be forced with
+	 * {@link LotteryRecords} by {@link JournalHandle}.
+	 *
+	 * @param userID The ID of the user.
+	 * @param delta The difference of command blocks.
+	 * @param reason The reason, one of the constants of this class.
+	 * @param reference The ID of the other user of a transfer, or the seed of a bet or a slot, 0 if there isn't one.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void append(long userID, long delta, byte reason, long reference)
+	{
+		if (!reserve(ENTRY_SIZE))
+			return;
+		long time = System.currentTimeMillis();
+		setEnd(put(end, time, userID, delta, reason, reference)); //先寫完資料 才移動結尾
+	}
+
+	/**
+	 * Append both entries of a transfer at once. The end of the ledger only moves after both entries are written, so
+	 * the ledger never has only one side of a transfer.
+	 *
+	 * @param fromID The ID of the sender.
+	 * @param toID The ID of the receiver.
+	 * @param amount The command blocks that the receiver got.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void appendTransfer(long fromID, long toID, long amount)
+	{
+		if (!reserve(ENTRY_SIZE * 2))
+			return;
+		long time = System.currentTimeMillis();
+		long offset = put(end, time, fromID, -amount, TRANSFER, toID);
+		setEnd(put(offset, time, toID, amount, TRANSFER, fromID)); //兩筆都寫完才移動結尾
+	}
+
+	/**
+	 * Make sure the mapped file has room for new entries.
+	 *
+	 * @return {@code false} if the ledger is full, then nothing should be written.
+	 */
+	private static boolean reserve(int size)
+	{
+		if (full)
+			return false;
+		long newEnd = end + size;
+		if (newEnd <= ledger.capacity())
+			return true;
+		if (newEnd > Integer.MAX_VALUE) //MappedByteBuffer最多只能到2GB
+		{
+			full = true;
+			FileHandle.log("lottery ledger is full, new entries are not recorded");
+			return false;
+		}
+		try
+		{
+			map(Math.min(Math.max((long) ledger.capacity() << 1, newEnd), Integer.MAX_VALUE));
+		}
+		catch (IOException exception)
+		{
+			throw new UncheckedIOException(exception);
+		}
+		return true;
+	}
+
+	/**
+	 * Write an entry without moving the end.
+	 *
+	 * @return The offset after the entry.
+	 */
+	private static long put(long offset, long time, long userID, long delta, byte reason, long reference)
+	{
+		long[] userIndex = index.computeIfAbsent(userID, id -> new long[2]);
+		ledger.putLong((int) offset, time)
+				.putLong((int) offset + 8, userID)
+				.putLong((int) offset + 16, delta)
+				.putLong((int) offset + 24, reference)
+				.putLong((int) offset + 32, userIndex[0]) //0代表沒有上一筆 因為0是檔案的標頭
+				.put((int) offset + 40, reason);
+		userIndex[0] = offset;
+		userIndex[1]++;
+		return offset + ENTRY_SIZE;
+	}
+
+	/**
+	 * Read the entries of a user from the newest one.
+	 *
+	 * @param userID The ID of the user.
+	 * @param skip How many newest entries are skipped.
+	 * @param count The maximum number of entries.
+	 * @return The entries, the newest one first.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static synchronized List<Entry> history(long userID, int skip, int count)
+	{
+		long[] userIndex = index.get(userID);
+		if (userIndex == null)
+			return List.of();
+		long offset = userIndex[0];
+		for (; skip > 0 && offset != 0L; skip--)
+			offset = ledger.getLong((int) offset + 32);
+		List<Entry> entries = new ArrayList<>((int) Math.min(count, userIndex[1]));
+		for (; count > 0 && offset != 0L; count--)
+		{
+			int position = (int) offset;
+			entries.add(new Entry(ledger.getLong(position), ledger.getLong(position + 16), ledger.get(position + 40), ledger.getLong(position + 24)));
+			offset = ledger.getLong(position + 32);
+		}
+		return entries;
+	}
+
+	/**
+	 * @param userID The ID of the user.
+	 * @return How many entries the user has.
+	 */
+	public static synchronized int historySize(long userID)
+	{
+		long[] userIndex = index.get(userID);
+		return userIndex != null ? (int) userIndex[1] : 0;
+	}
+
+	/**
+	 * @param reason The reason of an entry.
+	 * @return The name of the reason, which is a part of the key in the language files.
+	 */
+	public static String reasonName(byte reason)
+	{
+		return reason >= 0 && reason < REASON_NAMES.length ? REASON_NAMES[reason] : "unknown";
+	}
+
+	/**
+	 * Replay the whole ledger from the beginning, and rebuild the command blocks of every user from it. The result
+	 * should be the same as {@link LotteryRecords}; a difference means some entries were lost in a crash.
+	 *
+	 * @return The command blocks of every user in the ledger.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized Map<Long, Long> replay()
+	{
+		Map<Long, Long> balances = new HashMap<>(index.size() * 2);
+		for (long offset = HEADER_SIZE; offset < end; offset += ENTRY_SIZE)
+			balances.merge(ledger.getLong((int) offset + 8), ledger.getLong((int) offset + 16), Long::sum);
+		return balances;
+	}
+
+	/**
+	 * Force the ledger to the storage device. Only the mapping and the end are read while holding the monitor, the
+	 * force itself doesn't, so {@link #append} never waits for the storage device. Entries that are appended during
+	 * the force are forced next time.
+	 *
+	 * @return Always {@code true}, so it can be chained with {@link LotteryRecords#force}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static boolean force()
+	{
+		MappedByteBuffer buffer;
+		long forceEnd;
+		synchronized (LedgerHandle.class)
+		{
+			buffer = ledger; //擴大後舊的映射仍然對應同一個檔案 force它也一樣
+			forceEnd = end;
+		}
+		buffer.force(0, (int) forceEnd); //包含標頭裡的結尾
+		return true;
+	}
+
+	private static void map(long capacity) throws IOException
+	{
+		ledger = channel.map(FileChannel.MapMode.READ_WRITE, 0L, capacity); //會自動擴大檔案
+	}
+
+	private static void setEnd(long newEnd)
+	{
+		end = newEnd;
+		ledger.putLong(END_OFFSET, newEnd);
+	}
+}
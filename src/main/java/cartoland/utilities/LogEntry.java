@@ -0,0 +1,30 @@
+package cartoland.utilities;
+
+/**
+ * {@code LogEntry} is an entry of the log, with typed fields so the logs can be queried by machines. Fields that are
+ * not used by an entry are {@code 0}, {@code -1} or {@code null}, and will not be written. Entries are created by
+ * {@link FileHandle} and written by {@link LogWriter}.
+ *
+ * @param time The time this entry was created, in epoch milliseconds.
+ * @param type The type of this entry, such as {@code "info"}, {@code "error"}, {@code "command"}.
+ * @param userID The ID of the user who caused this entry, 0 if none.
+ * @param userName The name of the user, or {@code null}.
+ * @param command The command that was used, or {@code null}.
+ * @param channelID The ID of the channel, 0 if none.
+ * @param latencyMillis How long it took to handle the command, -1 if not measured.
+ * @param message Free text, or {@code null}.
+ * @since 2.1
+ * @author Alex Cai
+ */
+record LogEntry(long time, String type, long userID, String userName, String command, long channelID, long latencyMillis, String message)
+{
+	static final String INFO = "info";
+	static final String ERROR = "error";
+	static final String COMMAND = "command";
+	static final String DIRECT_MESSAGE = "direct_message";
+
+	static LogEntry info(String message)
+	{
+		return new LogEntry(System.currentTimeMillis(), INFO, 0L, null, null, 0L, -1L, message);
+	}
+}
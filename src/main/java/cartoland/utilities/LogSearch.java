@@ -0,0 +1,275 @@
+package cartoland.utilities;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@code LogSearch} is a utility class that searches the logs written by {@link LogWriter}. It never reads the logs
+ * line by line; instead, it maps the sidecar index of each log file into memory and checks the fixed-size records,
+ * and only reads the lines that matched. Files whose dates are out of the range are skipped without being opened,
+ * except the files of the day after the range, which may have lines that were written late after the day changed.
+ * Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class LogSearch
+{
+	private LogSearch()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final ZoneId zone = ZoneId.systemDefault();
+	private static final ExecutorService searchService = Executors.newSingleThreadExecutor(); //搜尋可能要解壓縮很久以前的檔案 不能佔用JDA的執行緒
+
+	/**
+	 * Run {@link #search} in the background thread, so the thread of JDA is not blocked while old logs are being
+	 * decompressed. Searches run one by one.
+	 *
+	 * @param userID The ID of the user, 0 for any user.
+	 * @param command The command, {@code null} for any command.
+	 * @param from The beginning of the time range in epoch milliseconds, inclusive.
+	 * @param to The end of the time range in epoch milliseconds, exclusive.
+	 * @param limit The maximum number of lines.
+	 * @return A future that completes with the matched lines from old to new.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static CompletableFuture<List<String>> searchLater(long userID, String command, long from, long to, int limit)
+	{
+		return CompletableFuture.supplyAsync(() -> search(userID, command, from, to, limit), searchService);
+	}
+
+	/**
+	 * Stop the background thread of {@link #searchLater}. This method will be called in
+	 * {@link cartoland.events.BotOnlineOffline#onShutdown}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void stop()
+	{
+		searchService.shutdownNow();
+	}
+
+	/**
+	 * Search the latest lines that match all the conditions.
+	 *
+	 * @param userID The ID of the user, 0 for any user.
+	 * @param command The command, such as {@code "lottery"} or {@code "/lottery"}, {@code null} for any command.
+	 * @param from The beginning of the time range in epoch milliseconds, inclusive.
+	 * @param to The end of the time range in epoch milliseconds, exclusive.
+	 * @param limit The maximum number of lines.
+	 * @return The matched lines from old to new, at most {@code limit} lines.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static List<String> search(long userID, String command, long from, long to, int limit)
+	{
+		String bareCommand = command == null ? null : command.startsWith("/") ? command.substring(1) : command; //右鍵選單沒有斜線
+		int commandHash = 0, slashCommandHash = 0;
+		if (bareCommand != null)
+		{
+			commandHash = bareCommand.hashCode();
+			slashCommandHash = ("/" + bareCommand).hashCode();
+		}
+		LocalDate fromDate = LocalDate.ofInstant(Instant.ofEpochMilli(from), zone);
+		LocalDate toDate = LocalDate.ofInstant(Instant.ofEpochMilli(to), zone).plusDays(1L); //換日時晚到的行在隔天的檔案裡
+
+		List<IndexFile> indexFiles = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(LogWriter.LOGS_DIRECTORY), "*" + LogWriter.INDEX_EXTENSION))
+		{
+			for (Path file : files)
+			{
+				IndexFile indexFile = IndexFile.parse(file);
+				if (indexFile != null && !indexFile.date.isBefore(fromDate) && !indexFile.date.isAfter(toDate)) //在範圍內的日期
+					indexFiles.add(indexFile);
+			}
+		}
+		catch (IOException exception)
+		{
+			FileHandle.log(exception);
+			return Collections.emptyList();
+		}
+		indexFiles.sort(Comparator.comparing((IndexFile indexFile) -> indexFile.date).thenComparingInt(indexFile -> indexFile.index).reversed()); //從新到舊
+
+		List<String> results = new ArrayList<>();
+		for (IndexFile indexFile : indexFiles)
+		{
+			if (results.size() >= limit)
+				break;
+			try
+			{
+				long[] offsets = scan(indexFile.path, userID, command != null, commandHash, slashCommandHash, from, to, limit - results.size());
+				if (offsets.length == 0)
+					continue;
+				List<String> lines = readLines(indexFile.path, offsets);
+				if (bareCommand != null) //雜湊值相同 不代表是同一個指令
+					lines.removeIf(line -> !isCommand(line, bareCommand));
+				Collections.reverse(lines); //從新到舊
+				results.addAll(lines);
+			}
+			catch (IOException exception) //壞掉的檔案就跳過
+			{
+				FileHandle.log(exception);
+			}
+		}
+		Collections.reverse(results); //從舊到新
+		return results;
+	}
+
+	/**
+	 * Scan an index file from the end to the beginning.
+	 *
+	 * @return The offsets of the matched lines in ascending order.
+	 */
+	private static long[] scan(Path indexPath, long userID, boolean hasCommand, int commandHash, int slashCommandHash, long from, long to, int limit) throws IOException
+	{
+		long[] offsets = new long[Math.min(limit, 64)];
+		int count = 0;
+		try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ))
+		{
+			long size = indexChannel.size() - indexChannel.size() % LogWriter.INDEX_RECORD_SIZE; //寫到一半的紀錄不算
+			if (size == 0L)
+				return new long[0];
+			MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+			for (int record = (int) size - LogWriter.INDEX_RECORD_SIZE; record >= 0 && count < limit; record -= LogWriter.INDEX_RECORD_SIZE)
+			{
+				long time = index.getLong(record + 8);
+				if (time < from || time >= to)
+					continue;
+				if (userID != 0L && index.getLong(record + 16) != userID)
+					continue;
+				if (hasCommand)
+				{
+					int hash = index.getInt(record + 24);
+					if (hash != commandHash && hash != slashCommandHash)
+						continue;
+				}
+				if (count == offsets.length)
+					offsets = Arrays.copyOf(offsets, Math.min(limit, count << 1));
+				offsets[count++] = index.getLong(record);
+			}
+		}
+		offsets = Arrays.copyOf(offsets, count);
+		Arrays.sort(offsets);
+		return offsets;
+	}
+
+	/**
+	 * Check the {@code "command"} field of a line, because the index only has the hash of the command.
+	 *
+	 * @return {@code true} if the command of the line is {@code bareCommand}, with or without the slash.
+	 */
+	private static boolean isCommand(String line, String bareCommand)
+	{
+		String command;
+		try
+		{
+			command = new JSONObject(line).optString("command", null);
+		}
+		catch (JSONException exception) //寫到一半的行
+		{
+			return false;
+		}
+		return command != null && (command.equals(bareCommand) || command.equals("/" + bareCommand));
+	}
+
+	/**
+	 * Read the lines at the offsets, from the log file if it is not compressed yet, or else from the compressed file.
+	 *
+	 * @param offsets The offsets in ascending order.
+	 * @return The lines in the same order as the offsets.
+	 */
+	private static List<String> readLines(Path indexPath, long[] offsets) throws IOException
+	{
+		String name = indexPath.toString();
+		String baseName = name.substring(0, name.length() - LogWriter.INDEX_EXTENSION.length());
+		List<String> lines = new ArrayList<>(offsets.length);
+		Path logFile = Paths.get(baseName + LogWriter.EXTENSION);
+		if (Files.exists(logFile))
+		{
+			try (FileChannel logChannel = FileChannel.open(logFile, StandardOpenOption.READ))
+			{
+				MappedByteBuffer log = logChannel.map(FileChannel.MapMode.READ_ONLY, 0L, logChannel.size());
+				for (long offset : offsets)
+				{
+					int start = (int) offset, end = start;
+					while (end < log.limit() && log.get(end) != '\n')
+						end++;
+					lines.add(StandardCharsets.UTF_8.decode(log.slice(start, end - start)).toString());
+				}
+				return lines;
+			}
+			catch (IOException exception) //剛好被壓縮了
+			{
+				lines.clear();
+			}
+		}
+
+		//壓縮過的檔案只能從頭讀 但只需要讀到最後一個符合的行
+		try (InputStream input = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(Paths.get(baseName + LogWriter.COMPRESSED_EXTENSION)), 64 * 1024)))
+		{
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			long position = 0L;
+			for (long offset : offsets)
+			{
+				input.skipNBytes(offset - position); //跳到這一行
+				position = offset;
+				line.reset();
+				int b;
+				while ((b = input.read()) != -1 && b != '\n')
+					line.write(b);
+				position += line.size() + 1;
+				lines.add(line.toString(StandardCharsets.UTF_8));
+			}
+		}
+		return lines;
+	}
+
+	private record IndexFile(Path path, LocalDate date, int index)
+	{
+		/**
+		 * @return The index file, or {@code null} if the file name is not a log index.
+		 */
+		private static IndexFile parse(Path path)
+		{
+			String name = path.getFileName().toString();
+			String[] parts = name.substring(0, name.length() - LogWriter.INDEX_EXTENSION.length()).split("\\.");
+			try
+			{
+				return new IndexFile(path, LocalDate.parse(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+			}
+			catch (RuntimeException exception)
+			{
+				return null;
+			}
+		}
+	}
+}
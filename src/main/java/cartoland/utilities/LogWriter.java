@@ -0,0 +1,452 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@code LogWriter} is a utility class that writes log entries in the background. Any thread can put an entry into a
+ * lock-free ring buffer without waiting for IO, and a single writer thread drains the buffer into the log file of the
+ * day through a buffered {@link FileChannel}. If the ring buffer is full, the new entry is dropped and counted, and
+ * the count will be written into the log later.
+ * <p>
+ * Every entry is written as a line of JSON, so the logs can be queried by machines. A log file is finished when it
+ * is larger than {@link #MAX_FILE_SIZE} or the day changed, and finished files are compressed by gzip in another
+ * thread. The files of a day are named {@code logs/<date>.jsonl}, {@code logs/<date>.1.jsonl} and so on. The date of
+ * the file only moves forward: a line of the previous day that was still in the buffer when the day changed is
+ * written into the file of the new day with its own time, because the file of the previous day may be being
+ * compressed or already deleted.
+ * <p>
+ * Beside every log file, the writer also appends a sidecar index {@code logs/<date>.idx}, which has a fixed-size
+ * record for each line: the offset of the line in the uncompressed file, the time, the user ID and the hash of the
+ * command. The index is never compressed, so {@link LogSearch} can find lines without reading the logs. Can not be
+ * instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class LogWriter
+{
+	private LogWriter()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final int CAPACITY = 1 << 13; //環形緩衝區能放幾行 必須是2的次方
+	private static final int MASK = CAPACITY - 1;
+	private static final long DRAIN_INTERVAL_MILLIS = 10L; //每10毫秒寫入一次
+	static final long MAX_FILE_SIZE = 8L * 1024 * 1024; //每個檔案最多8MB
+	static final String LOGS_DIRECTORY = "logs/"; //一定要事先備好logs資料夾
+	static final String EXTENSION = ".jsonl";
+	static final String COMPRESSED_EXTENSION = EXTENSION + ".gz";
+	static final String INDEX_EXTENSION = ".idx";
+	static final int INDEX_RECORD_SIZE = 8 + 8 + 8 + 4; //行的位置 + 時間 + 使用者ID + 指令的hash
+
+	//環形緩衝區 sequences[i]等於位置時代表可以放入 等於位置+1時代表可以取出
+	private static final LogEntry[] entries = new LogEntry[CAPACITY];
+	private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+	private static final AtomicLong tail = new AtomicLong(); //下一個放入的位置 所有執行緒共用
+	private static long head = 0L; //下一個取出的位置 只有寫入的執行緒會用到
+	private static final AtomicLong dropped = new AtomicLong(); //因為緩衝區滿了而丟掉的行數
+
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+	private static final ExecutorService compressService = Executors.newSingleThreadExecutor(); //壓縮寫完的檔案
+	private static final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private static final ByteBuffer indexBuffer = ByteBuffer.allocateDirect(INDEX_RECORD_SIZE * 1024);
+	private static final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private static final ZoneId zone = ZoneId.systemDefault();
+	private static final StringBuilder line = new StringBuilder();
+	private static FileChannel channel;
+	private static FileChannel indexChannel;
+	private static Path filePath;
+	private static LocalDate fileDate; //目前的檔案是哪一天的
+	private static int fileIndex; //當天的第幾個檔案
+	private static long fileSize;
+
+	//同一秒內的每一行共用同一個時間字串
+	private static long cachedSecond = Long.MIN_VALUE;
+	private static LocalDate cachedDate;
+	private static String cachedTime; //yyyy-MM-ddTHH:mm:ss
+
+	static
+	{
+		for (int i = 0; i < CAPACITY; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * Put an entry into the ring buffer. This method never blocks. Entries that were put before {@link #start} are
+	 * kept until the writer starts, as long as the buffer is not full.
+	 *
+	 * @param entry The entry.
+	 * @return {@code false} if the buffer is full and the entry was dropped.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static boolean offer(LogEntry entry)
+	{
+		long position;
+		int index;
+		while (true)
+		{
+			position = tail.get();
+			index = (int) position & MASK;
+			long difference = sequences.getAcquire(index) - position;
+			if (difference == 0L) //這格是空的
+			{
+				if (tail.compareAndSet(position, position + 1))
+					break;
+			}
+			else if (difference < 0L) //繞了一圈 寫入的執行緒還沒取出 代表滿了
+			{
+				dropped.incrementAndGet();
+				return false;
+			}
+			//其他執行緒搶先放入了 再試一次
+		}
+		entries[index] = entry;
+		sequences.setRelease(index, position + 1); //放好了 寫入的執行緒可以取出
+		return true;
+	}
+
+	/**
+	 * Start the writer thread, and compress the files that were not compressed last time, except the last file of
+	 * today, which will be continued.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void start()
+	{
+		LocalDate today = LocalDate.now(zone);
+		Path current = path(today, lastIndex(today));
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(LOGS_DIRECTORY), "*" + EXTENSION))
+		{
+			for (Path file : files)
+				if (!file.equals(current))
+					compressLater(file);
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+		}
+		executorService.scheduleWithFixedDelay(LogWriter::drain, 0L, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Let the writer check the date immediately, so the log file of the new day will be created, and the file of the
+	 * previous day will be compressed, even if nothing was logged. Lines of the previous day that are still in the
+	 * buffer go into the new file.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void changeDate()
+	{
+		if (!executorService.isShutdown())
+			executorService.execute(() -> switchFile(LocalDate.now(zone)));
+	}
+
+	/**
+	 * Stop the writer thread, then write every remaining entry and close the file. The last file is not compressed
+	 * here, but at the next start.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void close()
+	{
+		executorService.shutdown();
+		try
+		{
+			if (!executorService.awaitTermination(1L, TimeUnit.SECONDS))
+				executorService.shutdownNow();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+		drain(); //剩下的
+		try
+		{
+			if (channel != null)
+				channel.close();
+			if (indexChannel != null)
+				indexChannel.close();
+		}
+		catch (IOException exception)
+		{
+			exception.printStackTrace();
+		}
+		compressService.shutdown();
+		try
+		{
+			if (!compressService.awaitTermination(10L, TimeUnit.SECONDS))
+				compressService.shutdownNow(); //沒壓縮完的 下次啟動時會再壓縮
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void drain()
+	{
+		long droppedLines = dropped.getAndSet(0L);
+		if (droppedLines != 0L)
+			offer(LogEntry.info("dropped " + droppedLines + " log line(s) because the log buffer was full"));
+
+		int index;
+		while (sequences.getAcquire(index = (int) head & MASK) == head + 1) //有已經放好的行
+		{
+			LogEntry entry = entries[index];
+			entries[index] = null;
+			sequences.setRelease(index, head + CAPACITY); //這格可以再放入了
+			head++;
+			write(entry);
+		}
+		flush();
+	}
+
+	private static void write(LogEntry entry)
+	{
+		long second = Math.floorDiv(entry.time(), 1000L);
+		if (second != cachedSecond) //換了一秒 才需要重新產生時間字串
+		{
+			LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+			cachedSecond = second;
+			cachedDate = dateTime.toLocalDate();
+			cachedTime = cachedDate + "T" + twoDigits(dateTime.getHour()) + ':' + twoDigits(dateTime.getMinute()) + ':' + twoDigits(dateTime.getSecond());
+		}
+		if (fileDate == null || cachedDate.isAfter(fileDate)) //換日了 前一天晚到的行就寫進新的檔案
+			switchFile(cachedDate);
+		else if (fileSize >= MAX_FILE_SIZE) //檔案太大了
+			rollFile();
+
+		long offset = fileSize + buffer.position(); //這一行在檔案中的位置
+		int millis = (int) Math.floorMod(entry.time(), 1000L);
+		line.setLength(0);
+		line.append("{\"ts\":\"").append(cachedTime).append('.').append(millis < 100 ? (millis < 10 ? "00" : "0") : "").append(millis)
+				.append("\",\"type\":\"").append(entry.type()).append('"');
+		if (entry.userID() != 0L) //ID用字串 以免被當成浮點數而失去精度
+			line.append(",\"user\":\"").append(entry.userID()).append('"');
+		if (entry.userName() != null)
+			appendString(",\"name\":", entry.userName());
+		if (entry.command() != null)
+			appendString(",\"command\":", entry.command());
+		if (entry.channelID() != 0L)
+			line.append(",\"channel\":\"").append(entry.channelID()).append('"');
+		if (entry.latencyMillis() >= 0L)
+			line.append(",\"latency_ms\":").append(entry.latencyMillis());
+		if (entry.message() != null)
+			appendString(",\"message\":", entry.message());
+		line.append("}\n");
+		encode(line);
+
+		if (indexBuffer.remaining() < INDEX_RECORD_SIZE)
+			flush();
+		indexBuffer.putLong(offset)
+				.putLong(entry.time())
+				.putLong(entry.userID())
+				.putInt(entry.command() != null ? entry.command().hashCode() : 0);
+	}
+
+	private static void appendString(String key, String value)
+	{
+		line.append(key).append('"');
+		for (int i = 0, length = value.length(); i < length; i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"' -> line.append("\\\"");
+				case '\\' -> line.append("\\\\");
+				case '\n' -> line.append("\\n");
+				case '\r' -> line.append("\\r");
+				case '\t' -> line.append("\\t");
+				default ->
+				{
+					if (c < 0x20) //其他控制字元
+						line.append(String.format("\\u%04x", (int) c));
+					else
+						line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+
+	private static String twoDigits(int value)
+	{
+		return value < 10 ? "0" + value : Integer.toString(value);
+	}
+
+	private static void encode(CharSequence string)
+	{
+		CharBuffer chars = CharBuffer.wrap(string);
+		while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) //緩衝區滿了
+			flush();
+		encoder.reset();
+	}
+
+	private static Path path(LocalDate date, int index)
+	{
+		return Paths.get(LOGS_DIRECTORY + date + (index == 0 ? "" : "." + index) + EXTENSION);
+	}
+
+	/**
+	 * @param logFile The path of a log file, either compressed or not.
+	 * @return The path of the index of the log file.
+	 */
+	static Path indexPath(Path logFile)
+	{
+		String name = logFile.toString();
+		return Paths.get(name.substring(0, name.indexOf(EXTENSION)) + INDEX_EXTENSION);
+	}
+
+	private static boolean exists(LocalDate date, int index)
+	{
+		Path file = path(date, index);
+		return Files.exists(file) || Files.exists(Paths.get(file + ".gz"));
+	}
+
+	/**
+	 * @return The index of the last file of the day, which may not exist yet.
+	 */
+	private static int lastIndex(LocalDate date)
+	{
+		int index = 0;
+		while (exists(date, index + 1))
+			index++;
+		return index;
+	}
+
+	private static void switchFile(LocalDate date)
+	{
+		if (fileDate != null && !date.isAfter(fileDate)) //不會回到已經交給compressLater的檔案
+			return;
+		int index = lastIndex(date);
+		Path last = path(date, index);
+		if (Files.exists(Paths.get(last + ".gz"))) //已經壓縮了 不能再寫
+			index++;
+		openFile(date, index);
+	}
+
+	private static void rollFile()
+	{
+		openFile(fileDate, fileIndex + 1);
+	}
+
+	private static void openFile(LocalDate date, int index)
+	{
+		flush(); //之前的內容寫進之前的檔案
+		try
+		{
+			if (channel != null)
+			{
+				channel.close();
+				compressLater(filePath);
+			}
+			if (indexChannel != null)
+			{
+				indexChannel.close();
+				indexChannel = null;
+			}
+			filePath = path(date, index);
+			channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			fileSize = channel.size();
+			indexChannel = FileChannel.open(indexPath(filePath), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			indexChannel.truncate(indexChannel.size() - indexChannel.size() % INDEX_RECORD_SIZE); //上次寫到一半的紀錄
+			indexChannel.position(indexChannel.size());
+			fileDate = date;
+			fileIndex = index;
+		}
+		catch (IOException exception) //下一行會再試一次
+		{
+			exception.printStackTrace();
+			channel = null;
+			fileDate = null;
+		}
+	}
+
+	private static void compressLater(Path file)
+	{
+		compressService.execute(() ->
+		{
+			Path compressed = Paths.get(file + ".gz");
+			Path temp = Paths.get(compressed + ".tmp");
+			try (InputStream input = Files.newInputStream(file);
+				 OutputStream output = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024))
+			{
+				input.transferTo(output);
+			}
+			catch (IOException exception)
+			{
+				exception.printStackTrace();
+				return;
+			}
+			try
+			{
+				Files.move(temp, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				Files.delete(file);
+			}
+			catch (IOException exception)
+			{
+				exception.printStackTrace();
+			}
+		});
+	}
+
+	private static void flush()
+	{
+		buffer.flip();
+		try
+		{
+			while (channel != null && buffer.hasRemaining())
+				fileSize += channel.write(buffer);
+		}
+		catch (IOException exception) //不能為了log而關閉機器人 只能丟掉這些內容
+		{
+			exception.printStackTrace();
+		}
+		buffer.clear();
+
+		indexBuffer.flip(); //索引在內容之後寫入 才不會指向還沒寫入的行
+		try
+		{
+			while (indexChannel != null && indexBuffer.hasRemaining())
+				indexChannel.write(indexBuffer);
+		}
+		catch (IOException exception) //少了索引只是搜尋不到 不影響記錄
+		{
+			exception.printStackTrace();
+		}
+		indexBuffer.clear();
+	}
+}
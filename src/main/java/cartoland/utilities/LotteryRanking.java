@@ -0,0 +1,339 @@
+package cartoland.utilities;
+
+import java.util.Arrays;
+
+/**
+ * {@code LotteryRanking} is a utility class that keeps every record of {@link LotteryRecords} in the order of the
+ * ranking, so the ranking never needs to be sorted. The order is a treap whose nodes are the slots of the records:
+ * users with more command blocks come first, and users with the same command blocks are ordered by their slots. The
+ * tree is stored in arrays indexed by slot, so updating a user allocates nothing. Updating, finding the rank of a user
+ * and finding the user at a position all take O(log n). The ranks are competition ranks, which means users with the
+ * same command blocks have the same rank. The ranking also has an epoch, which only increases when something in the
+ * first {@link #EPOCH_POSITIONS} positions changed, so rendered pages of the top of the ranking can be cached until
+ * the epoch changes. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class LotteryRanking
+{
+	private LotteryRanking()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final int NONE = -1;
+	static final int EPOCH_POSITIONS = 100; //前100名有變動時 epoch才會增加
+
+	private static int root = NONE;
+	private static long epoch = 0L;
+	private static long[] keys = new long[1024]; //建立索引時的指令方塊
+	private static int[] lefts = new int[1024];
+	private static int[] rights = new int[1024];
+	private static int[] sizes = new int[1024]; //子樹的大小 0代表還沒有加入
+
+	/**
+	 * Move a user to the right place of the ranking, by the current command blocks in {@link LotteryRecords}. The
+	 * command blocks are read inside the lock, so if two threads update the same user at the same time, the one
+	 * that comes later always uses the newer value, and the order of the updates doesn't matter.
+	 *
+	 * @param slot The slot of the user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void update(int slot)
+	{
+		if (reposition(slot))
+			epoch++;
+	}
+
+	/**
+	 * Move many users to the right places of the ranking, and increase the epoch at most once, so a batch of
+	 * updates invalidates the cached pages only once.
+	 *
+	 * @param slots The slots of the users.
+	 * @param count How many slots in the array are used.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void updateAll(int[] slots, int count)
+	{
+		boolean topChanged = false;
+		for (int i = 0; i < count; i++)
+			topChanged |= reposition(slots[i]);
+		if (topChanged)
+			epoch++;
+	}
+
+	/**
+	 * @return {@code true} if something in the first {@link #EPOCH_POSITIONS} positions changed.
+	 */
+	private static boolean reposition(int slot)
+	{
+		ensureCapacity(slot + 1);
+		long blocks = LotteryRecords.getLongVolatile(slot, LotteryRecords.BLOCKS);
+		int oldPosition = Integer.MAX_VALUE;
+		if (sizes[slot] != 0) //已經在樹裡面了
+		{
+			if (keys[slot] == blocks) //位置沒有改變
+				return false;
+			oldPosition = positionOf(slot);
+			root = remove(root, slot);
+		}
+		keys[slot] = blocks;
+		lefts[slot] = NONE;
+		rights[slot] = NONE;
+		sizes[slot] = 1;
+		root = insert(root, slot);
+		return Math.min(oldPosition, positionOf(slot)) < EPOCH_POSITIONS; //兩個位置之間的使用者都移動了 或是方塊數變了
+	}
+
+	/**
+	 * Increase the epoch if the user is in the first {@link #EPOCH_POSITIONS} positions, because something other
+	 * than the command blocks of the user changed, such as the name.
+	 *
+	 * @param slot The slot of the user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void touch(int slot)
+	{
+		if (slot < sizes.length && sizes[slot] != 0 && positionOf(slot) < EPOCH_POSITIONS)
+			epoch++;
+	}
+
+	static synchronized long epoch()
+	{
+		return epoch;
+	}
+
+	private static void ensureCapacity(int capacity)
+	{
+		if (capacity <= keys.length)
+			return;
+		int newLength = Math.max(capacity, keys.length << 1);
+		keys = Arrays.copyOf(keys, newLength);
+		lefts = Arrays.copyOf(lefts, newLength);
+		rights = Arrays.copyOf(rights, newLength);
+		sizes = Arrays.copyOf(sizes, newLength);
+	}
+
+	static synchronized int size()
+	{
+		return size(root);
+	}
+
+	/**
+	 * @param slot The slot of the user.
+	 * @return The competition rank of the user, starting from 1.
+	 */
+	static synchronized int rankOf(int slot)
+	{
+		return countGreater(keys[slot]) + 1;
+	}
+
+	/**
+	 * @param blocks The command blocks.
+	 * @return How many users have at least these command blocks, who are the first ones in the ranking.
+	 */
+	static synchronized int countAtLeast(long blocks)
+	{
+		return blocks == Long.MIN_VALUE ? size(root) : countGreater(blocks - 1L);
+	}
+
+	/**
+	 * @param slot The slot of the user.
+	 * @return The command blocks of the user when it was indexed, which are the ones that {@link #rankOf} uses.
+	 */
+	static synchronized long blocksOf(int slot)
+	{
+		return keys[slot];
+	}
+
+	/**
+	 * @param slot The slot of the user.
+	 * @return How many users are before this user in the ranking, starting from 0.
+	 */
+	static synchronized int positionOf(int slot)
+	{
+		int position = 0;
+		for (int node = root; node != NONE;)
+		{
+			if (node == slot)
+				return position + size(lefts[node]);
+			if (precedes(slot, node))
+				node = lefts[node];
+			else
+			{
+				position += size(lefts[node]) + 1;
+				node = rights[node];
+			}
+		}
+		return position; //還沒有加入
+	}
+
+	/**
+	 * Copy a part of the ranking. The ranks of users who have the same command blocks are the same.
+	 *
+	 * @param from The position of the first user, starting from 0.
+	 * @param slots The slots of the users are written here, {@code slots.length} users at most.
+	 * @param blocks The command blocks of the users are written here.
+	 * @param ranks The competition ranks of the users are written here.
+	 * @return How many users were copied.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized int copyRange(int from, int[] slots, long[] blocks, int[] ranks)
+	{
+		int count = Math.max(0, Math.min(slots.length, size(root) - from));
+		for (int i = 0; i < count; i++)
+		{
+			int slot = select(from + i);
+			slots[i] = slot;
+			blocks[i] = keys[slot];
+			if (i != 0 && blocks[i] == blocks[i - 1]) //同分 同名次
+				ranks[i] = ranks[i - 1];
+			else
+				ranks[i] = i == 0 ? countGreater(keys[slot]) + 1 : from + i + 1; //和上一位不同分 名次就是位置
+		}
+		return count;
+	}
+
+	private static int countGreater(long blocks)
+	{
+		int count = 0;
+		for (int node = root; node != NONE;)
+		{
+			if (keys[node] > blocks) //這個節點和左子樹都比較多
+			{
+				count += size(lefts[node]) + 1;
+				node = rights[node];
+			}
+			else
+				node = lefts[node];
+		}
+		return count;
+	}
+
+	private static int select(int position)
+	{
+		int node = root;
+		while (true)
+		{
+			int leftSize = size(lefts[node]);
+			if (position < leftSize)
+				node = lefts[node];
+			else if (position == leftSize)
+				return node;
+			else
+			{
+				position -= leftSize + 1;
+				node = rights[node];
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if {@code a} comes before {@code b} in the ranking.
+	 */
+	private static boolean precedes(int a, int b)
+	{
+		return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private static int size(int node)
+	{
+		return node == NONE ? 0 : sizes[node];
+	}
+
+	/**
+	 * The priority of a node in the treap. A hash of the slot works as well as a random number, and doesn't need to
+	 * be stored.
+	 */
+	private static int priority(int node)
+	{
+		int hash = node * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static void pull(int node)
+	{
+		sizes[node] = size(lefts[node]) + size(rights[node]) + 1;
+	}
+
+	private static int insert(int tree, int node)
+	{
+		if (tree == NONE)
+			return node;
+		if (precedes(node, tree))
+		{
+			lefts[tree] = insert(lefts[tree], node);
+			if (priority(lefts[tree]) > priority(tree))
+				tree = rotateRight(tree);
+		}
+		else
+		{
+			rights[tree] = insert(rights[tree], node);
+			if (priority(rights[tree]) > priority(tree))
+				tree = rotateLeft(tree);
+		}
+		pull(tree);
+		return tree;
+	}
+
+	private static int remove(int tree, int node)
+	{
+		if (tree == node)
+		{
+			int merged = merge(lefts[node], rights[node]);
+			sizes[node] = 0;
+			return merged;
+		}
+		if (precedes(node, tree))
+			lefts[tree] = remove(lefts[tree], node);
+		else
+			rights[tree] = remove(rights[tree], node);
+		pull(tree);
+		return tree;
+	}
+
+	/**
+	 * Merge two trees, every node of {@code a} comes before every node of {@code b}.
+	 */
+	private static int merge(int a, int b)
+	{
+		if (a == NONE)
+			return b;
+		if (b == NONE)
+			return a;
+		if (priority(a) > priority(b))
+		{
+			rights[a] = merge(rights[a], b);
+			pull(a);
+			return a;
+		}
+		lefts[b] = merge(a, lefts[b]);
+		pull(b);
+		return b;
+	}
+
+	private static int rotateRight(int node)
+	{
+		int left = lefts[node];
+		lefts[node] = rights[left];
+		rights[left] = node;
+		pull(node);
+		pull(left);
+		return left;
+	}
+
+	private static int rotateLeft(int node)
+	{
+		int right = rights[node];
+		rights[node] = lefts[right];
+		lefts[right] = node;
+		pull(node);
+		pull(right);
+		return right;
+	}
+}
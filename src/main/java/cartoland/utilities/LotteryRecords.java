@@ -0,0 +1,259 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code LotteryRecords} is a utility class that stores the numeric fields of {@link CommandBlocksHandle.LotteryData}
+ * in a memory-mapped file. Every user takes a fixed-width record, and the slot of the record is kept by
+ * {@link UserTable}. Since the operating system writes the mapped pages back by itself, saving is only a
+ * {@link MappedByteBuffer#force()}, and loading is only mapping the file. Fields that are modified by many threads
+ * are accessed through {@link VarHandle}s, which provide volatile reads and compare-and-set directly on the mapped
+ * memory. Every field is aligned to its own size, which is required by these atomic operations. When the file grows,
+ * the new mapping and the old one share the same pages, so an update on the old mapping is not lost. Can not be
+ * instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class LotteryRecords
+{
+	private LotteryRecords()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	static final String FILE_NAME = "serialize/lottery_data.dat";
+	private static final Path RECORDS_FILE = Paths.get(FILE_NAME);
+	private static final int MAGIC = 0x434C5244; //CLRD
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	static final int RECORD_SIZE = 64;
+	private static final int INITIAL_CAPACITY = 1024; //一開始能放幾筆紀錄
+
+	//標頭
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int RECORD_SIZE_OFFSET = 8;
+	private static final int COUNT_OFFSET = 12;
+	private static final int MIGRATING_OFFSET = 16; //1代表遷移還沒完成 舊版本的檔案這裡是0
+
+	//每筆紀錄內的位置 8位元組的欄位都對齊8
+	static final int USER_ID = 0;
+	static final int BLOCKS = 8;
+	static final int LAST_CLAIM_SECOND = 16;
+	static final int BET_WON = 24;
+	static final int BET_LOST = 28;
+	static final int BET_SHOW_HAND_WON = 32;
+	static final int BET_SHOW_HAND_LOST = 36;
+	static final int SLOT_WON = 40;
+	static final int SLOT_LOST = 44;
+	static final int SLOT_SHOW_HAND_WON = 48;
+	static final int SLOT_SHOW_HAND_LOST = 52;
+	static final int STREAK = 56;
+	static final int SEQUENCE = 60; //最後一個異動在JournalHandle中的序號 舊版本的檔案這裡是0
+
+	//映射的緩衝區預設是big-endian 要和getLong putLong相同
+	private static final VarHandle LONG_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	private static FileChannel channel;
+	private static volatile MappedByteBuffer records; //擴大時會換成新的映射
+	private static int capacity; //records能放幾筆紀錄
+	private static int count; //已經用了幾筆紀錄
+
+	/**
+	 * Map the records file. Create an empty file if there's no records file yet. If the last migration didn't finish,
+	 * the records it wrote are discarded, so the migration can start over.
+	 *
+	 * @return {@code true} if the records file didn't exist before or the last migration didn't finish, which means
+	 * the old data should be migrated.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized boolean open()
+	{
+		boolean created = !Files.exists(RECORDS_FILE);
+		try
+		{
+			channel = FileChannel.open(RECORDS_FILE, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long fileSize = channel.size();
+			if (fileSize < HEADER_SIZE || created) //新檔案
+			{
+				map(INITIAL_CAPACITY);
+				records.putInt(MAGIC_OFFSET, MAGIC)
+						.putInt(VERSION_OFFSET, VERSION)
+						.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE)
+						.putInt(COUNT_OFFSET, 0);
+				count = 0;
+				return true;
+			}
+
+			map((int) ((fileSize - HEADER_SIZE) / RECORD_SIZE));
+			if (records.getInt(MAGIC_OFFSET) != MAGIC || records.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE)
+				throw new IOException(RECORDS_FILE + " is not a lottery records file!");
+			if (records.getInt(MIGRATING_OFFSET) != 0) //上次遷移到一半就當機了
+			{
+				records.putInt(COUNT_OFFSET, 0);
+				count = 0;
+				FileHandle.log(RECORDS_FILE + ": the last migration didn't finish, migrating again");
+				return true;
+			}
+			count = records.getInt(COUNT_OFFSET);
+		}
+		catch (IOException exception)
+		{
+			throw new UncheckedIOException(exception);
+		}
+		return false;
+	}
+
+	/**
+	 * Mark the file as migrating and make the mark durable before any migrated record is written. If the bot stops
+	 * before {@link #endMigration}, the next {@link #open} will see the mark and migrate again, instead of starting
+	 * with a part of the old data.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void beginMigration()
+	{
+		records.putInt(MIGRATING_OFFSET, 1);
+		records.force();
+	}
+
+	/**
+	 * Make every migrated record durable, then clear the mark of {@link #beginMigration}. The mark is cleared last,
+	 * so it never says the migration finished while some records are still only in memory.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized void endMigration()
+	{
+		records.force();
+		records.putInt(MIGRATING_OFFSET, 0);
+		records.force();
+	}
+
+	private static void map(int newCapacity) throws IOException
+	{
+		records = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE + (long) newCapacity * RECORD_SIZE); //會自動擴大檔案
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Create a zeroed record for a user. The caller must make sure the user doesn't have a record yet.
+	 *
+	 * @param userID The ID of the user.
+	 * @return The slot of the new record.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static synchronized int allocate(long userID)
+	{
+		if (count == capacity) //滿了
+		{
+			try
+			{
+				map(capacity << 1);
+			}
+			catch (IOException exception)
+			{
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		int slot = count;
+		records.putLong(offset(slot, USER_ID), userID); //先寫ID 再增加數量 中途當機也不會出現沒有ID的紀錄
+		records.putInt(COUNT_OFFSET, ++count);
+		return slot;
+	}
+
+	static synchronized int size()
+	{
+		return count;
+	}
+
+	static synchronized long fileSize()
+	{
+		return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+	}
+
+	static long getLong(int slot, int field)
+	{
+		return records.getLong(offset(slot, field));
+	}
+
+	static void putLong(int slot, int field, long value)
+	{
+		records.putLong(offset(slot, field), value);
+	}
+
+	static int getInt(int slot, int field)
+	{
+		return records.getInt(offset(slot, field));
+	}
+
+	static void putInt(int slot, int field, int value)
+	{
+		records.putInt(offset(slot, field), value);
+	}
+
+	static long getLongVolatile(int slot, int field)
+	{
+		return (long) LONG_HANDLE.getVolatile(records, offset(slot, field));
+	}
+
+	static void putLongVolatile(int slot, int field, long value)
+	{
+		LONG_HANDLE.setVolatile(records, offset(slot, field), value);
+	}
+
+	static boolean compareAndSetLong(int slot, int field, long expectedValue, long newValue)
+	{
+		return LONG_HANDLE.compareAndSet(records, offset(slot, field), expectedValue, newValue);
+	}
+
+	static int getIntVolatile(int slot, int field)
+	{
+		return (int) INT_HANDLE.getVolatile(records, offset(slot, field));
+	}
+
+	static void putIntVolatile(int slot, int field, int value)
+	{
+		INT_HANDLE.setVolatile(records, offset(slot, field), value);
+	}
+
+	static int getAndAddInt(int slot, int field, int delta)
+	{
+		return (int) INT_HANDLE.getAndAdd(records, offset(slot, field), delta);
+	}
+
+	/**
+	 * Force every modified record to be written to the storage device.
+	 *
+	 * @return Always {@code true}, so this can be used as the snapshot function of {@link JournalHandle}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static boolean force()
+	{
+		records.force();
+		return true;
+	}
+
+	private static int offset(int slot, int field)
+	{
+		return HEADER_SIZE + slot * RECORD_SIZE + field;
+	}
+}
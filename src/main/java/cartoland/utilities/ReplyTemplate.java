@@ -0,0 +1,266 @@
+package cartoland.utilities;
+
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code ReplyTemplate} is a localized string that was parsed once into literal and argument segments, so replies
+ * don't need {@link String#formatted} to parse the format string every time. Only {@code %s}, {@code %d},
+ * {@code %,d}, {@code %0Nd}, {@code %%} and {@code %n} have fast paths, which are all the language files use; any
+ * other format string or argument falls back to {@link String#format}, so the result and exceptions are always the
+ * same as {@link String#formatted}. An instance is immutable.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+final class ReplyTemplate
+{
+	private static final byte STRING = 0; //%s
+	private static final byte DECIMAL = 1; //%d
+	private static final byte GROUPED_DECIMAL = 2; //%,d
+	private static final byte ZERO_PADDED_DECIMAL = 3; //%0Nd
+
+	//和String.formatted使用相同的地區設定
+	private static final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+	private static final char groupingSeparator = DecimalFormatSymbols.getInstance(locale).getGroupingSeparator();
+	//有些地區的數字不是0到9 或不是每三位數分隔 就都交給String.format
+	private static final boolean fastPathLocale = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0' &&
+			NumberFormat.getIntegerInstance(locale) instanceof DecimalFormat decimalFormat && decimalFormat.getGroupingSize() == 3;
+
+	private final String pattern;
+	private final String[] literals; //literals[i]在第i個參數之前 最後一個在所有參數之後 null代表只能用String.format
+	private final byte[] kinds;
+	private final int[] widths;
+	private final int literalLength;
+
+	/**
+	 * Parse a localized string.
+	 *
+	 * @param pattern The string with format specifiers.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	ReplyTemplate(String pattern)
+	{
+		this.pattern = pattern;
+		List<String> literalList = new ArrayList<>();
+		List<Byte> kindList = new ArrayList<>();
+		List<Integer> widthList = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		boolean supported = fastPathLocale;
+		int length = pattern.length();
+		for (int i = 0; i < length && supported; i++)
+		{
+			char c = pattern.charAt(i);
+			if (c != '%')
+			{
+				literal.append(c);
+				continue;
+			}
+			if (i + 1 == length) //最後一個字元是% 讓String.format擲出例外
+			{
+				supported = false;
+				break;
+			}
+
+			char next = pattern.charAt(++i);
+			byte kind;
+			int width = 0;
+			switch (next)
+			{
+				case '%' ->
+				{
+					literal.append('%');
+					continue;
+				}
+				case 'n' ->
+				{
+					literal.append(System.lineSeparator());
+					continue;
+				}
+				case 's' -> kind = STRING;
+				case 'd' -> kind = DECIMAL;
+				case ',' ->
+				{
+					if (i + 1 < length && pattern.charAt(i + 1) == 'd')
+					{
+						i++;
+						kind = GROUPED_DECIMAL;
+					}
+					else
+						kind = -1;
+				}
+				case '0' ->
+				{
+					int end = i + 1;
+					while (end < length && Character.isDigit(pattern.charAt(end)))
+						end++;
+					if (end > i + 1 && end < length && pattern.charAt(end) == 'd')
+					{
+						width = Integer.parseInt(pattern, i + 1, end, 10);
+						i = end;
+						kind = ZERO_PADDED_DECIMAL;
+					}
+					else
+						kind = -1;
+				}
+				default -> kind = -1;
+			}
+			if (kind == -1) //其他的格式 例如%.2f %1$s
+			{
+				supported = false;
+				break;
+			}
+			literalList.add(literal.toString());
+			literal.setLength(0);
+			kindList.add(kind);
+			widthList.add(width);
+		}
+
+		if (!supported)
+		{
+			literals = null;
+			kinds = null;
+			widths = null;
+			literalLength = pattern.length();
+			return;
+		}
+		literalList.add(literal.toString());
+		literals = literalList.toArray(new String[0]);
+		kinds = new byte[kindList.size()];
+		widths = new int[kinds.length];
+		int totalLength = 0;
+		for (int i = 0; i < kinds.length; i++)
+		{
+			kinds[i] = kindList.get(i);
+			widths[i] = widthList.get(i);
+		}
+		for (String segment : literals)
+			totalLength += segment.length();
+		literalLength = totalLength;
+	}
+
+	/**
+	 * Render the template with arguments.
+	 *
+	 * @param args The arguments, same as {@link String#formatted}.
+	 * @return The rendered string.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	String render(Object... args)
+	{
+		if (literals == null || args.length < kinds.length)
+			return pattern.formatted(args); //讓String.format處理 包括擲出例外
+		StringBuilder builder = new StringBuilder(literalLength + (kinds.length << 4));
+		return renderTo(builder, args) ? builder.toString() : pattern.formatted(args);
+	}
+
+	/**
+	 * Render the template with arguments, and append it to a builder that the caller reuses.
+	 *
+	 * @param builder The builder.
+	 * @param args The arguments, same as {@link String#formatted}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	void appendTo(StringBuilder builder, Object... args)
+	{
+		if (literals == null || args.length < kinds.length)
+		{
+			builder.append(pattern.formatted(args));
+			return;
+		}
+		int start = builder.length();
+		if (!renderTo(builder, args)) //有不支援的參數 復原之後交給String.format
+		{
+			builder.setLength(start);
+			builder.append(pattern.formatted(args));
+		}
+	}
+
+	/**
+	 * @return {@code false} if an argument is not supported by the fast paths.
+	 */
+	private boolean renderTo(StringBuilder builder, Object[] args)
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			builder.append(literals[i]);
+			Object arg = args[i];
+			if (arg == null) //%s和%d都會印出null
+			{
+				if (kinds[i] == ZERO_PADDED_DECIMAL) //%0Nd的null會擲出例外
+					return false;
+				builder.append("null");
+				continue;
+			}
+
+			if (kinds[i] == STRING)
+			{
+				if (arg instanceof Formattable)
+					return false;
+				builder.append(arg);
+				continue;
+			}
+
+			long value;
+			if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte)
+				value = ((Number) arg).longValue();
+			else if (arg instanceof BigInteger bigInteger && kinds[i] == DECIMAL)
+			{
+				builder.append(bigInteger);
+				continue;
+			}
+			else //%d配上其他型態會擲出例外
+				return false;
+
+			switch (kinds[i])
+			{
+				case DECIMAL -> builder.append(value);
+				case GROUPED_DECIMAL -> appendGrouped(builder, value);
+				default -> appendZeroPadded(builder, value, widths[i]);
+			}
+		}
+		builder.append(literals[kinds.length]);
+		return true;
+	}
+
+	private static void appendGrouped(StringBuilder builder, long value)
+	{
+		String digits = Long.toString(value);
+		int start = 0;
+		if (value < 0L)
+		{
+			builder.append('-');
+			start = 1;
+		}
+		int length = digits.length();
+		for (int i = start; i < length; i++)
+		{
+			if (i != start && (length - i) % 3 == 0) //每三位數一個逗號
+				builder.append(groupingSeparator);
+			builder.append(digits.charAt(i));
+		}
+	}
+
+	private static void appendZeroPadded(StringBuilder builder, long value, int width)
+	{
+		String digits = Long.toString(value);
+		int start = 0;
+		if (value < 0L) //負號在補零之前
+		{
+			builder.append('-');
+			start = 1;
+		}
+		for (int pad = width - digits.length(); pad > 0; pad--)
+			builder.append('0');
+		builder.append(digits, start, digits.length());
+	}
+}
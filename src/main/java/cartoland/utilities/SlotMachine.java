@@ -0,0 +1,243 @@
+package cartoland.utilities;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * {@code SlotMachine} is the table of {@code /lottery slot}, which is loaded from {@link #FILE_NAME}. Every symbol has
+ * a weight, and a reel stops at a symbol with the probability of its weight divided by the sum of the weights. The
+ * reels are sampled by the alias method of Vose, so a reel costs one random integer and one random double no matter
+ * how many symbols there are. A spin pays the bet times a multiplier: {@code pair} if exactly two reels are the same,
+ * {@code triple} if all three reels are the same, or {@code jackpot} if all three reels are the jackpot symbol. Every
+ * outcome comes from a seed, so a spin or a run of spins can be replayed from the seed in {@link LedgerHandle}, as long
+ * as the table didn't change. The table is immutable after it was loaded.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class SlotMachine
+{
+	public static final String FILE_NAME = "data/slot_machine.json";
+	public static final int REELS = 3;
+	private static final long MAX_MULTIPLIER = 1000000L; //賭注上限乘上這個 再乘上次數上限 也不會溢位
+
+	private final String[] emojiFormats;
+	private final double[] probabilities; //第i格留下i的機率
+	private final int[] aliases; //第i格沒留下時 改成哪一個符號
+	private final int jackpotSymbol;
+	private final long pairMultiplier;
+	private final long tripleMultiplier;
+	private final long jackpotMultiplier;
+
+	/**
+	 * The sum of a run of spins.
+	 *
+	 * @param payout The command blocks that the spins paid back, including the bets of the winning spins.
+	 * @param wins How many spins paid more than the bet.
+	 * @param pairs How many spins had exactly two same reels.
+	 * @param triples How many spins had three same reels, including the jackpots.
+	 * @param jackpots How many spins had three jackpot symbols.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public record Result(long payout, int wins, int pairs, int triples, int jackpots) {}
+
+	private SlotMachine(String[] emojiFormats, long[] weights, int jackpotSymbol, long pairMultiplier, long tripleMultiplier, long jackpotMultiplier)
+	{
+		this.emojiFormats = emojiFormats;
+		this.jackpotSymbol = jackpotSymbol;
+		this.pairMultiplier = pairMultiplier;
+		this.tripleMultiplier = tripleMultiplier;
+		this.jackpotMultiplier = jackpotMultiplier;
+
+		//Vose的別名法 把每個符號的機率乘上n 多出1的部分分給不足1的格子
+		int n = weights.length;
+		probabilities = new double[n];
+		aliases = new int[n];
+		long totalWeight = 0L;
+		for (long weight : weights)
+			totalWeight += weight;
+		double[] scaled = new double[n];
+		int[] small = new int[n]; //不足1的符號
+		int[] large = new int[n]; //至少1的符號
+		int smallSize = 0, largeSize = 0;
+		for (int i = 0; i < n; i++)
+		{
+			scaled[i] = (double) weights[i] * n / totalWeight;
+			if (scaled[i] < 1.0)
+				small[smallSize++] = i;
+			else
+				large[largeSize++] = i;
+		}
+		while (smallSize > 0 && largeSize > 0)
+		{
+			int less = small[--smallSize];
+			int more = large[--largeSize];
+			probabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0; //拿去補滿less的格子
+			if (scaled[more] < 1.0)
+				small[smallSize++] = more;
+			else
+				large[largeSize++] = more;
+		}
+		while (largeSize > 0) //剩下的都是1 浮點數誤差不會讓它們被換掉
+			probabilities[large[--largeSize]] = 1.0;
+		while (smallSize > 0)
+			probabilities[small[--smallSize]] = 1.0;
+	}
+
+	/**
+	 * Load the table from {@link #FILE_NAME}.
+	 *
+	 * @return The slot machine.
+	 * @throws IllegalArgumentException If the file is not a valid table, so a broken table fails when the bot starts
+	 * instead of paying wrong amounts.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static SlotMachine load()
+	{
+		try
+		{
+			JSONObject table = new JSONObject(new String(FileHandle.buildJsonBytesFromFile(FILE_NAME), StandardCharsets.UTF_8));
+			JSONArray symbols = table.getJSONArray("symbols");
+			int n = symbols.length();
+			if (n < 2)
+				throw new IllegalArgumentException(FILE_NAME + " needs at least 2 symbols");
+
+			String[] emojiFormats = new String[n];
+			long[] weights = new long[n];
+			String jackpotName = table.getString("jackpot");
+			int jackpotSymbol = -1;
+			for (int i = 0; i < n; i++)
+			{
+				JSONObject symbol = symbols.getJSONObject(i);
+				String name = symbol.getString("name");
+				emojiFormats[i] = "<:" + name + ':' + symbol.getLong("id") + '>';
+				weights[i] = symbol.getLong("weight");
+				if (weights[i] <= 0L || weights[i] > Integer.MAX_VALUE)
+					throw new IllegalArgumentException(FILE_NAME + ": the weight of " + name + " must be a positive int");
+				if (name.equals(jackpotName))
+					jackpotSymbol = i;
+			}
+			if (jackpotSymbol == -1)
+				throw new IllegalArgumentException(FILE_NAME + ": the jackpot symbol " + jackpotName + " is not a symbol");
+
+			JSONObject payouts = table.getJSONObject("payouts");
+			return new SlotMachine(emojiFormats, weights, jackpotSymbol,
+					multiplier(payouts, "pair"), multiplier(payouts, "triple"), multiplier(payouts, "jackpot"));
+		}
+		catch (JSONException exception)
+		{
+			throw new IllegalArgumentException(FILE_NAME + ": " + exception.getMessage(), exception);
+		}
+	}
+
+	private static long multiplier(JSONObject payouts, String key)
+	{
+		long multiplier = payouts.getLong(key);
+		if (multiplier < 0L || multiplier > MAX_MULTIPLIER)
+			throw new IllegalArgumentException(FILE_NAME + ": the " + key + " multiplier must be between 0 and " + MAX_MULTIPLIER);
+		return multiplier;
+	}
+
+	/**
+	 * Stop a reel.
+	 *
+	 * @param random The random number generator of the spins.
+	 * @return The index of the symbol.
+	 */
+	private int stop(SplittableRandom random)
+	{
+		int column = random.nextInt(aliases.length);
+		return random.nextDouble() < probabilities[column] ? column : aliases[column];
+	}
+
+	/**
+	 * The reels of the first spin of a seed, which is what a single spin shows.
+	 *
+	 * @param seed The seed from {@link Algorithm#newSeed}.
+	 * @return The index of the symbol of each reel.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public int[] reels(long seed)
+	{
+		SplittableRandom random = Algorithm.seeded(seed);
+		int[] reels = new int[REELS];
+		for (int i = 0; i < REELS; i++)
+			reels[i] = stop(random);
+		return reels;
+	}
+
+	/**
+	 * How many times the bet a spin pays back.
+	 *
+	 * @param reels The index of the symbol of each reel.
+	 * @return The multiplier, 0 if the spin lost.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public long multiplierOf(int[] reels)
+	{
+		return multiplierOf(reels[0], reels[1], reels[2]);
+	}
+
+	private long multiplierOf(int a, int b, int c)
+	{
+		if (a == b && b == c)
+			return a == jackpotSymbol ? jackpotMultiplier : tripleMultiplier;
+		if (a == b || b == c || a == c)
+			return pairMultiplier;
+		return 0L;
+	}
+
+	/**
+	 * Spin many times with the same bet. The spins come one after another from the same seed, so the first spin is
+	 * the same as {@link #reels}. Nothing is allocated in the loop.
+	 *
+	 * @param seed The seed from {@link Algorithm#newSeed}.
+	 * @param spins How many spins.
+	 * @param bet The bet of each spin.
+	 * @return The sum of the spins.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public Result play(long seed, int spins, long bet)
+	{
+		SplittableRandom random = Algorithm.seeded(seed);
+		long payout = 0L;
+		int wins = 0, pairs = 0, triples = 0, jackpots = 0;
+		for (int i = 0; i < spins; i++)
+		{
+			int a = stop(random), b = stop(random), c = stop(random);
+			long multiplier = multiplierOf(a, b, c);
+			payout += bet * multiplier;
+			if (multiplier > 1L)
+				wins++;
+			if (a == b && b == c)
+			{
+				triples++;
+				if (a == jackpotSymbol)
+					jackpots++;
+			}
+			else if (a == b || b == c || a == c)
+				pairs++;
+		}
+		return new Result(payout, wins, pairs, triples, jackpots);
+	}
+
+	/**
+	 * @param symbol The index of a symbol.
+	 * @return The emoji of the symbol, in the format of Discord messages.
+	 */
+	public String emojiOf(int symbol)
+	{
+		return emojiFormats[symbol];
+	}
+}
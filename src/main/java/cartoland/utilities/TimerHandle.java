@@ -35,25 +35,14 @@ public final class TimerHandle
 
 	private static final List<TimerEvent> timerEvents = new ArrayList<>();
 
-	private static final String BIRTHDAY_MAP = "serialize/birthday_map.ser";
-	private static final String BIRTHDAY_ARRAY = "serialize/birthday_array.ser";
-
-	@SuppressWarnings("unchecked") //閉嘴IntelliJ IDEA
-	private static final Map<Long, Short> birthdayMap = (FileHandle.deserialize(BIRTHDAY_MAP) instanceof Map map) ? map : new HashMap<>();
 	@SuppressWarnings({"unchecked","rawtypes"}) //閉嘴IntelliJ IDEA
-	private static final List<Long>[] birthdayArray = (FileHandle.deserialize(BIRTHDAY_ARRAY) instanceof ArrayList[] array) ? array : new ArrayList[366];
+	private static final List<Long>[] birthdayArray = new ArrayList[366];
 
 	static
 	{
-		if (birthdayArray[0] == null) //如果從不存在紀錄
-		{
-			for (int i = 0; i < 366; i++)
-				birthdayArray[i] = new ArrayList<>();
-			birthdayMap.clear(); //一切紀錄重來
-		}
-
-		FileHandle.registerSerialize(BIRTHDAY_MAP, birthdayMap);
-		FileHandle.registerSerialize(BIRTHDAY_ARRAY, birthdayArray);
+		for (int i = 0; i < 366; i++)
+			birthdayArray[i] = new ArrayList<>();
+		UserTable.forEachBirthday((userID, dateOfYear) -> birthdayArray[dateOfYear - 1].add(userID)); //由UserTable重建 不必另外存檔
 
 		TimerHandle.registerTimerEvent((byte) 0, () -> //半夜12點
 		{
@@ -88,6 +77,8 @@ public final class TimerHandle
 			undergroundChannel.sendMessage("https://i.imgur.com/EGO35hf.jpg").queue(); //好棒，三點了
 		}); //好棒 三點了
 
+		TimerHandle.registerTimerEvent((byte) 4, UserTable::compactIntroductions); //凌晨4點 整理自我介紹的紀錄檔
+
 		TimerHandle.registerTimerEvent((byte) 12, () -> //中午12點
 		{
 			ForumChannel questionsChannel = Cartoland.getJDA().getForumChannelById(IDs.QUESTIONS_CHANNEL_ID);
@@ -215,6 +206,7 @@ public final class TimerHandle
 				jda.retrieveUserById(bannedMember[AdminCommand.USER_ID_INDEX]) //找到這名使用者後解ban他
 						.queue(user -> bannedServer.unban(user).queue()); //解ban
 			AdminCommand.tempBanSet.remove(bannedMember); //不再紀錄這名使用者
+			FileHandle.markDirty(AdminCommand.TEMP_BAN_SET);
 		}
 	}
 
@@ -239,11 +231,6 @@ public final class TimerHandle
 		executorService.shutdown();
 	}
 
-	static String getTimeString()
-	{
-		LocalTime now = LocalTime.now(); //現在
-		return String.format("%02d:%02d:%02d", now.getHour(), now.getMinute(), now.getSecond());
-	}
 
 	public static String getDateString()
 	{
@@ -253,24 +240,33 @@ public final class TimerHandle
 	public static List<Long> todayBirthdayMembers()
 	{
 		LocalDate today = LocalDate.now();
-		return birthdayArray[getDateOfYear(today.getMonthValue(), today.getDayOfMonth()) - 1];
+		synchronized (birthdayArray)
+		{
+			return new ArrayList<>(birthdayArray[getDateOfYear(today.getMonthValue(), today.getDayOfMonth()) - 1]);
+		}
 	}
 
 	public static void setBirthday(long userID, int month, int date)
 	{
-		Short oldBirthday = birthdayMap.get(userID); //獲取舊生日
-		if (oldBirthday != null) //如果確實設定過舊生日
-			birthdayArray[oldBirthday].remove(userID); //移除設定
 		short dateOfYear = getDateOfYear(month, date); //一年中的第幾天 1月1號為1 12月31號為366
-		birthdayArray[dateOfYear - 1].add(userID); //將該使用者增加到那天生日的清單中
-		birthdayMap.put(userID, dateOfYear); //設定使用者的生日
+		synchronized (birthdayArray) //UserTable和birthdayArray必須一起修改
+		{
+			short oldBirthday = UserTable.setBirthday(userID, dateOfYear); //設定使用者的生日 並獲取舊生日
+			if (oldBirthday != 0) //如果確實設定過舊生日
+				birthdayArray[oldBirthday - 1].remove(userID); //移除設定
+			birthdayArray[dateOfYear - 1].add(userID); //將該使用者增加到那天生日的清單中
+		}
 	}
 
 	public static void deleteBirthday(long memberID)
 	{
-		Short oldBirthday = birthdayMap.remove(memberID); //移除舊生日 並把移除掉的值存起來
-		if (oldBirthday != null) //如果設定過舊生日
-			birthdayArray[oldBirthday].remove(memberID); //從記錄中移除這位成員
+		synchronized (birthdayArray)
+		{
+			short oldBirthday = UserTable.setBirthday(memberID, (short) 0); //移除舊生日 並把移除掉的值存起來
+			if (oldBirthday == 0) //沒有設定過舊生日
+				return;
+			birthdayArray[oldBirthday - 1].remove(memberID); //從記錄中移除這位成員
+		}
 	}
 
 	/**
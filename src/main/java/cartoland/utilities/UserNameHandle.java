@@ -0,0 +1,170 @@
+package cartoland.utilities;
+
+import cartoland.Cartoland;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code UserNameHandle} is a utility class that caches the names of the lottery players. A name is resolved from the
+ * cache of JDA first, which already has every member of the servers, then from the names that were saved in
+ * {@link #FILE_NAME} last time. Only the users that are in neither of them are retrieved by REST requests, one at a
+ * time every {@link #REFRESH_INTERVAL_MILLIS} milliseconds, in the order of the ranking, so the names on the top of
+ * the ranking come first and a restart never floods the REST queue. Since the resolved names are saved, a restart
+ * continues from where it stopped, and a saved name is only refreshed after every unknown name was resolved. Can not be
+ * instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class UserNameHandle
+{
+	private UserNameHandle()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final String FILE_NAME = "serialize/user_names.bin";
+	private static final long REFRESH_INTERVAL_MILLIS = 500L; //每秒最多2個請求
+	private static final Map<Long, String> names = new ConcurrentHashMap<>(); //只有樂透玩家的名字
+
+	/**
+	 * A user that is waiting for the refresher. Unknown names come before saved names, then the higher rank comes
+	 * first, then the earlier request.
+	 */
+	private record Pending(long userID, boolean saved, int position, long sequence) {}
+
+	private static final PriorityBlockingQueue<Pending> queue = new PriorityBlockingQueue<>(64,
+			Comparator.comparing(Pending::saved).thenComparingInt(Pending::position).thenComparingLong(Pending::sequence));
+	private static final Set<Long> queued = ConcurrentHashMap.newKeySet(); //同一位使用者只排一次
+	private static final AtomicLong sequence = new AtomicLong();
+	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+	static
+	{
+		Map<Long, String> saved = FileHandle.deserialize(FILE_NAME, BinaryCodec.LONG_STRING_MAP);
+		if (saved != null)
+			names.putAll(saved);
+		FileHandle.registerSerialize(FILE_NAME, BinaryCodec.LONG_STRING_MAP, () -> new HashMap<>(names));
+	}
+
+	/**
+	 * Resolve the name of a player without waiting for any request. If the user is not in the cache of JDA, the
+	 * user will be queued for the refresher, which will set the name through {@link #update} later.
+	 *
+	 * @param userID The ID of the user.
+	 * @param position The position of the user in the ranking, which decides who will be retrieved first.
+	 * @return The name of the user, or {@code null} if the name is still unknown.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static String resolve(long userID, int position)
+	{
+		User user = Cartoland.getJDA().getUserById(userID); //成員都有快取
+		if (user != null)
+		{
+			remember(userID, user.getEffectiveName());
+			return user.getEffectiveName();
+		}
+		String saved = names.get(userID);
+		if (queued.add(userID))
+			queue.add(new Pending(userID, saved != null, position, sequence.getAndIncrement()));
+		return saved; //先用上次的名字
+	}
+
+	/**
+	 * Update the name of a player, when the user changed the name or the refresher retrieved the user. Users who
+	 * have never played the lottery are ignored.
+	 *
+	 * @param userID The ID of the user.
+	 * @param name The new name.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void update(long userID, String name)
+	{
+		if (CommandBlocksHandle.rename(userID, name)) //是樂透玩家
+			remember(userID, name);
+	}
+
+	/**
+	 * Keep a name that was saved in the old {@code lottery_data.ser} file, if there is no newer one.
+	 *
+	 * @param userID The ID of the user.
+	 * @param name The old name.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void migrate(long userID, String name)
+	{
+		if (name != null && names.putIfAbsent(userID, name) == null)
+			FileHandle.markDirty(FILE_NAME);
+	}
+
+	private static void remember(long userID, String name)
+	{
+		if (!name.equals(names.put(userID, name))) //名字變了才需要寫入
+			FileHandle.markDirty(FILE_NAME);
+	}
+
+	/**
+	 * Start the refresher. This method will be called in {@link cartoland.events.BotOnlineOffline#onReady}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void start()
+	{
+		executorService.scheduleWithFixedDelay(UserNameHandle::refresh, REFRESH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public static void stop()
+	{
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Retrieve one user. The request is completed on the refresher thread, so there is never more than one request
+	 * in flight, and the rate limits of Discord are handled by JDA before it returns.
+	 */
+	private static void refresh()
+	{
+		Pending pending = queue.poll();
+		if (pending == null)
+			return;
+		JDA jda = Cartoland.getJDA();
+		try
+		{
+			User user = jda.getUserById(pending.userID); //排隊的時候可能已經進入快取了
+			if (user == null)
+				user = jda.retrieveUserById(pending.userID).complete();
+			queued.remove(pending.userID);
+			update(pending.userID, user.getEffectiveName());
+		}
+		catch (ErrorResponseException exception)
+		{
+			if (exception.getErrorResponse() == ErrorResponse.UNKNOWN_USER) //帳號已刪除 不用再試
+				queued.remove(pending.userID);
+			else
+				queue.add(pending); //之後再試
+		}
+		catch (RuntimeException exception) //連線問題等等 不能讓例外停止排程
+		{
+			queue.add(pending);
+			exception.printStackTrace();
+			FileHandle.log(exception);
+		}
+	}
+}
@@ -0,0 +1,718 @@
+package cartoland.utilities;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@code UserTable} is a utility class that stores every per-user data in one table. The table is an open-addressing
+ * index from user IDs to rows, and every kind of data is a column, which is a primitive array indexed by the row. So
+ * a user ID is never boxed, and each query only probes the index once. The language, birthday and member flag
+ * columns are saved in one file, while the lottery slot column is rebuilt from {@link LotteryRecords}, and the
+ * introduction column, which are offsets into {@link IntroductionLog}, is rebuilt from the log every time the bot
+ * starts. Reads never lock: they use the optimistic read of a {@link StampedLock}, and only retry with the read lock
+ * if a write happened at the same time, so the threads of JDA that look up languages and lottery slots don't wait for
+ * each other. Writes take the write lock. Can not be instantiated or inherited.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+public final class UserTable
+{
+	private UserTable()
+	{
+		throw new AssertionError(IDs.YOU_SHALL_NOT_ACCESS);
+	}
+
+	private static final String FILE_NAME = "serialize/user_table.bin";
+	private static final int INITIAL_CAPACITY = 1024;
+
+	//語言欄位存的是這個陣列的索引 0代表沒有設定過 已經存檔的順序不可更改
+	private static final String[] LANGUAGE_CODES =
+	{
+		null,
+		Languages.ENGLISH,
+		Languages.TW_MANDARIN,
+		Languages.TAIWANESE,
+		Languages.CANTONESE,
+		Languages.CHINESE,
+		Languages.ESPANOL,
+		Languages.JAPANESE
+	};
+	private static final String DEFAULT_LANGUAGE = Languages.TW_MANDARIN; //語言代碼0時LanguageBundle使用的語言
+
+	private static final byte MEMBER = 1; //是否曾經獲得會員身分組
+	private static final byte HAS_INTRODUCTION = 2; //只在舊版存檔中使用
+
+	private static final StampedLock lock = new StampedLock(); //寫入時用寫入鎖 讀取時用樂觀讀取
+	private static volatile Table table = new Table(INITIAL_CAPACITY); //擴大時換成新的表格 只有在寫入鎖內會換
+	private static final Object introductionLock = new Object(); //寫入自我介紹和整理IntroductionLog依序進行 不會擋住其他欄位
+
+	/**
+	 * The index and the columns. A table never grows, a larger table replaces it, so the arrays of one table always
+	 * have matching lengths, and a row found in the index is always inside the columns, even if the reader is racing
+	 * with a writer. The values in the arrays are changed in place while holding the write lock.
+	 */
+	private static final class Table
+	{
+		//open addressing 的索引 userID為0代表空位 負載不超過一半
+		private final long[] indexKeys;
+		private final int[] indexRows;
+
+		//每一列是一名使用者
+		private final long[] userIDs;
+		private final byte[] languages; //使用者用/lang設定的語言
+		private final byte[] localeLanguages; //從Discord的地區設定得知的語言 不存檔
+		private final short[] birthdays; //一年中的第幾天 0代表沒有設定過
+		private final byte[] flags;
+		private final int[] lotterySlots; //-1代表沒有抽獎紀錄
+		private final long[] introductionOffsets; //在IntroductionLog中的位置 0代表沒有自我介紹
+		private int size = 0;
+
+		private Table(int capacity)
+		{
+			indexKeys = new long[capacity << 1];
+			indexRows = new int[capacity << 1];
+			userIDs = new long[capacity];
+			languages = new byte[capacity];
+			localeLanguages = new byte[capacity];
+			birthdays = new short[capacity];
+			flags = new byte[capacity];
+			lotterySlots = new int[capacity];
+			introductionOffsets = new long[capacity];
+		}
+
+		/**
+		 * Copy every row into a table with twice the capacity.
+		 */
+		private Table grow()
+		{
+			Table larger = new Table(userIDs.length << 1);
+			System.arraycopy(userIDs, 0, larger.userIDs, 0, size);
+			System.arraycopy(languages, 0, larger.languages, 0, size);
+			System.arraycopy(localeLanguages, 0, larger.localeLanguages, 0, size);
+			System.arraycopy(birthdays, 0, larger.birthdays, 0, size);
+			System.arraycopy(flags, 0, larger.flags, 0, size);
+			System.arraycopy(lotterySlots, 0, larger.lotterySlots, 0, size);
+			System.arraycopy(introductionOffsets, 0, larger.introductionOffsets, 0, size);
+			larger.size = size;
+			for (int row = 0; row < size; row++)
+				larger.putIndex(userIDs[row], row);
+			return larger;
+		}
+
+		private int rowOf(long userID)
+		{
+			int mask = indexKeys.length - 1;
+			for (int i = hash(userID) & mask; indexKeys[i] != 0L; i = (i + 1) & mask) //線性探測
+				if (indexKeys[i] == userID)
+					return indexRows[i];
+			return -1;
+		}
+
+		private void putIndex(long userID, int row)
+		{
+			int mask = indexKeys.length - 1;
+			int i = hash(userID) & mask;
+			while (indexKeys[i] != 0L)
+				i = (i + 1) & mask;
+			indexRows[i] = row;
+			indexKeys[i] = userID;
+		}
+	}
+
+	//存檔用的複本 每個陣列的索引相同 自我介紹改存在IntroductionLog之後 introductions只有讀取舊存檔時才會有內容
+	private record Columns(long[] userIDs, byte[] languages, short[] birthdays, byte[] flags, String[] introductions) {}
+
+	private static final BinaryCodec.Codec<Columns> CODEC = new BinaryCodec.Codec<>()
+	{
+		@Override
+		public byte version()
+		{
+			return 1;
+		}
+
+		@Override
+		public void encode(Columns value, BinaryCodec.Output out) throws IOException
+		{
+			out.writeSortedLongs(value.userIDs);
+			for (byte language : value.languages)
+				out.writeVarInt(language);
+			for (short birthday : value.birthdays)
+				out.writeVarInt(birthday);
+			for (int i = 0; i < value.flags.length; i++)
+				out.writeVarInt(value.introductions[i] != null ? value.flags[i] | HAS_INTRODUCTION : value.flags[i]);
+			for (String introduction : value.introductions)
+				if (introduction != null)
+					out.writeString(introduction);
+		}
+
+		@Override
+		public Columns decode(BinaryCodec.Input in, byte version) throws IOException
+		{
+			long[] ids = in.readSortedLongs();
+			int count = ids.length;
+			Columns columns = new Columns(ids, new byte[count], new short[count], new byte[count], new String[count]);
+			for (int i = 0; i < count; i++)
+				columns.languages[i] = (byte) in.readVarInt();
+			for (int i = 0; i < count; i++)
+				columns.birthdays[i] = (short) in.readVarInt();
+			for (int i = 0; i < count; i++)
+				columns.flags[i] = (byte) in.readVarInt();
+			for (int i = 0; i < count; i++)
+				if ((columns.flags[i] & HAS_INTRODUCTION) != 0)
+					columns.introductions[i] = in.readString();
+			return columns;
+		}
+
+		@Override
+		public Columns migrate(Object legacy)
+		{
+			return null; //沒有對應的舊檔案 舊資料由UserTable.migrate匯入
+		}
+	};
+
+	static
+	{
+		Columns saved = FileHandle.deserialize(FILE_NAME, CODEC);
+		FileHandle.registerSerialize(FILE_NAME, CODEC, UserTable::snapshot);
+		IntroductionLog.open(UserTable::loadIntroductionOffset);
+		if (saved != null)
+			load(saved);
+		else if (migrate()) //從各自分開的舊存檔匯入
+			FileHandle.markDirty(FILE_NAME);
+	}
+
+	public static String getLanguage(long userID)
+	{
+		return LANGUAGE_CODES[(int) read(userID, (t, row) -> t.languages[row], 0L)];
+	}
+
+	/**
+	 * Get the language code of a user, which is the index of the tables of {@link LanguageBundle}. The language set by
+	 * {@code /lang} comes first, then the language from the Discord locale of the user. This method never creates a
+	 * row or marks the table dirty.
+	 *
+	 * @param userID The ID of the user.
+	 * @return The language code of the user, or 0 if the language is unknown.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static byte getLanguageCode(long userID)
+	{
+		return (byte) read(userID, (t, row) -> t.languages[row] != 0 ? t.languages[row] : t.localeLanguages[row], 0L);
+	}
+
+	/**
+	 * Remember the language from the Discord locale of a user. It is only kept in memory, and only used when the user
+	 * has not set a language by {@code /lang}. The default language is stored as 0, so a user whose locale is the
+	 * default language never gets a row from this method.
+	 *
+	 * @param userID The ID of the user.
+	 * @param language The language, such as {@code "tw"}.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void setLocaleLanguage(long userID, String language)
+	{
+		byte code = language.equals(DEFAULT_LANGUAGE) ? 0 : languageCode(language); //和沒有設定一樣
+		if (read(userID, (t, row) -> t.localeLanguages[row], 0L) == code) //通常都沒變 不需要寫入鎖 沒有這一列也算是0
+			return;
+		long stamp = lock.writeLock();
+		try
+		{
+			int row = rowOrCreate(userID); //可能會換成新的表格 所以要先取得row
+			table.localeLanguages[row] = code;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public static void setLanguage(long userID, String language)
+	{
+		byte code = languageCode(language);
+		long stamp = lock.writeLock();
+		try
+		{
+			int row = rowOrCreate(userID); //可能會換成新的表格 所以要先取得row
+			table.languages[row] = code;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+		FileHandle.markDirty(FILE_NAME);
+	}
+
+	public static short getBirthday(long userID)
+	{
+		return (short) read(userID, (t, row) -> t.birthdays[row], 0L);
+	}
+
+	/**
+	 * Set the birthday of a user.
+	 *
+	 * @param userID The ID of the user.
+	 * @param dateOfYear The date of year of the birthday, 0 means delete the birthday.
+	 * @return The old birthday, or 0 if the user didn't have a birthday.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static short setBirthday(long userID, short dateOfYear)
+	{
+		short oldBirthday;
+		long stamp = lock.writeLock();
+		try
+		{
+			int row = dateOfYear != 0 ? rowOrCreate(userID) : table.rowOf(userID);
+			if (row == -1) //要刪除 但本來就沒有
+				return 0;
+			oldBirthday = table.birthdays[row];
+			table.birthdays[row] = dateOfYear;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+		FileHandle.markDirty(FILE_NAME);
+		return oldBirthday;
+	}
+
+	/**
+	 * Pass every user that has a birthday to the consumer. This is used for building the birthday calendar in
+	 * {@link TimerHandle}.
+	 *
+	 * @param consumer The function that receives a user ID and the birthday of the user.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void forEachBirthday(BirthdayConsumer consumer)
+	{
+		long stamp = lock.readLock();
+		try
+		{
+			Table t = table;
+			for (int row = 0; row < t.size; row++)
+				if (t.birthdays[row] != 0)
+					consumer.accept(t.userIDs[row], t.birthdays[row]);
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public static boolean isMember(long userID)
+	{
+		return (read(userID, (t, row) -> t.flags[row], 0L) & MEMBER) != 0;
+	}
+
+	/**
+	 * Set if a user is a member.
+	 *
+	 * @param userID The ID of the user.
+	 * @param member If the user is a member.
+	 * @return {@code true} if the member flag changed.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static boolean setMember(long userID, boolean member)
+	{
+		long stamp = lock.writeLock();
+		try
+		{
+			int row = member ? rowOrCreate(userID) : table.rowOf(userID);
+			if (row == -1 || ((table.flags[row] & MEMBER) != 0) == member) //沒有改變
+				return false;
+			table.flags[row] ^= MEMBER;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+		FileHandle.markDirty(FILE_NAME);
+		return true;
+	}
+
+	public static String getIntroduction(long userID)
+	{
+		long stamp = lock.readLock(); //讀取的時候不能整理IntroductionLog
+		try
+		{
+			Table t = table;
+			int row = t.rowOf(userID);
+			return row != -1 && t.introductionOffsets[row] != 0L ? IntroductionLog.read(t.introductionOffsets[row]) : null;
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Set the introduction of a user.
+	 *
+	 * @param userID The ID of the user.
+	 * @param introduction The new introduction, {@code null} means delete the introduction.
+	 * @return {@code true} if the introduction changed.
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static boolean setIntroduction(long userID, String introduction)
+	{
+		synchronized (introductionLock) //只有這裡和整理時會改自我介紹的欄位 所以讀到的位置不會再變
+		{
+			long oldOffset = read(userID, (t, row) -> t.introductionOffsets[row], 0L);
+			if (introduction == null ? oldOffset == 0L : oldOffset != 0L && introduction.equals(IntroductionLog.read(oldOffset))) //要刪除但本來就沒有 或是內容一樣
+				return false;
+			long newOffset = IntroductionLog.append(userID, introduction); //不拿著表格的鎖寫檔案 IntroductionLog自己會存 不需要markDirty
+
+			long stamp = lock.writeLock(); //只在發布新的位置時鎖住
+			try
+			{
+				int row = rowOrCreate(userID);
+				table.introductionOffsets[row] = newOffset;
+			}
+			finally
+			{
+				lock.unlockWrite(stamp);
+			}
+			if (oldOffset != 0L)
+				IntroductionLog.supersede(oldOffset);
+			return true;
+		}
+	}
+
+	/**
+	 * Compact {@link IntroductionLog} if more than half of it is superseded entries. The new log is written and forced
+	 * without holding the lock of the table, only the swap of the files and the new offsets are done while holding
+	 * the write lock. This method will be called every day by {@link TimerHandle}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	static void compactIntroductions()
+	{
+		synchronized (introductionLock) //整理的期間不會有新的自我介紹
+		{
+			if (!IntroductionLog.shouldCompact())
+				return;
+			int count = 0;
+			int[] rows;
+			long[] offsets;
+			long stamp = lock.readLock();
+			try
+			{
+				Table t = table;
+				rows = new int[t.size];
+				for (int row = 0; row < t.size; row++)
+					if (t.introductionOffsets[row] != 0L)
+						rows[count++] = row;
+				offsets = new long[count];
+				for (int i = 0; i < count; i++)
+					offsets[i] = t.introductionOffsets[rows[i]];
+			}
+			finally
+			{
+				lock.unlockRead(stamp);
+			}
+
+			long[] newOffsets = IntroductionLog.writeCompacted(offsets); //最花時間的部分 不拿著表格的鎖
+			if (newOffsets == null) //失敗了就繼續用舊的
+				return;
+
+			stamp = lock.writeLock(); //換檔案時不能有人在讀自我介紹
+			try
+			{
+				IntroductionLog.swap();
+				Table t = table; //表格可能擴大了 但列的位置不會變
+				for (int i = 0; i < count; i++)
+					t.introductionOffsets[rows[i]] = newOffsets[i];
+			}
+			finally
+			{
+				lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	/**
+	 * Write the introductions that are not forced yet, and stop the thread of {@link IntroductionLog}. This method
+	 * will be called in {@link cartoland.events.BotOnlineOffline#onShutdown}.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	public static void closeIntroductions()
+	{
+		IntroductionLog.close();
+	}
+
+	private static void loadIntroductionOffset(long userID, long offset)
+	{
+		int row = rowOrCreate(userID);
+		if (table.introductionOffsets[row] != 0L) //被新的取代了
+			IntroductionLog.supersede(table.introductionOffsets[row]);
+		table.introductionOffsets[row] = offset;
+	}
+
+	private static void importIntroduction(int row, String introduction)
+	{
+		if (table.introductionOffsets[row] == 0L) //IntroductionLog裡已經有的 就是比較新的
+			table.introductionOffsets[row] = IntroductionLog.append(table.userIDs[row], introduction);
+	}
+
+	static int getLotterySlot(long userID)
+	{
+		return (int) read(userID, (t, row) -> t.lotterySlots[row], -1L);
+	}
+
+	static void setLotterySlot(long userID, int slot)
+	{
+		long stamp = lock.writeLock();
+		try
+		{
+			int row = rowOrCreate(userID); //可能會換成新的表格 所以要先取得row
+			table.lotterySlots[row] = slot; //不需要存檔 LotteryRecords自己會存
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Read a column of a user without locking. The value is read optimistically first, and if a writer held the
+	 * lock in the meantime, which means the value may be torn, it is read again with the read lock. The reader must
+	 * only read the arrays of the table it is given.
+	 *
+	 * @param userID The ID of the user.
+	 * @param reader The function that reads the column at the row of the user.
+	 * @param absent The value if the user doesn't have a row.
+	 * @return The value.
+	 */
+	private static long read(long userID, ColumnReader reader, long absent)
+	{
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0L) //沒有人拿著寫入鎖
+		{
+			Table t = table;
+			int row = t.rowOf(userID);
+			long value = row != -1 ? reader.read(t, row) : absent;
+			if (lock.validate(stamp)) //讀的途中沒有人寫入
+				return value;
+		}
+		stamp = lock.readLock();
+		try
+		{
+			Table t = table;
+			int row = t.rowOf(userID);
+			return row != -1 ? reader.read(t, row) : absent;
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * {@code ColumnReader} reads a column at a row. The implementations don't capture anything, so they are never
+	 * allocated again.
+	 */
+	@FunctionalInterface
+	private interface ColumnReader
+	{
+		long read(Table table, int row);
+	}
+
+	/**
+	 * @return The number of language codes, including 0 that means no language.
+	 */
+	static int languageCodeCount()
+	{
+		return LANGUAGE_CODES.length;
+	}
+
+	/**
+	 * @param code A language code from 1 to {@link #languageCodeCount} - 1.
+	 * @return The language, such as {@code "tw"}.
+	 */
+	static String languageOfCode(int code)
+	{
+		return LANGUAGE_CODES[code];
+	}
+
+	static byte languageCodeOf(String language)
+	{
+		return languageCode(language);
+	}
+
+	private static byte languageCode(String language)
+	{
+		for (byte code = 1; code < LANGUAGE_CODES.length; code++)
+			if (LANGUAGE_CODES[code].equals(language))
+				return code;
+		throw new IllegalArgumentException("Unknown language: " + language);
+	}
+
+	/**
+	 * Find the row of a user, or create one. The caller must hold the write lock, and must read {@link #table} again
+	 * after calling this method, because it may be replaced by a larger one.
+	 */
+	private static int rowOrCreate(long userID)
+	{
+		Table t = table;
+		int row = t.rowOf(userID);
+		if (row != -1)
+			return row;
+
+		if (t.size == t.userIDs.length) //滿了
+			table = t = t.grow(); //複製完才發布 讀取的執行緒不會看到一半的表格
+		row = t.size++;
+		t.userIDs[row] = userID;
+		t.lotterySlots[row] = -1;
+		t.putIndex(userID, row);
+		return row;
+	}
+
+	private static int hash(long userID)
+	{
+		long h = userID * 0x9E3779B97F4A7C15L; //雪花ID的低位元變化不大 打散一下
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Copy the columns that need to be saved. Users that have nothing to save are skipped.
+	 *
+	 * @return The copy, which is sorted by user IDs.
+	 */
+	private static Columns snapshot()
+	{
+		long stamp = lock.readLock();
+		try
+		{
+			Table t = table;
+			long[] ids = new long[t.size];
+			int count = 0;
+			for (int row = 0; row < t.size; row++)
+				if (t.languages[row] != 0 || t.birthdays[row] != 0 || t.flags[row] != 0)
+					ids[count++] = t.userIDs[row];
+			ids = Arrays.copyOf(ids, count);
+			Arrays.sort(ids);
+
+			Columns copy = new Columns(ids, new byte[count], new short[count], new byte[count], new String[count]);
+			for (int i = 0; i < count; i++)
+			{
+				int row = t.rowOf(ids[i]);
+				copy.languages[i] = t.languages[row];
+				copy.birthdays[i] = t.birthdays[row];
+				copy.flags[i] = t.flags[row];
+			}
+			return copy;
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Load the saved columns. This only runs in the static initializer, before any other thread can see the table,
+	 * so it doesn't lock.
+	 */
+	private static void load(Columns saved)
+	{
+		for (int i = 0; i < saved.userIDs.length; i++)
+		{
+			int row = rowOrCreate(saved.userIDs[i]);
+			table.languages[row] = saved.languages[i] < LANGUAGE_CODES.length ? saved.languages[i] : 0; //新版本的語言
+			table.birthdays[row] = saved.birthdays[i];
+			table.flags[row] = (byte) (saved.flags[i] & MEMBER);
+			if (saved.introductions[i] != null) //舊版存檔 搬到IntroductionLog
+			{
+				importIntroduction(row, saved.introductions[i]);
+				FileHandle.markDirty(FILE_NAME); //下次存檔就不會有自我介紹了
+			}
+		}
+	}
+
+	/**
+	 * Import the separated stores that were used before this table existed. Like {@link #load}, this only runs in the
+	 * static initializer.
+	 *
+	 * @return {@code true} if anything was imported.
+	 */
+	private static boolean migrate()
+	{
+		boolean imported = false;
+		Map<Long, String> users = FileHandle.deserialize("serialize/users.bin", "serialize/users.ser", BinaryCodec.LONG_STRING_MAP);
+		if (users != null)
+		{
+			for (Map.Entry<Long, String> user : users.entrySet())
+			{
+				for (byte code = 1; code < LANGUAGE_CODES.length; code++)
+				{
+					if (LANGUAGE_CODES[code].equals(user.getValue()))
+					{
+						int row = rowOrCreate(user.getKey());
+						table.languages[row] = code;
+					}
+				}
+			}
+			imported = true;
+		}
+
+		Map<Long, Short> birthdayMap = FileHandle.deserialize("serialize/birthday_map.bin", "serialize/birthday_map.ser", BinaryCodec.LONG_SHORT_MAP);
+		if (birthdayMap != null)
+		{
+			birthdayMap.forEach((userID, dateOfYear) ->
+			{
+				if (dateOfYear > 0 && dateOfYear <= 366)
+				{
+					int row = rowOrCreate(userID);
+					table.birthdays[row] = dateOfYear;
+				}
+			});
+			imported = true;
+		}
+
+		Map<Long, String> introductionMap = FileHandle.deserialize("serialize/introduction.bin", "serialize/introduction.ser", BinaryCodec.LONG_STRING_MAP);
+		if (introductionMap != null)
+		{
+			introductionMap.forEach((userID, introduction) ->
+			{
+				int row = rowOrCreate(userID);
+				importIntroduction(row, introduction);
+			});
+			imported = true;
+		}
+
+		Set<Long> allMembers = FileHandle.deserialize("serialize/all_members.bin", "serialize/all_members.ser", BinaryCodec.LONG_SET);
+		if (allMembers != null)
+		{
+			for (long userID : allMembers)
+			{
+				int row = rowOrCreate(userID);
+				table.flags[row] |= MEMBER;
+			}
+			imported = true;
+		}
+		return imported;
+	}
+
+	/**
+	 * {@code BirthdayConsumer} is a functional interface that receives a user and the birthday of the user.
+	 *
+	 * @since 2.1
+	 * @author Alex Cai
+	 */
+	@FunctionalInterface
+	interface BirthdayConsumer
+	{
+		void accept(long userID, short dateOfYear);
+	}
+}
@@ -0,0 +1,84 @@
+package cartoland.utilities;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of {@link BinaryCodec} at 100k users. The benchmark that compares it with Java serialization is
+ * {@code BinaryCodecBenchmark} in {@code src/jmh/java}.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+class BinaryCodecTest
+{
+	private static final int USERS = 100000;
+	private static final Map<Long, String> users = new HashMap<>();
+
+	@TempDir
+	Path directory;
+
+	@BeforeAll
+	static void createUsers()
+	{
+		Random random = new Random(1L);
+		String[] languages = { "en", "tw", "cn", "jp", "es", "hk", "ta" };
+		while (users.size() < USERS) //和Discord的ID相同範圍
+			users.put(300000000000000000L + (random.nextLong() & 0x3FFFFFFFFFFFFFFL), languages[random.nextInt(languages.length)]);
+	}
+
+	@Test
+	void roundTripsUsers() throws IOException
+	{
+		Path binFile = directory.resolve("users.bin");
+		long size = BinaryCodec.write(binFile, BinaryCodec.LONG_STRING_MAP, users);
+		assertEquals(Files.size(binFile), size);
+		assertEquals(users, BinaryCodec.read(binFile, BinaryCodec.LONG_STRING_MAP));
+
+		BinaryCodec.write(binFile, BinaryCodec.LONG_STRING_MAP, Map.of()); //覆寫成空的
+		assertEquals(Map.of(), BinaryCodec.read(binFile, BinaryCodec.LONG_STRING_MAP));
+	}
+
+	@Test
+	void detectsCorruption() throws IOException
+	{
+		Path binFile = directory.resolve("users.bin");
+		long size = BinaryCodec.write(binFile, BinaryCodec.LONG_STRING_MAP, users);
+		try (FileChannel channel = FileChannel.open(binFile, StandardOpenOption.WRITE))
+		{
+			channel.write(ByteBuffer.wrap(new byte[] { 1 }), size / 2); //改掉中間的一個位元組
+		}
+		assertThrows(IOException.class, () -> BinaryCodec.read(binFile, BinaryCodec.LONG_STRING_MAP));
+	}
+
+	@Test
+	void migratesLegacyObjects() throws IOException
+	{
+		Set<Long> legacy = new HashSet<>(Set.of(1L, 2L, 886936474723950603L));
+		Set<Long> migrated = BinaryCodec.LONG_SET.migrate(legacy);
+		assertEquals(legacy, migrated);
+
+		Path binFile = directory.resolve("set.bin");
+		BinaryCodec.write(binFile, BinaryCodec.LONG_SET, migrated);
+		assertEquals(legacy, BinaryCodec.read(binFile, BinaryCodec.LONG_SET));
+
+		Map<Long, Short> birthdays = Map.of(5L, (short) 366, 7L, (short) 1);
+		BinaryCodec.write(binFile, BinaryCodec.LONG_SHORT_MAP, birthdays);
+		assertEquals(birthdays, BinaryCodec.read(binFile, BinaryCodec.LONG_SHORT_MAP));
+	}
+}
@@ -0,0 +1,184 @@
+package cartoland.utilities;
+
+import cartoland.Cartoland;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.requests.restaction.CacheRestAction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency tests of {@link CommandBlocksHandle}. Many threads bet, spin, transfer, claim the daily reward and
+ * earn chat rewards on the same few users at the same time, and the total supply of command blocks must be exactly
+ * the initial supply plus what was created minus what was lost, since a transfer never creates or loses any. The
+ * ledger must also add up to the balance of every user. The files are created in the working directory of the tests,
+ * which is under {@code target}.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+class CommandBlocksHandleTest
+{
+	private static final int USERS = 20;
+	private static final int THREADS = 16;
+	private static final int OPERATIONS = 20000; //每個執行緒
+	private static final long INITIAL_BLOCKS = 50000L;
+	private static final long FIRST_USER_ID = 5000L;
+
+	@BeforeAll
+	static void prepare() throws IOException, ReflectiveOperationException
+	{
+		//CommandBlocksHandle載入時才會打開檔案 每次都從空的資料夾開始
+		Path serialize = Paths.get("serialize");
+		if (Files.exists(serialize))
+		{
+			try (Stream<Path> files = Files.list(serialize))
+			{
+				for (Path file : (Iterable<Path>) files::iterator)
+					Files.delete(file);
+			}
+		}
+		Files.createDirectories(serialize);
+		Files.createDirectories(Paths.get("logs"));
+
+		//沒有連線的JDA 只會讓UserNameHandle排隊取得名字
+		Object restAction = Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[] { CacheRestAction.class }, (proxy, method, args) -> null);
+		JDA jda = (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[] { JDA.class },
+				(proxy, method, args) -> method.getName().startsWith("retrieveUser") ? restAction : null);
+		Field jdaField = Cartoland.class.getDeclaredField("jda");
+		jdaField.setAccessible(true);
+		jdaField.set(null, jda);
+	}
+
+	@Test
+	void conservesTotalSupply() throws Exception
+	{
+		CommandBlocksHandle.LotteryData[] users = new CommandBlocksHandle.LotteryData[USERS];
+		for (int i = 0; i < USERS; i++)
+		{
+			users[i] = CommandBlocksHandle.getLotteryData(FIRST_USER_ID + i);
+			users[i].addBlocks(INITIAL_BLOCKS, LedgerHandle.OPENING);
+		}
+		long initialSupply = totalSupply(users);
+		AtomicLong created = new AtomicLong(), lost = new AtomicLong();
+
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1); //所有執行緒同時開始
+		List<Future<?>> futures = new ArrayList<>(THREADS);
+		for (int t = 0; t < THREADS; t++)
+		{
+			futures.add(threads.submit(() ->
+			{
+				start.await();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				byte[] until = new byte[3];
+				for (int i = 0; i < OPERATIONS; i++)
+				{
+					int index = random.nextInt(USERS);
+					CommandBlocksHandle.LotteryData user = users[index];
+					switch (random.nextInt(6))
+					{
+						case 0 -> //賭注
+						{
+							long bet = 1L + random.nextLong(2000L);
+							boolean win = random.nextBoolean();
+							if (user.settle(bet, win ? bet << 1 : 0L, LedgerHandle.BET) != CommandBlocksHandle.LotteryData.NOT_ENOUGH)
+								(win ? created : lost).addAndGet(bet);
+						}
+						case 1 -> //拉霸
+						{
+							long bet = 1L + random.nextLong(100L);
+							boolean win = random.nextInt(49) == 0;
+							if (user.settle(bet, win ? bet * 50L : 0L, LedgerHandle.SLOT) != CommandBlocksHandle.LotteryData.NOT_ENOUGH)
+							{
+								if (win)
+									created.addAndGet(bet * 49L);
+								else
+									lost.addAndGet(bet);
+							}
+						}
+						case 2, 3 -> //轉帳 不會增加或減少總量
+						{
+							CommandBlocksHandle.LotteryData receiver = users[random.nextInt(USERS)];
+							if (receiver != user)
+								CommandBlocksHandle.LotteryData.transfer(user, receiver, 1L + random.nextLong(3000L));
+						}
+						case 4 -> //每日獎勵 每個人只能領到一次
+						{
+							if (user.tryClaimDaily(until))
+								created.addAndGet(CommandBlocksHandle.LotteryData.DAILY);
+						}
+						default -> //聊天獎勵
+						{
+							long reward = random.nextLong(50L);
+							CommandBlocksHandle.addChatBlocks(new long[] { FIRST_USER_ID + index }, new long[] { reward }, 1);
+							created.addAndGet(reward);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures)
+			future.get(); //執行緒裡的例外會在這裡丟出
+		threads.shutdown();
+
+		assertEquals(initialSupply + created.get() - lost.get(), totalSupply(users), "command blocks were created or lost");
+		Map<Long, Long> ledger = LedgerHandle.replay();
+		for (int i = 0; i < USERS; i++)
+		{
+			assertTrue(users[i].getBlocks() >= 0L);
+			assertEquals(users[i].getBlocks(), ledger.get(FIRST_USER_ID + i), "the ledger doesn't add up to the balance of user " + i);
+		}
+	}
+
+	@Test
+	void createsEachUserOnce() throws Exception
+	{
+		int newUsers = 1000;
+		long firstNewUserID = FIRST_USER_ID + 100000L;
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		List<Future<CommandBlocksHandle.LotteryData[]>> futures = new ArrayList<>(THREADS);
+		for (int t = 0; t < THREADS; t++)
+		{
+			futures.add(threads.submit(() ->
+			{
+				CommandBlocksHandle.LotteryData[] found = new CommandBlocksHandle.LotteryData[newUsers];
+				for (int i = 0; i < newUsers; i++)
+					found[i] = CommandBlocksHandle.getLotteryData(firstNewUserID + i);
+				return found;
+			}));
+		}
+		CommandBlocksHandle.LotteryData[] first = futures.get(0).get();
+		for (Future<CommandBlocksHandle.LotteryData[]> future : futures)
+		{
+			CommandBlocksHandle.LotteryData[] found = future.get();
+			for (int i = 0; i < newUsers; i++)
+				assertSame(first[i], found[i], "a user was created twice");
+		}
+		threads.shutdown();
+	}
+
+	private static long totalSupply(CommandBlocksHandle.LotteryData[] users)
+	{
+		long total = 0L;
+		for (CommandBlocksHandle.LotteryData user : users)
+			total += user.getBlocks();
+		return total;
+	}
+}
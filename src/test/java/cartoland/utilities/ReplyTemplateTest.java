@@ -0,0 +1,57 @@
+package cartoland.utilities;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of {@link ReplyTemplate}. The replies of {@code /lottery bet} and {@code /lottery ranking} are read from the
+ * real language files, and the outputs are asserted to be the same as {@link String#format}. The benchmark is
+ * {@code ReplyTemplateBenchmark} in {@code src/jmh/java}.
+ *
+ * @since 2.1
+ * @author Alex Cai
+ */
+class ReplyTemplateTest
+{
+	private static final String[] KEYS = { "lottery.bet.result", "lottery.ranking.my_rank" };
+	private static final String[] LANGUAGES = { Languages.TW_MANDARIN, Languages.ENGLISH };
+	private static final JSONObject[] files = new JSONObject[LANGUAGES.length];
+
+	@BeforeAll
+	static void readLanguageFiles() throws IOException
+	{
+		Path lang = Paths.get(System.getProperty("basedir", "."), "lang"); //測試的工作目錄在target底下
+		for (int i = 0; i < LANGUAGES.length; i++)
+			files[i] = new JSONObject(Files.readString(lang.resolve(LANGUAGES[i] + ".json"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void sameAsStringFormat()
+	{
+		long[] values = { 0L, 1L, -1L, 999L, 1000L, -1000L, 1234567L, Long.MAX_VALUE, Long.MIN_VALUE };
+		for (JSONObject file : files)
+		{
+			String bet = file.getString(KEYS[0]), rank = file.getString(KEYS[1]);
+			ReplyTemplate betTemplate = new ReplyTemplate(bet), rankTemplate = new ReplyTemplate(rank);
+			for (long value : values)
+			{
+				Object[] betArgs = { value, "贏了！", value };
+				assertEquals(String.format(bet, betArgs), betTemplate.render(betArgs));
+				StringBuilder builder = new StringBuilder("> ");
+				betTemplate.appendTo(builder, betArgs); //和LotteryCommand一樣接在回覆後面
+				assertEquals("> " + String.format(bet, betArgs), builder.toString());
+				Object[] rankArgs = { (int) value, value };
+				assertEquals(String.format(rank, rankArgs), rankTemplate.render(rankArgs));
+			}
+		}
+	}
+}